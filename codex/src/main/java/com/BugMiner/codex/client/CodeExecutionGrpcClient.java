@@ -2,59 +2,112 @@ package com.BugMiner.codex.client;
 
 import com.BugMiner.codex.grpc.CodeExecutionRequest;
 import com.BugMiner.codex.grpc.CodeExecutionResponse;
-import com.BugMiner.codex.grpc.ExecutionServiceGrpc;
+import com.BugMiner.codex.grpc.ComparisonPolicy;
+import com.BugMiner.codex.grpc.ExecutionEvent;
 import com.BugMiner.codex.grpc.ExecutionTestCase;
 import com.BugMiner.codex.grpc.ExecutionTestResult;
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import com.BugMiner.codex.grpc.ExecutionServiceGrpc;
+import com.BugMiner.codex.grpc.JudgingMode;
+import com.BugMiner.codex.grpc.PutTestDataRequest;
+import com.BugMiner.codex.grpc.PutTestDataResponse;
+import com.BugMiner.codex.grpc.ResponseVerbosity;
+import com.BugMiner.codex.grpc.TestDataBlob;
+import com.google.protobuf.ByteString;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class CodeExecutionGrpcClient {
 
+    /**
+     * Exit code of the error responses this client returns when langs-service gave no verdict: the
+     * call failed, timed out or found no node. langs-service itself reports errors with other codes.
+     */
+    public static final int CALL_FAILED_EXIT_CODE = -1;
+
+    private static final Metadata.Key<String> MISSING_TEST_DATA =
+            Metadata.Key.of("missing-test-data", Metadata.ASCII_STRING_MARSHALLER);
+    // Keeps each PutTestData call below the server's default 4 MiB message limit
+    private static final int PUT_BATCH_BYTES = 3 << 20;
+
     @Value("${grpc.client.langs-service.address:localhost}")
     private String langsServiceAddress;
 
     @Value("${grpc.client.langs-service.port:9090}")
     private int langsServicePort;
 
-    private ManagedChannel channel;
-    private ExecutionServiceGrpc.ExecutionServiceBlockingStub blockingStub;
-    private ExecutionServiceGrpc.ExecutionServiceStub asyncStub;
+    // Comma-separated host:port or dns:///host:port entries; empty for the single address above
+    @Value("${grpc.client.langs-service.endpoints:}")
+    private String langsServiceEndpoints;
+
+    @Value("${grpc.client.langs-service.health-check-interval-ms:5000}")
+    private long healthCheckIntervalMs;
+
+    // Health check results older than this are not trusted
+    @Value("${grpc.client.langs-service.health-ttl-ms:15000}")
+    private long healthTtlMs;
+
+    // Language ids whose runners are health-checked on each node
+    @Value("${grpc.client.langs-service.languages:python,java,cpp}")
+    private List<String> languages;
+
+    // Attempts per call, each on a different node
+    @Value("${grpc.client.langs-service.max-attempts:3}")
+    private int maxAttempts;
+
+    // Test data is sent as its hash and uploaded only to nodes that do not hold it yet
+    @Value("${grpc.client.langs-service.test-data-by-reference:true}")
+    private boolean testDataByReference;
+
+    // Shorter test data is cheaper to send inline than to hash
+    @Value("${grpc.client.langs-service.test-data-by-reference-min-chars:1024}")
+    private int testDataByReferenceMinChars;
+
+    private LangsServiceBalancer balancer;
 
     @PostConstruct
     public void init() {
-        // Create the gRPC channel
-        channel = ManagedChannelBuilder.forAddress(langsServiceAddress, langsServicePort)
-                .usePlaintext() // Use plaintext for development, use TLS in production
-                .build();
+        List<String> endpoints = langsServiceEndpoints.isBlank()
+                ? List.of(langsServiceAddress + ":" + langsServicePort)
+                : Arrays.stream(langsServiceEndpoints.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
 
-        // Create blocking and async stubs
-        blockingStub = ExecutionServiceGrpc.newBlockingStub(channel);
-        asyncStub = ExecutionServiceGrpc.newStub(channel);
+        balancer = new LangsServiceBalancer(endpoints, languages, healthCheckIntervalMs, healthTtlMs, maxAttempts);
+        balancer.start();
 
-        log.info("gRPC client initialized for langs-service at {}:{}", langsServiceAddress, langsServicePort);
+        log.info("gRPC client initialized for langs-service at {}", endpoints);
     }
 
     @PreDestroy
     public void shutdown() {
-        if (channel != null && !channel.isShutdown()) {
-            try {
-                channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
-                log.info("gRPC channel shut down successfully");
-            } catch (InterruptedException e) {
-                log.warn("Failed to shutdown gRPC channel gracefully", e);
-                Thread.currentThread().interrupt();
-            }
+        if (balancer != null) {
+            balancer.close();
+            log.info("gRPC channels shut down successfully");
         }
     }
 
@@ -67,27 +120,37 @@ public class CodeExecutionGrpcClient {
      * @return CodeExecutionResponse with results
      */
     public CodeExecutionResponse executeCode(String language, String code, List<TestCase> testCases) {
-        try {
-            log.info("Executing code via gRPC - Language: {}, Test cases: {}", language, testCases.size());
+        return executeCode(language, code, testCases, JudgingMode.ALL);
+    }
 
-            // Build the request
-            CodeExecutionRequest.Builder requestBuilder = CodeExecutionRequest.newBuilder()
-                    .setLanguage(language)
-                    .setCode(code);
+    /**
+     * Execute code synchronously, judging the test cases according to the given mode
+     *
+     * @param judgingMode ALL, STOP_ON_FIRST_FAILURE or SAMPLE_ONLY
+     */
+    public CodeExecutionResponse executeCode(String language, String code, List<TestCase> testCases,
+                                             JudgingMode judgingMode) {
+        return executeCode(language, code, testCases, judgingMode, null);
+    }
 
-            // Add test cases
-            for (TestCase testCase : testCases) {
-                ExecutionTestCase grpcTestCase = ExecutionTestCase.newBuilder()
-                        .setInput(testCase.getInput())
-                        .setExpectedOutput(testCase.getExpectedOutput())
-                        .build();
-                requestBuilder.addTestCases(grpcTestCase);
-            }
+    /**
+     * Execute code synchronously with a compiler flag profile
+     *
+     * @param compilerProfile e.g. "gnu++20-O2" for C++, null for the language's default
+     */
+    public CodeExecutionResponse executeCode(String language, String code, List<TestCase> testCases,
+                                             JudgingMode judgingMode, String compilerProfile) {
+        try {
+            log.info("Executing code via gRPC - Language: {}, Test cases: {}, Mode: {}",
+                    language, testCases.size(), judgingMode);
 
-            CodeExecutionRequest request = requestBuilder.build();
+            // Build the request
+            PreparedRequest request = buildRequest(language, code, testCases, judgingMode, compilerProfile, null,
+                    ResponseVerbosity.FULL);
 
-            // Make the gRPC call
-            CodeExecutionResponse response = blockingStub.executeCode(request);
+            // Make the gRPC call; judging has no side effects, so it can be retried on another node
+            CodeExecutionResponse response = balancer.call(language, node -> callWithTestData(node, request, null,
+                    stub -> stub.executeCode(request.request())), true);
 
             log.info("Code execution completed - Success: {}, Exit code: {}",
                     response.getSuccess(), response.getExitCode());
@@ -101,7 +164,7 @@ public class CodeExecutionGrpcClient {
             return CodeExecutionResponse.newBuilder()
                     .setSuccess(false)
                     .setErrorMessage("gRPC call failed: " + e.getStatus().getDescription())
-                    .setExitCode(-1)
+                    .setExitCode(CALL_FAILED_EXIT_CODE)
                     .build();
         } catch (Exception e) {
             log.error("Unexpected error during code execution", e);
@@ -109,33 +172,66 @@ public class CodeExecutionGrpcClient {
             return CodeExecutionResponse.newBuilder()
                     .setSuccess(false)
                     .setErrorMessage("Unexpected error: " + e.getMessage())
-                    .setExitCode(-1)
+                    .setExitCode(CALL_FAILED_EXIT_CODE)
                     .build();
         }
     }
 
+    /**
+     * Execute code without blocking the calling thread, e.g. for a request handled asynchronously
+     *
+     * @param outputCheck how output is compared, null for TRIMMED_EXACT
+     * @param verbosity how much of each test's data the results carry
+     * @param timeoutSeconds end-to-end deadline, shared by the retries on other nodes
+     * @return completed on a gRPC thread with the response, or with an error response if the call
+     * failed or missed its deadline; never completed exceptionally
+     */
+    public CompletableFuture<CodeExecutionResponse> executeCodeAsync(String language, String code,
+                                                                     List<TestCase> testCases, JudgingMode judgingMode,
+                                                                     String compilerProfile, OutputCheck outputCheck,
+                                                                     ResponseVerbosity verbosity, long timeoutSeconds) {
+        log.info("Executing code asynchronously via gRPC - Language: {}, Test cases: {}, Mode: {}",
+                language, testCases.size(), judgingMode);
+
+        Deadline deadline = Deadline.after(timeoutSeconds, TimeUnit.SECONDS);
+        PreparedRequest request = buildRequest(language, code, testCases, judgingMode, compilerProfile, outputCheck,
+                verbosity);
+
+        return balancer.<CodeExecutionResponse>callAsync(language,
+                        (node, nodeObserver) -> startWithTestData(node, request, deadline,
+                                (stub, observer) -> stub.executeCode(request.request(), observer), nodeObserver))
+                .handle((response, error) -> {
+                    if (error == null) {
+                        log.info("Code execution completed - Success: {}, Exit code: {}",
+                                response.getSuccess(), response.getExitCode());
+                        return response;
+                    }
+                    Status status = Status.fromThrowable(error);
+                    log.error("gRPC call failed: {}", status);
+                    String message = status.getCode() == Status.Code.DEADLINE_EXCEEDED
+                            ? "Execution timeout: no result within " + timeoutSeconds + " seconds"
+                            : "gRPC call failed: " + status.getDescription();
+                    return CodeExecutionResponse.newBuilder()
+                            .setSuccess(false)
+                            .setErrorMessage(message)
+                            .setExitCode(CALL_FAILED_EXIT_CODE)
+                            .build();
+                });
+    }
+
     /**
      * Execute code with timeout
      */
     public CodeExecutionResponse executeCodeWithTimeout(String language, String code,
                                                         List<TestCase> testCases, long timeoutSeconds) {
         try {
-            ExecutionServiceGrpc.ExecutionServiceBlockingStub stubWithTimeout =
-                    blockingStub.withDeadlineAfter(timeoutSeconds, TimeUnit.SECONDS);
+            // One deadline for all attempts, so retries do not extend the timeout
+            Deadline deadline = Deadline.after(timeoutSeconds, TimeUnit.SECONDS);
+            PreparedRequest request = buildRequest(language, code, testCases, JudgingMode.ALL, null, null,
+                    ResponseVerbosity.FULL);
 
-            CodeExecutionRequest.Builder requestBuilder = CodeExecutionRequest.newBuilder()
-                    .setLanguage(language)
-                    .setCode(code);
-
-            for (TestCase testCase : testCases) {
-                ExecutionTestCase grpcTestCase = ExecutionTestCase.newBuilder()
-                        .setInput(testCase.getInput())
-                        .setExpectedOutput(testCase.getExpectedOutput())
-                        .build();
-                requestBuilder.addTestCases(grpcTestCase);
-            }
-
-            return stubWithTimeout.executeCode(requestBuilder.build());
+            return balancer.call(language, node -> callWithTestData(node, request, deadline,
+                    stub -> stub.executeCode(request.request())), true);
 
         } catch (StatusRuntimeException e) {
             log.error("gRPC call failed with timeout: {}", e.getStatus());
@@ -143,37 +239,259 @@ public class CodeExecutionGrpcClient {
             return CodeExecutionResponse.newBuilder()
                     .setSuccess(false)
                     .setErrorMessage("Execution timeout or gRPC error: " + e.getStatus().getDescription())
-                    .setExitCode(-1)
+                    .setExitCode(CALL_FAILED_EXIT_CODE)
                     .build();
         }
     }
 
     /**
-     * Helper method to check if the connection is healthy
+     * Execute code and receive progress as it happens: a compile status, one test result per
+     * test case in completion order, then a summary. Events are delivered on gRPC threads.
+     *
+     * @param language The programming language (e.g., "python", "java", "cpp")
+     * @param code The source code to execute
+     * @param testCases List of test cases with input and expected output
+     * @param judgingMode ALL, STOP_ON_FIRST_FAILURE or SAMPLE_ONLY
+     * @param observer Receives the execution events; onCompleted follows the summary
      */
-    public boolean isHealthy() {
+    public void executeCodeStream(String language, String code, List<TestCase> testCases,
+                                  JudgingMode judgingMode, StreamObserver<ExecutionEvent> observer) {
+        log.info("Streaming code execution via gRPC - Language: {}, Test cases: {}, Mode: {}",
+                language, testCases.size(), judgingMode);
+
+        PreparedRequest request = buildRequest(language, code, testCases, judgingMode, null, null, ResponseVerbosity.FULL);
+        balancer.stream(language, (node, nodeObserver) -> startWithTestData(node, request, null,
+                (stub, streamObserver) -> stub.executeCodeStream(request.request(), streamObserver), nodeObserver), observer);
+    }
+
+    /**
+     * Make a blocking call on the node. If the node lacks some of the test data the request refers
+     * to, upload it and make the call once more.
+     *
+     * @param deadline for the call and the upload, null for none
+     */
+    private <T> T callWithTestData(LangsServiceNode node, PreparedRequest request, Deadline deadline,
+                                   Function<ExecutionServiceGrpc.ExecutionServiceBlockingStub, T> call) {
+        ExecutionServiceGrpc.ExecutionServiceBlockingStub stub = deadline != null
+                ? node.getBlockingStub().withDeadline(deadline) : node.getBlockingStub();
         try {
-            // Try a simple call to check if service is available
-            CodeExecutionRequest healthCheck = CodeExecutionRequest.newBuilder()
-                    .setLanguage("python")
-                    .setCode("print('health check')")
-                    .build();
+            return call.apply(stub);
+        } catch (StatusRuntimeException e) {
+            List<PutTestDataRequest> uploads = missingTestData(request, e.getStatus(), e.getTrailers());
+            if (uploads == null) {
+                throw e;
+            }
+            log.info("Uploading {} batches of test data to langs-service at {}", uploads.size(), node.getAddress());
+            for (PutTestDataRequest upload : uploads) {
+                stub.putTestData(upload);
+            }
+            return call.apply(stub);
+        }
+    }
 
-            ExecutionServiceGrpc.ExecutionServiceBlockingStub healthStub =
-                    blockingStub.withDeadlineAfter(2, TimeUnit.SECONDS);
+    /**
+     * Start an asynchronous call on the node. If the node lacks some of the test data the request
+     * refers to, upload it and start the call once more; the observer sees only the last attempt.
+     *
+     * @param deadline for the call and the upload, null for none
+     */
+    private <T> void startWithTestData(LangsServiceNode node, PreparedRequest request, Deadline deadline,
+                                       BiConsumer<ExecutionServiceGrpc.ExecutionServiceStub, StreamObserver<T>> start,
+                                       StreamObserver<T> observer) {
+        ExecutionServiceGrpc.ExecutionServiceStub stub = deadline != null
+                ? node.getAsyncStub().withDeadline(deadline) : node.getAsyncStub();
+        start.accept(stub, new StreamObserver<>() {
+            @Override
+            public void onNext(T value) {
+                observer.onNext(value);
+            }
 
-            healthStub.executeCode(healthCheck);
-            return true;
-        } catch (Exception e) {
-            log.warn("Health check failed: {}", e.getMessage());
-            return false;
+            @Override
+            public void onError(Throwable t) {
+                List<PutTestDataRequest> uploads = missingTestData(request, Status.fromThrowable(t), Status.trailersFromThrowable(t));
+                if (uploads == null) {
+                    observer.onError(t);
+                    return;
+                }
+                log.info("Uploading {} batches of test data to langs-service at {}", uploads.size(), node.getAddress());
+                putTestData(stub, uploads.iterator(), error -> {
+                    if (error != null) {
+                        observer.onError(error);
+                    } else {
+                        start.accept(stub, observer);
+                    }
+                });
+            }
+
+            @Override
+            public void onCompleted() {
+                observer.onCompleted();
+            }
+        });
+    }
+
+    // Uploads the batches one after another, then calls back with null or the first error
+    private void putTestData(ExecutionServiceGrpc.ExecutionServiceStub stub, Iterator<PutTestDataRequest> uploads,
+                             Consumer<Throwable> done) {
+        if (!uploads.hasNext()) {
+            done.accept(null);
+            return;
+        }
+        stub.putTestData(uploads.next(), new StreamObserver<>() {
+            @Override
+            public void onNext(PutTestDataResponse response) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.accept(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                putTestData(stub, uploads, done);
+            }
+        });
+    }
+
+    /**
+     * @return the PutTestData calls uploading what the node reported missing, or null if the call
+     * did not fail for missing test data
+     */
+    private static List<PutTestDataRequest> missingTestData(PreparedRequest request, Status status, Metadata trailers) {
+        String listed = trailers != null ? trailers.get(MISSING_TEST_DATA) : null;
+        if (status.getCode() != Status.Code.FAILED_PRECONDITION || listed == null) {
+            return null;
+        }
+        // "*" when too many are missing to list
+        Collection<String> hashes = listed.equals("*") ? request.testData().keySet() : Arrays.asList(listed.split(","));
+
+        List<PutTestDataRequest> uploads = new ArrayList<>();
+        PutTestDataRequest.Builder upload = PutTestDataRequest.newBuilder();
+        long uploadBytes = 0;
+        for (String hash : hashes) {
+            String data = request.testData().get(hash);
+            if (data == null) {
+                continue;
+            }
+            ByteString bytes = ByteString.copyFromUtf8(data);
+            if (upload.getBlobsCount() > 0 && uploadBytes + bytes.size() > PUT_BATCH_BYTES) {
+                uploads.add(upload.build());
+                upload = PutTestDataRequest.newBuilder();
+                uploadBytes = 0;
+            }
+            upload.addBlobs(TestDataBlob.newBuilder().setHash(hash).setData(bytes));
+            uploadBytes += bytes.size();
+        }
+        if (upload.getBlobsCount() > 0) {
+            uploads.add(upload.build());
+        }
+        return uploads.isEmpty() ? null : uploads;
+    }
+
+    private PreparedRequest buildRequest(String language, String code, List<TestCase> testCases,
+                                         JudgingMode judgingMode, String compilerProfile, OutputCheck outputCheck,
+                                         ResponseVerbosity verbosity) {
+        CodeExecutionRequest.Builder requestBuilder = CodeExecutionRequest.newBuilder()
+                .setLanguage(language)
+                .setCode(code)
+                .setJudgingMode(judgingMode)
+                .setVerbosity(verbosity);
+        if (compilerProfile != null) {
+            requestBuilder.setCompilerProfile(compilerProfile);
+        }
+        if (outputCheck != null) {
+            requestBuilder.setComparisonPolicy(outputCheck.policy());
+            if (outputCheck.floatEpsilon() != null) {
+                requestBuilder.setFloatEpsilon(outputCheck.floatEpsilon());
+            }
+        }
+
+        // Hash to data of everything sent by reference, for uploading it to a node that lacks it
+        Map<String, String> testData = new HashMap<>();
+        for (TestCase testCase : testCases) {
+            ExecutionTestCase.Builder grpcTestCase = ExecutionTestCase.newBuilder()
+                    .setSample(testCase.isSample());
+            if (sendsByReference(testCase.getInput())) {
+                grpcTestCase.setInputHash(testCase.getInputHash());
+                testData.put(grpcTestCase.getInputHash(), testCase.getInput());
+            } else {
+                grpcTestCase.setInput(testCase.getInput());
+            }
+            if (sendsByReference(testCase.getExpectedOutput())) {
+                grpcTestCase.setExpectedOutputHash(testCase.getExpectedOutputHash());
+                testData.put(grpcTestCase.getExpectedOutputHash(), testCase.getExpectedOutput());
+            } else {
+                grpcTestCase.setExpectedOutput(testCase.getExpectedOutput());
+            }
+            requestBuilder.addTestCases(grpcTestCase);
         }
+
+        return new PreparedRequest(requestBuilder.build(), testData);
+    }
+
+    private boolean sendsByReference(String data) {
+        return testDataByReference && data != null && data.length() >= testDataByReferenceMinChars;
+    }
+
+    /**
+     * How a test's output is compared with the expected output.
+     *
+     * @param floatEpsilon tolerance for FLOAT_EPSILON, null for langs-service's default
+     */
+    public record OutputCheck(ComparisonPolicy policy, Double floatEpsilon) {
+
+        /**
+         * @param policy a ComparisonPolicy name, null for TRIMMED_EXACT
+         * @return null for the default check
+         * @throws IllegalArgumentException if the policy is unknown or the epsilon is not positive
+         */
+        public static OutputCheck of(String policy, Double floatEpsilon) {
+            if (floatEpsilon != null && !(floatEpsilon > 0)) {
+                throw new IllegalArgumentException("floatEpsilon must be positive: " + floatEpsilon);
+            }
+            if (policy == null) {
+                return floatEpsilon != null ? new OutputCheck(ComparisonPolicy.TRIMMED_EXACT, floatEpsilon) : null;
+            }
+            for (ComparisonPolicy candidate : ComparisonPolicy.values()) {
+                if (candidate != ComparisonPolicy.UNRECOGNIZED && candidate.name().equals(policy)) {
+                    return new OutputCheck(candidate, floatEpsilon);
+                }
+            }
+            throw new IllegalArgumentException("Unknown comparisonPolicy: " + policy);
+        }
+    }
+
+    /**
+     * A request with its test data sent by reference, keyed by hash.
+     */
+    private record PreparedRequest(CodeExecutionRequest request, Map<String, String> testData) {
+    }
+
+    /**
+     * Helper method to check if the connection is healthy. Answers from the cached results of the
+     * background health checks, without a call to langs-service.
+     *
+     * @return true if at least one langs-service node passed a recent health check
+     */
+    public boolean isHealthy() {
+        return balancer.hasHealthyNode();
+    }
+
+    /**
+     * @return for each language id, whether a healthy langs-service node currently has its runner up
+     */
+    public Map<String, Boolean> getLanguageHealth() {
+        return balancer.getLanguageHealth();
     }
 
     // Inner class for test cases (matches your server's TestCase entity)
     public static class TestCase {
         private String input;
         private String expectedOutput;
+        private boolean sample;
+        private volatile Hash inputHash;
+        private volatile Hash expectedOutputHash;
 
         public TestCase() {}
 
@@ -182,6 +500,11 @@ public class CodeExecutionGrpcClient {
             this.expectedOutput = expectedOutput;
         }
 
+        public TestCase(String input, String expectedOutput, boolean sample) {
+            this(input, expectedOutput);
+            this.sample = sample;
+        }
+
         public String getInput() {
             return input;
         }
@@ -197,5 +520,45 @@ public class CodeExecutionGrpcClient {
         public void setExpectedOutput(String expectedOutput) {
             this.expectedOutput = expectedOutput;
         }
+
+        public boolean isSample() {
+            return sample;
+        }
+
+        public void setSample(boolean sample) {
+            this.sample = sample;
+        }
+
+        // SHA-256 of the input, computed once for test cases shared between submissions
+        String getInputHash() {
+            Hash hash = inputHash;
+            if (hash == null || hash.data() != input) {
+                hash = Hash.of(input);
+                inputHash = hash;
+            }
+            return hash.hex();
+        }
+
+        String getExpectedOutputHash() {
+            Hash hash = expectedOutputHash;
+            if (hash == null || hash.data() != expectedOutput) {
+                hash = Hash.of(expectedOutput);
+                expectedOutputHash = hash;
+            }
+            return hash.hex();
+        }
+
+        // The data is kept to notice a setter replacing it; compared by identity, which is enough
+        private record Hash(String data, String hex) {
+
+            static Hash of(String data) {
+                try {
+                    byte[] digest = MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8));
+                    return new Hash(data, HexFormat.of().formatHex(digest));
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException("SHA-256 is not available", e);
+                }
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,416 @@
+package com.BugMiner.codex.client;
+
+import com.BugMiner.codex.grpc.ExecutionServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Spreads calls over several langs-service instances.
+ * <p>
+ * Endpoints are {@code host:port} entries, each one a node, or {@code dns:///host:port} entries,
+ * which stand for every address the name resolves to and are resolved again on every refresh.
+ * A call goes to the healthy node with the fewest calls in flight (ties are broken randomly).
+ * Nodes are health-checked in the background with the standard gRPC health service, for the
+ * ExecutionService and for each language's runner. A node is skipped while its ExecutionService is
+ * not serving, and for a language while that language's runner is not serving. A node that fails a
+ * call with UNAVAILABLE is skipped right away until its next successful check. Idempotent calls
+ * that fail with UNAVAILABLE or RESOURCE_EXHAUSTED are retried on another node.
+ * <p>
+ * Health queries answer from the results of these checks; results older than the health TTL count
+ * as unhealthy, so a node that stops answering checks is not reported as up.
+ */
+@Slf4j
+public class LangsServiceBalancer implements AutoCloseable {
+
+    private static final String DNS_SCHEME = "dns:///";
+    private static final long HEALTH_CHECK_TIMEOUT_MS = 2000;
+
+    private final List<String> endpoints;
+    private final List<String> languages;
+    private final Function<String, ManagedChannel> channelFactory;
+    private final long refreshIntervalMs;
+    private final long healthTtlNanos;
+    private final int maxAttempts;
+
+    // Nodes by address
+    private final Map<String, LangsServiceNode> nodes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "langs-service-balancer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param endpoints         node addresses, see the class description
+     * @param languages         language ids whose runners are health-checked on every node
+     * @param refreshIntervalMs time between two rounds of name resolution and health checks
+     * @param healthTtlMs       how long a health check result is trusted
+     * @param maxAttempts       attempts per call, each on a different node
+     */
+    public LangsServiceBalancer(List<String> endpoints, List<String> languages, long refreshIntervalMs,
+                                long healthTtlMs, int maxAttempts) {
+        // Plaintext for development, use TLS in production
+        this(endpoints, languages, refreshIntervalMs, healthTtlMs, maxAttempts,
+                address -> ManagedChannelBuilder.forTarget(address).usePlaintext().build());
+    }
+
+    /**
+     * @param channelFactory opens the channel to a node address, e.g. an in-process channel in tests
+     */
+    LangsServiceBalancer(List<String> endpoints, List<String> languages, long refreshIntervalMs,
+                         long healthTtlMs, int maxAttempts, Function<String, ManagedChannel> channelFactory) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("No langs-service endpoints configured");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.languages = List.copyOf(languages);
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.healthTtlNanos = TimeUnit.MILLISECONDS.toNanos(healthTtlMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.channelFactory = channelFactory;
+    }
+
+    public void start() {
+        refresh();
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a unary call on the least loaded healthy node.
+     *
+     * @param language   language id of the submission, preferring nodes whose runner for it is up
+     * @param idempotent whether the call may be retried on another node after a retryable failure
+     * @throws StatusRuntimeException the failure of the last attempt, UNAVAILABLE if there is no node at all
+     */
+    public <T> T call(String language, Function<LangsServiceNode, T> call, boolean idempotent) {
+        Set<LangsServiceNode> tried = new HashSet<>();
+        StatusRuntimeException failure = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            LangsServiceNode node = pick(tried, language);
+            if (node == null) {
+                break;
+            }
+            tried.add(node);
+            node.callStarted();
+            try {
+                return call.apply(node);
+            } catch (StatusRuntimeException e) {
+                failure = e;
+                markFailed(node, e.getStatus());
+                if (!idempotent || !isRetryable(e.getStatus())) {
+                    throw e;
+                }
+                log.warn("Call to langs-service at {} failed with {}, trying another node",
+                        node.getAddress(), e.getStatus().getCode());
+            } finally {
+                node.callFinished();
+            }
+        }
+        throw failure != null ? failure
+                : Status.UNAVAILABLE.withDescription("No langs-service node available").asRuntimeException();
+    }
+
+    /**
+     * Start a server-streaming call on the least loaded healthy node. A call that fails with a
+     * retryable status before delivering anything is restarted on another node.
+     *
+     * @param language language id of the submission, preferring nodes whose runner for it is up
+     * @param start    starts the call on the given node, delivering to the given observer
+     */
+    public <T> void stream(String language, BiConsumer<LangsServiceNode, StreamObserver<T>> start,
+                           StreamObserver<T> observer) {
+        new RetryingStream<>(language, start, observer).startNext();
+    }
+
+    /**
+     * Run a unary call on the least loaded healthy node without blocking the calling thread. The call
+     * is treated as idempotent: a retryable failure restarts it on another node.
+     *
+     * @param language language id of the submission, preferring nodes whose runner for it is up
+     * @param start    starts the call on the given node, delivering to the given observer
+     * @return completed with the response on a gRPC thread, or exceptionally with the last failure
+     */
+    public <T> CompletableFuture<T> callAsync(String language, BiConsumer<LangsServiceNode, StreamObserver<T>> start) {
+        CompletableFuture<T> response = new CompletableFuture<>();
+        // A unary response arrives as a single message, so the stream retry rules apply as they are
+        stream(language, start, new StreamObserver<>() {
+            @Override
+            public void onNext(T value) {
+                response.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                response.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                response.completeExceptionally(
+                        Status.INTERNAL.withDescription("Call completed without a response").asRuntimeException());
+            }
+        });
+        return response;
+    }
+
+    /**
+     * @return true if at least one node passed a health check within the health TTL
+     */
+    public boolean hasHealthyNode() {
+        return nodes.values().stream().anyMatch(this::isReportedHealthy);
+    }
+
+    /**
+     * @return for each checked language id, whether some healthy node currently serves it
+     */
+    public Map<String, Boolean> getLanguageHealth() {
+        Map<String, Boolean> health = new LinkedHashMap<>();
+        for (String language : languages) {
+            health.put(language, nodes.values().stream()
+                    .anyMatch(node -> isReportedHealthy(node) && node.servesLanguage(language)));
+        }
+        return health;
+    }
+
+    private boolean isReportedHealthy(LangsServiceNode node) {
+        return node.isHealthy() && node.isCheckFresh(healthTtlNanos);
+    }
+
+    // The healthy node with the fewest calls in flight, or any untried node if none is healthy
+    LangsServiceNode pick(Set<LangsServiceNode> excluded, String language) {
+        LangsServiceNode best = pick(excluded, language, true);
+        return best != null ? best : pick(excluded, language, false);
+    }
+
+    private LangsServiceNode pick(Set<LangsServiceNode> excluded, String language, boolean healthyOnly) {
+        LangsServiceNode best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        int ties = 0;
+        for (LangsServiceNode node : nodes.values()) {
+            if (excluded.contains(node)
+                    || (healthyOnly && !(node.isHealthy() && node.servesLanguage(language)))) {
+                continue;
+            }
+            int load = node.getOutstanding();
+            if (load < bestLoad) {
+                best = node;
+                bestLoad = load;
+                ties = 1;
+            } else if (load == bestLoad && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                // Reservoir sampling over equally loaded nodes, so idle nodes share the load evenly
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private void markFailed(LangsServiceNode node, Status status) {
+        if (status.getCode() == Status.Code.UNAVAILABLE && node.setHealthy(false)) {
+            log.warn("langs-service at {} is unavailable, skipping it until it passes a health check", node.getAddress());
+        }
+    }
+
+    private static boolean isRetryable(Status status) {
+        // UNAVAILABLE: the node could not be reached; RESOURCE_EXHAUSTED: its admission queue is full
+        return status.getCode() == Status.Code.UNAVAILABLE || status.getCode() == Status.Code.RESOURCE_EXHAUSTED;
+    }
+
+    private void refresh() {
+        try {
+            Set<String> addresses = resolve();
+            for (String address : addresses) {
+                nodes.computeIfAbsent(address, this::openNode);
+            }
+            for (LangsServiceNode node : new ArrayList<>(nodes.values())) {
+                if (!addresses.contains(node.getAddress())) {
+                    nodes.remove(node.getAddress());
+                    node.shutdown();
+                    log.info("Removed langs-service at {}", node.getAddress());
+                }
+            }
+            nodes.values().forEach(this::checkHealth);
+        } catch (RuntimeException e) {
+            log.warn("Refreshing langs-service nodes failed", e);
+        }
+    }
+
+    private LangsServiceNode openNode(String address) {
+        log.info("Added langs-service at {}", address);
+        return new LangsServiceNode(address, channelFactory.apply(address));
+    }
+
+    private Set<String> resolve() {
+        Set<String> addresses = new LinkedHashSet<>();
+        for (String endpoint : endpoints) {
+            if (!endpoint.startsWith(DNS_SCHEME)) {
+                addresses.add(endpoint);
+                continue;
+            }
+            String target = endpoint.substring(DNS_SCHEME.length());
+            int separator = target.lastIndexOf(':');
+            String host = target.substring(0, separator);
+            String port = target.substring(separator + 1);
+            try {
+                for (InetAddress address : InetAddress.getAllByName(host)) {
+                    String ip = address.getHostAddress();
+                    addresses.add((ip.contains(":") ? "[" + ip + "]" : ip) + ":" + port);
+                }
+            } catch (UnknownHostException e) {
+                // Keep the nodes of this name until it resolves again
+                log.warn("Could not resolve langs-service endpoint {}: {}", endpoint, e.getMessage());
+                nodes.keySet().stream().filter(address -> address.endsWith(":" + port)).forEach(addresses::add);
+            }
+        }
+        return addresses;
+    }
+
+    private void checkHealth(LangsServiceNode node) {
+        check(node, ExecutionServiceGrpc.SERVICE_NAME, (status, error) -> {
+            // A server without the health service is judged by the calls it serves
+            boolean healthy = status == HealthCheckResponse.ServingStatus.SERVING
+                    || (error != null && error.getCode() == Status.Code.UNIMPLEMENTED);
+            updateHealth(node, healthy, status != null ? status.name() : error.getCode().name());
+            if (error == null || error.getCode() == Status.Code.UNIMPLEMENTED) {
+                node.checkCompleted();
+            }
+        });
+        for (String language : languages) {
+            check(node, language, (status, error) -> {
+                // A language the node publishes no status for is left to the ExecutionService status
+                boolean serving = status == HealthCheckResponse.ServingStatus.SERVING
+                        || (error != null && (error.getCode() == Status.Code.UNIMPLEMENTED
+                        || error.getCode() == Status.Code.NOT_FOUND));
+                if (node.setLanguageServing(language, serving)) {
+                    log.info("{} runner of langs-service at {} is {}", language, node.getAddress(),
+                            serving ? "up" : "down");
+                }
+            });
+        }
+    }
+
+    // Exactly one of the two arguments of the callback is set
+    private void check(LangsServiceNode node, String service,
+                       BiConsumer<HealthCheckResponse.ServingStatus, Status> callback) {
+        HealthCheckRequest request = HealthCheckRequest.newBuilder()
+                .setService(service)
+                .build();
+        HealthGrpc.newStub(node.getChannel())
+                .withDeadlineAfter(HEALTH_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .check(request, new StreamObserver<>() {
+                    @Override
+                    public void onNext(HealthCheckResponse response) {
+                        callback.accept(response.getStatus(), null);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        callback.accept(null, Status.fromThrowable(t));
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+    }
+
+    private void updateHealth(LangsServiceNode node, boolean healthy, String reason) {
+        if (node.setHealthy(healthy)) {
+            if (healthy) {
+                log.info("langs-service at {} is healthy again", node.getAddress());
+            } else {
+                log.warn("langs-service at {} failed its health check ({}), skipping it", node.getAddress(), reason);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        nodes.values().forEach(LangsServiceNode::shutdown);
+        nodes.values().forEach(LangsServiceNode::awaitTermination);
+        nodes.clear();
+    }
+
+    /**
+     * Forwards a streaming call to the caller's observer, restarting it on another node when it
+     * fails retryably before the first message.
+     */
+    private final class RetryingStream<T> {
+
+        private final String language;
+        private final BiConsumer<LangsServiceNode, StreamObserver<T>> start;
+        private final StreamObserver<T> observer;
+        private final Set<LangsServiceNode> tried = ConcurrentHashMap.newKeySet();
+
+        RetryingStream(String language, BiConsumer<LangsServiceNode, StreamObserver<T>> start,
+                       StreamObserver<T> observer) {
+            this.language = language;
+            this.start = start;
+            this.observer = observer;
+        }
+
+        void startNext() {
+            LangsServiceNode node = tried.size() < maxAttempts ? pick(tried, language) : null;
+            if (node == null) {
+                observer.onError(Status.UNAVAILABLE.withDescription("No langs-service node available").asRuntimeException());
+                return;
+            }
+            tried.add(node);
+            node.callStarted();
+            start.accept(node, new StreamObserver<>() {
+                private boolean received;
+
+                @Override
+                public void onNext(T value) {
+                    received = true;
+                    observer.onNext(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    node.callFinished();
+                    Status status = Status.fromThrowable(t);
+                    markFailed(node, status);
+                    if (!received && isRetryable(status) && tried.size() < maxAttempts) {
+                        log.warn("Stream to langs-service at {} failed with {}, trying another node",
+                                node.getAddress(), status.getCode());
+                        startNext();
+                    } else {
+                        observer.onError(t);
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    node.callFinished();
+                    observer.onCompleted();
+                }
+            });
+        }
+    }
+}
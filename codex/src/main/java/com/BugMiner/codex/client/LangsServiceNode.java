@@ -0,0 +1,116 @@
+package com.BugMiner.codex.client;
+
+import com.BugMiner.codex.grpc.ExecutionServiceGrpc;
+import io.grpc.ManagedChannel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One langs-service instance as seen by the {@link LangsServiceBalancer}: its channel, the number of
+ * calls currently in flight on it and what its last health check reported.
+ */
+class LangsServiceNode {
+
+    private final String address;
+    private final ManagedChannel channel;
+    private final ExecutionServiceGrpc.ExecutionServiceBlockingStub blockingStub;
+    private final ExecutionServiceGrpc.ExecutionServiceStub asyncStub;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // Optimistic until the first health check says otherwise
+    private volatile boolean healthy = true;
+    // Serving status of each language's runner; a language the node reports nothing for is assumed served
+    private final Map<String, Boolean> languagesServing = new ConcurrentHashMap<>();
+    private volatile long lastCheckNanos;
+    private volatile boolean checked;
+
+    LangsServiceNode(String address, ManagedChannel channel) {
+        this.address = address;
+        this.channel = channel;
+        this.blockingStub = ExecutionServiceGrpc.newBlockingStub(channel);
+        this.asyncStub = ExecutionServiceGrpc.newStub(channel);
+    }
+
+    String getAddress() {
+        return address;
+    }
+
+    ManagedChannel getChannel() {
+        return channel;
+    }
+
+    ExecutionServiceGrpc.ExecutionServiceBlockingStub getBlockingStub() {
+        return blockingStub;
+    }
+
+    ExecutionServiceGrpc.ExecutionServiceStub getAsyncStub() {
+        return asyncStub;
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    void callStarted() {
+        outstanding.incrementAndGet();
+    }
+
+    void callFinished() {
+        outstanding.decrementAndGet();
+    }
+
+    boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * @return true if this changed the node's health
+     */
+    boolean setHealthy(boolean healthy) {
+        boolean changed = this.healthy != healthy;
+        this.healthy = healthy;
+        return changed;
+    }
+
+    boolean servesLanguage(String language) {
+        return language == null || languagesServing.getOrDefault(language, true);
+    }
+
+    /**
+     * @return true if this changed the language's status
+     */
+    boolean setLanguageServing(String language, boolean serving) {
+        Boolean previous = languagesServing.put(language, serving);
+        return (previous == null || previous) != serving;
+    }
+
+    void checkCompleted() {
+        lastCheckNanos = System.nanoTime();
+        checked = true;
+    }
+
+    /**
+     * @return true if the node answered a health check within the given time
+     */
+    boolean isCheckFresh(long maxAgeNanos) {
+        return checked && System.nanoTime() - lastCheckNanos <= maxAgeNanos;
+    }
+
+    // Calls in flight finish, new ones are refused
+    void shutdown() {
+        channel.shutdown();
+    }
+
+    void awaitTermination() {
+        try {
+            if (!channel.awaitTermination(5, TimeUnit.SECONDS)) {
+                channel.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            channel.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.BugMiner.codex.controller;
 
 import com.BugMiner.codex.client.CodeExecutionGrpcClient;
+import com.BugMiner.codex.dto.SubmissionRequest;
+import com.BugMiner.codex.dto.SubmissionResult;
+import com.BugMiner.codex.grpc.CodeExecutionResponse;
+import com.BugMiner.codex.grpc.ExecutionTestResult;
+import com.BugMiner.codex.grpc.JudgingMode;
+import com.BugMiner.codex.grpc.ResponseVerbosity;
 import com.BugMiner.codex.service.CodeExecutionService;
+import com.BugMiner.codex.service.ProblemTestSetCache;
+import com.BugMiner.codex.service.SubmissionHistoryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -16,73 +30,191 @@ import java.util.stream.Collectors;
 @Slf4j
 public class CodeExecutionController {
 
+    // Extra time the HTTP request is kept open after the gRPC deadline, so the deadline fires first
+    private static final long RESPONSE_GRACE_MS = 5000;
+
     private final CodeExecutionService executionService;
+    private final ProblemTestSetCache testSetCache;
+    private final SubmissionHistoryService submissionHistory;
+
+    // End-to-end limit for /execute, from receiving the request to having the verdict
+    @Value("${execution.request-timeout-seconds:60}")
+    private long requestTimeoutSeconds;
+
+    /*
+     * The execution endpoints are asynchronous: the Tomcat thread is released as soon as the call to
+     * langs-service has been started, and the response is written when the gRPC callback arrives.
+     * Pending submissions therefore cost a connection and a little memory, not a thread each.
+     */
 
     @PostMapping("/execute")
-    public ResponseEntity<ExecutionResponse> executeCode(@RequestBody ExecutionRequest request) {
+    public DeferredResult<ResponseEntity<ExecutionResponse>> executeCode(@RequestBody ExecutionRequest request) {
         log.info("Received execution request for language: {}", request.getLanguage());
 
         try {
             // Convert request to gRPC client test cases
             List<CodeExecutionGrpcClient.TestCase> testCases = request.getTestCases().stream()
-                    .map(tc -> new CodeExecutionGrpcClient.TestCase(tc.getInput(), tc.getExpectedOutput()))
+                    .map(tc -> new CodeExecutionGrpcClient.TestCase(tc.getInput(), tc.getExpectedOutput(), tc.isSample()))
                     .collect(Collectors.toList());
 
             // Execute code
-            CodeExecutionService.ExecutionResult result = executionService.executeCode(
+            ResponseVerbosity verbosity = verbosityOf(request);
+            CompletableFuture<CodeExecutionResponse> result = executionService.executeCodeAsync(
                     request.getLanguage(),
                     request.getCode(),
-                    testCases
+                    testCases,
+                    optionOf(JudgingMode.class, "judgingMode", request.getJudgingMode(), JudgingMode.ALL),
+                    request.getCompilerProfile(),
+                    outputCheckOf(request),
+                    verbosity,
+                    requestTimeoutSeconds
             );
 
-            // Convert to response
-            ExecutionResponse response = convertToResponse(result);
-
-            return ResponseEntity.ok(response);
+            return respondWhenDone(result, verbosity, requestTimeoutSeconds);
 
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid execution request: {}", e.getMessage());
+            return respondNow(errorResponse(400, e.getMessage()));
         } catch (Exception e) {
             log.error("Error executing code", e);
-
-            ExecutionResponse errorResponse = new ExecutionResponse();
-            errorResponse.setSuccess(false);
-            errorResponse.setErrorMessage("Internal server error: " + e.getMessage());
-            errorResponse.setExitCode(-1);
-
-            return ResponseEntity.status(500).body(errorResponse);
+            return respondNow(errorResponse(500, "Internal server error: " + e.getMessage()));
         }
     }
 
     @PostMapping("/execute-with-timeout")
-    public ResponseEntity<ExecutionResponse> executeCodeWithTimeout(
+    public DeferredResult<ResponseEntity<ExecutionResponse>> executeCodeWithTimeout(
             @RequestBody ExecutionRequestWithTimeout request) {
 
         log.info("Received execution request with timeout: {} seconds", request.getTimeoutSeconds());
 
         try {
             List<CodeExecutionGrpcClient.TestCase> testCases = request.getTestCases().stream()
-                    .map(tc -> new CodeExecutionGrpcClient.TestCase(tc.getInput(), tc.getExpectedOutput()))
+                    .map(tc -> new CodeExecutionGrpcClient.TestCase(tc.getInput(), tc.getExpectedOutput(), tc.isSample()))
                     .collect(Collectors.toList());
 
-            CodeExecutionService.ExecutionResult result = executionService.executeCodeWithTimeout(
+            ResponseVerbosity verbosity = verbosityOf(request);
+            CompletableFuture<CodeExecutionResponse> result = executionService.executeCodeAsync(
                     request.getLanguage(),
                     request.getCode(),
                     testCases,
+                    optionOf(JudgingMode.class, "judgingMode", request.getJudgingMode(), JudgingMode.ALL),
+                    request.getCompilerProfile(),
+                    outputCheckOf(request),
+                    verbosity,
                     request.getTimeoutSeconds()
             );
 
-            ExecutionResponse response = convertToResponse(result);
-            return ResponseEntity.ok(response);
+            return respondWhenDone(result, verbosity, request.getTimeoutSeconds());
 
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid execution request: {}", e.getMessage());
+            return respondNow(errorResponse(400, e.getMessage()));
         } catch (Exception e) {
             log.error("Error executing code with timeout", e);
+            return respondNow(errorResponse(500, "Internal server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Judge a submission against all test cases of a problem, public and hidden, as stored in codex.
+     * Only the public test cases' data is returned; hidden ones report their outcome only. The test
+     * data comes from the stored test set, so langs-service does not send it back.
+     */
+    @PostMapping("/submit")
+    public DeferredResult<ResponseEntity<SubmissionResult>> submit(@RequestBody SubmissionRequest request) {
+        log.info("Received submission for problem {} in language: {}", request.getProblemId(), request.getLanguage());
+
+        DeferredResult<ResponseEntity<SubmissionResult>> deferred =
+                new DeferredResult<>(TimeUnit.SECONDS.toMillis(requestTimeoutSeconds) + RESPONSE_GRACE_MS);
+        deferred.onTimeout(() -> deferred.setErrorResult(ResponseEntity.status(504)
+                .body(new SubmissionResult(false, List.of(), "Execution timeout"))));
+
+        ProblemTestSetCache.TestSet testSet = request.getProblemId() != null
+                ? testSetCache.get(request.getProblemId()).orElse(null)
+                : null;
+        if (testSet == null) {
+            deferred.setResult(ResponseEntity.notFound().build());
+            return deferred;
+        }
+
+        executionService.executeCodeAsync(request.getLanguage(), request.getUserCode(), testSet.testCases(),
+                        JudgingMode.ALL, testSet.compilerProfile(), testSet.outputCheck(), ResponseVerbosity.DIFF,
+                        requestTimeoutSeconds)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("Error judging submission for problem {}", request.getProblemId(), error);
+                        deferred.setResult(ResponseEntity.status(500)
+                                .body(new SubmissionResult(false, List.of(), "Internal server error: " + error.getMessage())));
+                    } else {
+                        SubmissionResult submissionResult = executionService.toSubmissionResult(testSet, result);
+                        // Calls that failed in langs-service judged nothing, so they are not part of the history
+                        if (result.getExitCode() != CodeExecutionGrpcClient.CALL_FAILED_EXIT_CODE) {
+                            submissionHistory.record(request.getProblemId(), request.getUserId(), request.getLanguage(),
+                                    request.getUserCode(), submissionResult, null);
+                        }
+                        deferred.setResult(ResponseEntity.ok(submissionResult));
+                    }
+                });
+        return deferred;
+    }
+
+    private DeferredResult<ResponseEntity<ExecutionResponse>> respondWhenDone(
+            CompletableFuture<CodeExecutionResponse> execution, ResponseVerbosity verbosity, long timeoutSeconds) {
+        DeferredResult<ResponseEntity<ExecutionResponse>> deferred =
+                new DeferredResult<>(TimeUnit.SECONDS.toMillis(timeoutSeconds) + RESPONSE_GRACE_MS);
+        // Only reached if the gRPC deadline did not end the call, e.g. a callback that never came
+        deferred.onTimeout(() -> deferred.setErrorResult(errorResponse(504, "Execution timeout")));
+        execution.whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Error executing code", error);
+                deferred.setResult(errorResponse(500, "Internal server error: " + error.getMessage()));
+            } else {
+                deferred.setResult(ResponseEntity.ok(convertToResponse(result, verbosity)));
+            }
+        });
+        return deferred;
+    }
 
-            ExecutionResponse errorResponse = new ExecutionResponse();
-            errorResponse.setSuccess(false);
-            errorResponse.setErrorMessage("Internal server error: " + e.getMessage());
-            errorResponse.setExitCode(-1);
+    private static DeferredResult<ResponseEntity<ExecutionResponse>> respondNow(ResponseEntity<ExecutionResponse> response) {
+        DeferredResult<ResponseEntity<ExecutionResponse>> deferred = new DeferredResult<>();
+        deferred.setResult(response);
+        return deferred;
+    }
 
-            return ResponseEntity.status(500).body(errorResponse);
+    /**
+     * @return the constant named by a request field, or the default if the field is absent
+     * @throws IllegalArgumentException if the name is not one of the constants
+     */
+    private static <E extends Enum<E>> E optionOf(Class<E> type, String field, String name, E defaultValue) {
+        if (name == null) {
+            return defaultValue;
+        }
+        // Proto enums also have UNRECOGNIZED, which is not a value a client may ask for
+        if (!name.equals("UNRECOGNIZED")) {
+            for (E constant : type.getEnumConstants()) {
+                if (constant.name().equals(name)) {
+                    return constant;
+                }
+            }
         }
+        throw new IllegalArgumentException("Unknown " + field + ": " + name);
+    }
+
+    private static CodeExecutionGrpcClient.OutputCheck outputCheckOf(ExecutionRequest request) {
+        return CodeExecutionGrpcClient.OutputCheck.of(request.getComparisonPolicy(), request.getFloatEpsilon());
+    }
+
+    private static ResponseVerbosity verbosityOf(ExecutionRequest request) {
+        return optionOf(ResponseVerbosity.class, "verbosity", request.getVerbosity(), ResponseVerbosity.FULL);
+    }
+
+    private static ResponseEntity<ExecutionResponse> errorResponse(int status, String message) {
+        ExecutionResponse errorResponse = new ExecutionResponse();
+        errorResponse.setSuccess(false);
+        errorResponse.setErrorMessage(message);
+        errorResponse.setExitCode(-1);
+
+        return ResponseEntity.status(status).body(errorResponse);
     }
 
     @GetMapping("/health")
@@ -92,30 +224,46 @@ public class CodeExecutionController {
         HealthResponse response = new HealthResponse();
         response.setHealthy(isHealthy);
         response.setMessage(isHealthy ? "langs-service is available" : "langs-service is unavailable");
+        response.setLanguages(executionService.getLanguageHealth());
 
         return ResponseEntity.ok(response);
     }
 
-    private ExecutionResponse convertToResponse(CodeExecutionService.ExecutionResult result) {
+    // Maps the gRPC response straight to the REST response; fields the verbosity left out stay null
+    private ExecutionResponse convertToResponse(CodeExecutionResponse result, ResponseVerbosity verbosity) {
+        int passedTests = CodeExecutionService.countPassed(result);
+
         ExecutionResponse response = new ExecutionResponse();
-        response.setSuccess(result.isSuccess());
+        response.setSuccess(result.getSuccess());
         response.setExitCode(result.getExitCode());
         response.setErrorMessage(result.getErrorMessage());
-        response.setPassedTests(result.getPassedTests());
-        response.setTotalTests(result.getTotalTests());
-        response.setAllTestsPassed(result.isAllTestsPassed());
+        response.setPassedTests(passedTests);
+        response.setTotalTests(result.getTestResultsCount());
+        response.setAllTestsPassed(passedTests == result.getTestResultsCount() && result.getSuccess());
+        response.setQueueWaitMs(result.getQueueWaitMs());
+        response.setCompileErrors(result.getCompileErrorsList().stream()
+                .map(CodeExecutionService::convertGrpcCompileError)
+                .collect(Collectors.toList()));
 
         // Convert test results
-        List<TestResultResponse> testResults = result.getTestResults().stream()
-                .map(tr -> {
-                    TestResultResponse trr = new TestResultResponse();
-                    trr.setInput(tr.getInput());
-                    trr.setExpectedOutput(tr.getExpectedOutput());
-                    trr.setActualOutput(tr.getActualOutput());
-                    trr.setPassed(tr.isPassed());
-                    return trr;
-                })
-                .collect(Collectors.toList());
+        List<TestResultResponse> testResults = new ArrayList<>(result.getTestResultsCount());
+        for (ExecutionTestResult tr : result.getTestResultsList()) {
+            TestResultResponse trr = new TestResultResponse();
+            trr.setPassed(tr.getPassed());
+            trr.setVerdict(tr.getVerdict().name());
+            if (verbosity == ResponseVerbosity.FULL) {
+                trr.setInput(tr.getInput());
+                trr.setExpectedOutput(tr.getExpectedOutput());
+            }
+            if (verbosity != ResponseVerbosity.VERDICT) {
+                trr.setActualOutput(tr.getActualOutput());
+                trr.setStderr(tr.getStderr());
+                trr.setDiffLine(tr.getDiffLine());
+                trr.setDiffColumn(tr.getDiffColumn());
+                trr.setDiffMessage(tr.getDiffMessage());
+            }
+            testResults.add(trr);
+        }
 
         response.setTestResults(testResults);
         return response;
@@ -126,6 +274,12 @@ public class CodeExecutionController {
         private String language;
         private String code;
         private List<TestCaseRequest> testCases;
+        private String judgingMode; // ALL (default), STOP_ON_FIRST_FAILURE or SAMPLE_ONLY
+        private String compilerProfile; // e.g. gnu++20-O2 for C++, the language's default when absent
+        private String verbosity; // FULL (default), DIFF (no test data, truncated output) or VERDICT
+        // TRIMMED_EXACT (default), WHITESPACE_TOKENS, EXACT, LINE_ENDING_INSENSITIVE or FLOAT_EPSILON
+        private String comparisonPolicy;
+        private Double floatEpsilon; // Tolerance for FLOAT_EPSILON, langs-service's default when absent
 
         // Getters and setters
         public String getLanguage() { return language; }
@@ -136,6 +290,21 @@ public class CodeExecutionController {
 
         public List<TestCaseRequest> getTestCases() { return testCases; }
         public void setTestCases(List<TestCaseRequest> testCases) { this.testCases = testCases; }
+
+        public String getJudgingMode() { return judgingMode; }
+        public void setJudgingMode(String judgingMode) { this.judgingMode = judgingMode; }
+
+        public String getCompilerProfile() { return compilerProfile; }
+        public void setCompilerProfile(String compilerProfile) { this.compilerProfile = compilerProfile; }
+
+        public String getVerbosity() { return verbosity; }
+        public void setVerbosity(String verbosity) { this.verbosity = verbosity; }
+
+        public String getComparisonPolicy() { return comparisonPolicy; }
+        public void setComparisonPolicy(String comparisonPolicy) { this.comparisonPolicy = comparisonPolicy; }
+
+        public Double getFloatEpsilon() { return floatEpsilon; }
+        public void setFloatEpsilon(Double floatEpsilon) { this.floatEpsilon = floatEpsilon; }
     }
 
     public static class ExecutionRequestWithTimeout extends ExecutionRequest {
@@ -148,12 +317,16 @@ public class CodeExecutionController {
     public static class TestCaseRequest {
         private String input;
         private String expectedOutput;
+        private boolean sample;
 
         public String getInput() { return input; }
         public void setInput(String input) { this.input = input; }
 
         public String getExpectedOutput() { return expectedOutput; }
         public void setExpectedOutput(String expectedOutput) { this.expectedOutput = expectedOutput; }
+
+        public boolean isSample() { return sample; }
+        public void setSample(boolean sample) { this.sample = sample; }
     }
 
     public static class ExecutionResponse {
@@ -164,6 +337,8 @@ public class CodeExecutionController {
         private int passedTests;
         private int totalTests;
         private boolean allTestsPassed;
+        private long queueWaitMs;
+        private List<CodeExecutionService.CompileError> compileErrors;
 
         // Getters and setters
         public boolean isSuccess() { return success; }
@@ -186,6 +361,12 @@ public class CodeExecutionController {
 
         public boolean isAllTestsPassed() { return allTestsPassed; }
         public void setAllTestsPassed(boolean allTestsPassed) { this.allTestsPassed = allTestsPassed; }
+
+        public long getQueueWaitMs() { return queueWaitMs; }
+        public void setQueueWaitMs(long queueWaitMs) { this.queueWaitMs = queueWaitMs; }
+
+        public List<CodeExecutionService.CompileError> getCompileErrors() { return compileErrors; }
+        public void setCompileErrors(List<CodeExecutionService.CompileError> compileErrors) { this.compileErrors = compileErrors; }
     }
 
     public static class TestResultResponse {
@@ -193,6 +374,11 @@ public class CodeExecutionController {
         private String expectedOutput;
         private String actualOutput;
         private boolean passed;
+        private String verdict;
+        private String stderr;
+        private long diffLine;
+        private long diffColumn;
+        private String diffMessage;
 
         // Getters and setters
         public String getInput() { return input; }
@@ -206,16 +392,35 @@ public class CodeExecutionController {
 
         public boolean isPassed() { return passed; }
         public void setPassed(boolean passed) { this.passed = passed; }
+
+        public String getVerdict() { return verdict; }
+        public void setVerdict(String verdict) { this.verdict = verdict; }
+
+        public String getStderr() { return stderr; }
+        public void setStderr(String stderr) { this.stderr = stderr; }
+
+        public long getDiffLine() { return diffLine; }
+        public void setDiffLine(long diffLine) { this.diffLine = diffLine; }
+
+        public long getDiffColumn() { return diffColumn; }
+        public void setDiffColumn(long diffColumn) { this.diffColumn = diffColumn; }
+
+        public String getDiffMessage() { return diffMessage; }
+        public void setDiffMessage(String diffMessage) { this.diffMessage = diffMessage; }
     }
 
     public static class HealthResponse {
         private boolean healthy;
         private String message;
+        private Map<String, Boolean> languages; // language id -> runner available
 
         public boolean isHealthy() { return healthy; }
         public void setHealthy(boolean healthy) { this.healthy = healthy; }
 
         public String getMessage() { return message; }
         public void setMessage(String message) { this.message = message; }
+
+        public Map<String, Boolean> getLanguages() { return languages; }
+        public void setLanguages(Map<String, Boolean> languages) { this.languages = languages; }
     }
 }
\ No newline at end of file
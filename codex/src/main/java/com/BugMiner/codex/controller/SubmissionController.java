@@ -0,0 +1,134 @@
+package com.BugMiner.codex.controller;
+
+import com.BugMiner.codex.dto.SubmissionPage;
+import com.BugMiner.codex.dto.SubmissionRequest;
+import com.BugMiner.codex.dto.SubmissionStatus;
+import com.BugMiner.codex.entity.JudgeJob;
+import com.BugMiner.codex.entity.Submission;
+import com.BugMiner.codex.service.JudgeQueueService;
+import com.BugMiner.codex.service.ProblemTestSetCache;
+import com.BugMiner.codex.service.SubmissionHistoryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous judging: a submission is queued and answered with its id at once, and its verdict is
+ * polled for, or long-polled with {@code waitSeconds}.
+ * <p>
+ * Judged submissions, through this queue or {@code /api/v1/execution/submit}, are kept in the
+ * history under {@code /history}.
+ */
+@RestController
+@RequestMapping("/api/v1/submissions")
+@RequiredArgsConstructor
+@Slf4j
+public class SubmissionController {
+
+    private static final long MAX_WAIT_SECONDS = 60;
+
+    private final JudgeQueueService judgeQueue;
+    private final ProblemTestSetCache testSetCache;
+    private final SubmissionHistoryService submissionHistory;
+
+    @PostMapping
+    public ResponseEntity<SubmissionStatus> submit(@RequestBody SubmissionRequest request) {
+        if (request.getProblemId() == null || testSetCache.get(request.getProblemId()).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        JudgeJob job = judgeQueue.enqueue(request.getProblemId(), request.getUserId(), request.getLanguage(),
+                request.getUserCode());
+        log.info("Queued submission {} for problem {} in language: {}", job.getId(), request.getProblemId(), request.getLanguage());
+
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/submissions/" + job.getId()))
+                .body(toStatus(job));
+    }
+
+    /**
+     * @param waitSeconds if the submission is not judged yet, wait up to this long (at most a minute)
+     *                    for its verdict before answering
+     */
+    @GetMapping("/{id}")
+    public DeferredResult<ResponseEntity<SubmissionStatus>> getSubmission(@PathVariable Long id,
+                                                                         @RequestParam(defaultValue = "0") long waitSeconds) {
+        JudgeJob job = judgeQueue.find(id).orElse(null);
+        if (job == null) {
+            return respondNow(ResponseEntity.notFound().build());
+        }
+        if (job.isFinished() || waitSeconds <= 0) {
+            return respondNow(ResponseEntity.ok(toStatus(job)));
+        }
+
+        DeferredResult<ResponseEntity<SubmissionStatus>> deferred =
+                new DeferredResult<>(TimeUnit.SECONDS.toMillis(Math.min(waitSeconds, MAX_WAIT_SECONDS)));
+        CompletableFuture<JudgeJob> finished = judgeQueue.whenFinished(id);
+        finished.thenAccept(done -> deferred.setResult(ResponseEntity.ok(toStatus(done))));
+        // The submission may have been judged by another instance meanwhile, so its state is read again
+        deferred.onTimeout(() -> {
+            judgeQueue.stopWaiting(id, finished);
+            deferred.setResult(ResponseEntity.ok(toStatus(judgeQueue.find(id).orElse(job))));
+        });
+        // Judged between the first read and registering for its completion
+        judgeQueue.find(id).filter(JudgeJob::isFinished).ifPresent(done -> {
+            judgeQueue.stopWaiting(id, finished);
+            finished.complete(done);
+        });
+        return deferred;
+    }
+
+    /**
+     * Judged submissions of a user, of a problem, or of a user on a problem, newest first.
+     *
+     * @param before the nextCursor of the previous page; omitted for the first page
+     */
+    @GetMapping("/history")
+    public ResponseEntity<SubmissionPage> getHistory(@RequestParam(required = false) String userId,
+                                                     @RequestParam(required = false) Long problemId,
+                                                     @RequestParam(required = false) String before,
+                                                     @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(submissionHistory.list(userId, problemId, before, limit));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid history request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/history/{id}")
+    public ResponseEntity<Submission> getHistoryEntry(@PathVariable Long id) {
+        return submissionHistory.find(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Number of judged submissions to a problem per verdict
+    @GetMapping("/history/stats")
+    public ResponseEntity<Map<String, Long>> getVerdictCounts(@RequestParam Long problemId) {
+        return ResponseEntity.ok(submissionHistory.countVerdicts(problemId));
+    }
+
+    // Submissions waiting to be stored in the history, and the ones lost on the way
+    @GetMapping("/history/writer")
+    public ResponseEntity<Map<String, Long>> getWriterCounts() {
+        return ResponseEntity.ok(submissionHistory.writerCounts());
+    }
+
+    private static DeferredResult<ResponseEntity<SubmissionStatus>> respondNow(ResponseEntity<SubmissionStatus> response) {
+        DeferredResult<ResponseEntity<SubmissionStatus>> deferred = new DeferredResult<>();
+        deferred.setResult(response);
+        return deferred;
+    }
+
+    private SubmissionStatus toStatus(JudgeJob job) {
+        return new SubmissionStatus(job.getId(), job.getStatus().name(), judgeQueue.resultOf(job), job.getErrorMessage());
+    }
+}
@@ -0,0 +1,13 @@
+package com.BugMiner.codex.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class SubmissionPage {
+    private List<SubmissionSummary> submissions; // Newest first
+    private String nextCursor; // Pass as "before" to get the next page; null on the last page
+}
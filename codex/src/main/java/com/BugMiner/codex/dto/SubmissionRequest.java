@@ -7,4 +7,5 @@ public class SubmissionRequest {
     private Long problemId;
     private String userCode;
     private String language; // e.g., "java", "python"
+    private String userId; // Who submits, recorded in the submission history; optional
 }
@@ -10,13 +10,16 @@ import java.util.List;
 public class SubmissionResult {
     private boolean allPassed;
     private List<TestCaseResult> testResults;
+    private String errorMessage; // Compile error or why the submission could not be judged, null otherwise
 
     @Data
     @AllArgsConstructor
     public static class TestCaseResult {
+        // Only filled in for public test cases, hidden ones report just the outcome
         private String input;
         private String expectedOutput;
         private String actualOutput;
         private boolean passed;
+        private String verdict;
     }
 }
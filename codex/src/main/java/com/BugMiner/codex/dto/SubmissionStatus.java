@@ -0,0 +1,13 @@
+package com.BugMiner.codex.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SubmissionStatus {
+    private Long submissionId;
+    private String status; // QUEUED, RUNNING, DONE or FAILED
+    private SubmissionResult result; // Once DONE
+    private String errorMessage; // Why the submission could not be judged, once FAILED
+}
@@ -0,0 +1,17 @@
+package com.BugMiner.codex.dto;
+
+import java.time.Instant;
+
+/**
+ * A submission as listed in the history, without its code.
+ */
+public interface SubmissionSummary {
+    Long getId();
+    Long getProblemId();
+    String getUserId();
+    String getLanguage();
+    String getVerdict();
+    int getPassedTests();
+    int getTotalTests();
+    Instant getCreatedAt();
+}
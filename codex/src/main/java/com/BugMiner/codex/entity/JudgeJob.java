@@ -0,0 +1,76 @@
+package com.BugMiner.codex.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A submission waiting in, or taken from, the judge queue. Its id is the submission id handed to
+ * the client.
+ */
+@Entity
+@Table(name = "judge_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JudgeJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long problemId;
+
+    // Who submitted, null if not given
+    private String userId;
+
+    @Column(nullable = false)
+    private String language;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String code;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    // Times the job was taken by a worker, including the current one
+    private int attempts;
+
+    // A queued job is not taken before this time, which backs off retries
+    @Column(nullable = false)
+    private Instant availableAt;
+
+    // When a worker took the job; a RUNNING job whose lease has expired is taken again
+    private Instant lockedAt;
+
+    // The SubmissionResult as JSON, once DONE
+    @Column(columnDefinition = "TEXT")
+    private String result;
+
+    // Why the job FAILED
+    @Column(length = 1000)
+    private String errorMessage;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    private Instant finishedAt;
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        // Judged; the verdict is in the result
+        DONE,
+        // Could not be judged, e.g. langs-service stayed unavailable through every attempt
+        FAILED
+    }
+}
@@ -29,6 +29,15 @@ public class Problem {
     @Column(length = 5000)
     private String defaultCode;
 
+    // Compiler flag set the problem is judged with, e.g. gnu++20-O2 for C++; null for the default
+    private String compilerProfile;
+
+    // How output is compared, a ComparisonPolicy name such as WHITESPACE_TOKENS; null for TRIMMED_EXACT
+    private String comparisonPolicy;
+
+    // Tolerance for FLOAT_EPSILON, null for langs-service's default
+    private Double floatEpsilon;
+
     @OneToMany(mappedBy = "problem", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<TestCase> testCases;
 }
@@ -0,0 +1,58 @@
+package com.BugMiner.codex.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A judged submission, kept as history. Written in batches by the SubmissionWriter.
+ */
+@Entity
+@Table(name = "submissions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Submission {
+
+    // Ids are allocated 50 at a time, which lets Hibernate batch the inserts; IDENTITY ids would not
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "submissions_seq")
+    @SequenceGenerator(name = "submissions_seq", sequenceName = "submissions_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long problemId;
+
+    // Who submitted, null if not given
+    private String userId;
+
+    @Column(nullable = false)
+    private String language;
+
+    // Only read for a single submission, list queries project it away
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String code;
+
+    // ACCEPTED, the verdict of the first failed test, or ERROR if the submission could not be run
+    @Column(nullable = false, length = 32)
+    private String verdict;
+
+    private boolean allPassed;
+
+    private int passedTests;
+
+    private int totalTests;
+
+    // Compile error or why the submission could not be judged
+    @Column(length = 1000)
+    private String errorMessage;
+
+    // The judge queue job, for submissions made through the queue
+    private Long judgeJobId;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+}
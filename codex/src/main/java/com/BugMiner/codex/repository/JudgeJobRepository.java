@@ -0,0 +1,29 @@
+package com.BugMiner.codex.repository;
+
+import com.BugMiner.codex.entity.JudgeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface JudgeJobRepository extends JpaRepository<JudgeJob, Long> {
+
+    /**
+     * Lock the oldest job that is due: queued and past its backoff, or running on a lease that
+     * expired before {@code leaseExpiredBefore}. Rows locked by other workers are skipped rather
+     * than waited for, so concurrent workers never take the same job. Must run in a transaction,
+     * which holds the lock until it ends.
+     */
+    @Query(value = """
+            SELECT * FROM judge_jobs
+            WHERE (status = 'QUEUED' AND available_at <= :now)
+               OR (status = 'RUNNING' AND locked_at < :leaseExpiredBefore)
+            ORDER BY id
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    Optional<JudgeJob> lockNextDue(@Param("now") Instant now, @Param("leaseExpiredBefore") Instant leaseExpiredBefore);
+}
@@ -0,0 +1,58 @@
+package com.BugMiner.codex.repository;
+
+import com.BugMiner.codex.dto.SubmissionSummary;
+import com.BugMiner.codex.entity.Submission;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The list queries are keyset paginated: each page starts after the (createdAt, id) of the last
+ * row of the previous one, so a deep page costs as little as the first. Pass a page request for
+ * page 0 only to limit the rows.
+ */
+@Repository
+public interface SubmissionRepository extends JpaRepository<Submission, Long> {
+
+    @Query("""
+            SELECT s.id AS id, s.problemId AS problemId, s.userId AS userId, s.language AS language,
+                   s.verdict AS verdict, s.passedTests AS passedTests, s.totalTests AS totalTests, s.createdAt AS createdAt
+            FROM Submission s
+            WHERE s.userId = :userId
+              AND (s.createdAt < :createdAt OR (s.createdAt = :createdAt AND s.id < :id))
+            ORDER BY s.createdAt DESC, s.id DESC""")
+    List<SubmissionSummary> findByUserBefore(@Param("userId") String userId,
+                                             @Param("createdAt") Instant createdAt, @Param("id") Long id,
+                                             Pageable limit);
+
+    @Query("""
+            SELECT s.id AS id, s.problemId AS problemId, s.userId AS userId, s.language AS language,
+                   s.verdict AS verdict, s.passedTests AS passedTests, s.totalTests AS totalTests, s.createdAt AS createdAt
+            FROM Submission s
+            WHERE s.problemId = :problemId
+              AND (s.createdAt < :createdAt OR (s.createdAt = :createdAt AND s.id < :id))
+            ORDER BY s.createdAt DESC, s.id DESC""")
+    List<SubmissionSummary> findByProblemBefore(@Param("problemId") Long problemId,
+                                                @Param("createdAt") Instant createdAt, @Param("id") Long id,
+                                                Pageable limit);
+
+    @Query("""
+            SELECT s.id AS id, s.problemId AS problemId, s.userId AS userId, s.language AS language,
+                   s.verdict AS verdict, s.passedTests AS passedTests, s.totalTests AS totalTests, s.createdAt AS createdAt
+            FROM Submission s
+            WHERE s.problemId = :problemId AND s.userId = :userId
+              AND (s.createdAt < :createdAt OR (s.createdAt = :createdAt AND s.id < :id))
+            ORDER BY s.createdAt DESC, s.id DESC""")
+    List<SubmissionSummary> findByProblemAndUserBefore(@Param("problemId") Long problemId, @Param("userId") String userId,
+                                                       @Param("createdAt") Instant createdAt, @Param("id") Long id,
+                                                       Pageable limit);
+
+    // Number of submissions of a problem per verdict, as [verdict, count] pairs
+    @Query("SELECT s.verdict, COUNT(s) FROM Submission s WHERE s.problemId = :problemId GROUP BY s.verdict")
+    List<Object[]> countVerdictsByProblem(@Param("problemId") Long problemId);
+}
@@ -5,7 +5,11 @@ import com.BugMiner.codex.entity.TestCase;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface TestCaseRepository extends JpaRepository<TestCase, Long> {
-    // Optional: List<TestCase> findByProblemId(Long problemId);
+
+    // In a stable order, so a test keeps its position across loads
+    List<TestCase> findByProblemIdOrderByIdAsc(Long problemId);
 }
@@ -1,13 +1,20 @@
 package com.BugMiner.codex.service;
 
 import com.BugMiner.codex.client.CodeExecutionGrpcClient;
+import com.BugMiner.codex.dto.SubmissionResult;
 import com.BugMiner.codex.grpc.CodeExecutionResponse;
+import com.BugMiner.codex.grpc.CompileDiagnostic;
 import com.BugMiner.codex.grpc.ExecutionTestResult;
+import com.BugMiner.codex.grpc.JudgingMode;
+import com.BugMiner.codex.grpc.ResponseVerbosity;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,17 +34,117 @@ public class CodeExecutionService {
      */
     public ExecutionResult executeCode(String language, String code,
                                        List<CodeExecutionGrpcClient.TestCase> testCases) {
+        return executeCode(language, code, testCases, JudgingMode.ALL);
+    }
+
+    /**
+     * Execute code, judging the test cases according to the given mode. Under STOP_ON_FIRST_FAILURE
+     * and SAMPLE_ONLY the result only contains the tests that were actually run.
+     */
+    public ExecutionResult executeCode(String language, String code,
+                                       List<CodeExecutionGrpcClient.TestCase> testCases,
+                                       JudgingMode judgingMode) {
+        return executeCode(language, code, testCases, judgingMode, null);
+    }
+
+    /**
+     * Execute code compiled with the given compiler flag profile, e.g. "gnu++20-O2" for C++.
+     * A null profile uses the language's default.
+     */
+    public ExecutionResult executeCode(String language, String code,
+                                       List<CodeExecutionGrpcClient.TestCase> testCases,
+                                       JudgingMode judgingMode, String compilerProfile) {
 
         log.info("Executing code for language: {} with {} test cases", language, testCases.size());
 
         // Call the gRPC service
-        CodeExecutionResponse grpcResponse = grpcClient.executeCode(language, code, testCases);
+        CodeExecutionResponse grpcResponse = grpcClient.executeCode(language, code, testCases, judgingMode, compilerProfile);
+
+        ExecutionResult result = convertGrpcResponse(grpcResponse);
+
+        log.info("Code execution completed - Success: {}, Passed: {}/{}",
+                result.isSuccess(), result.getPassedTests(), result.getTotalTests());
+
+        return result;
+    }
 
-        // Convert gRPC response to domain object
+    /**
+     * Execute code without blocking the calling thread. The request thread can be released while
+     * langs-service judges; the response is completed on a gRPC thread.
+     * <p>
+     * The gRPC response is passed through as received rather than copied into an
+     * {@link ExecutionResult}, so the caller maps it to its own response in a single pass.
+     *
+     * @param outputCheck how output is compared, null for TRIMMED_EXACT
+     * @param verbosity how much of each test's data the results carry
+     * @param timeoutSeconds end-to-end limit, after which the response reports a timeout
+     * @return never completed exceptionally, failures are reported in the response
+     */
+    public CompletableFuture<CodeExecutionResponse> executeCodeAsync(String language, String code,
+                                                                     List<CodeExecutionGrpcClient.TestCase> testCases,
+                                                                     JudgingMode judgingMode, String compilerProfile,
+                                                                     CodeExecutionGrpcClient.OutputCheck outputCheck,
+                                                                     ResponseVerbosity verbosity, long timeoutSeconds) {
+
+        log.info("Executing code for language: {} with {} test cases", language, testCases.size());
+
+        return grpcClient.executeCodeAsync(language, code, testCases, judgingMode, compilerProfile, outputCheck,
+                        verbosity, timeoutSeconds)
+                .whenComplete((grpcResponse, error) -> {
+                    if (grpcResponse != null) {
+                        log.info("Code execution completed - Success: {}, Passed: {}/{}", grpcResponse.getSuccess(),
+                                countPassed(grpcResponse), grpcResponse.getTestResultsCount());
+                    }
+                });
+    }
+
+    /**
+     * The outcome of judging a submission against a problem's test set with {@link JudgingMode#ALL}.
+     * Only the public test cases' data is included; hidden ones report their outcome only.
+     */
+    public SubmissionResult toSubmissionResult(ProblemTestSetCache.TestSet testSet, CodeExecutionResponse result) {
+        List<CodeExecutionGrpcClient.TestCase> testCases = testSet.testCases();
+        List<ExecutionTestResult> testResults = result.getTestResultsList();
+
+        List<SubmissionResult.TestCaseResult> responses = new ArrayList<>();
+        for (ExecutionTestResult tr : testResults) {
+            // Each result names the test case it belongs to; one that does not shows no test's data
+            int index = tr.getIndex();
+            CodeExecutionGrpcClient.TestCase testCase = index >= 0 && index < testCases.size()
+                    && testCases.get(index).isSample() ? testCases.get(index) : null;
+            responses.add(new SubmissionResult.TestCaseResult(
+                    testCase != null ? testCase.getInput() : null,
+                    testCase != null ? testCase.getExpectedOutput() : null,
+                    testCase != null ? tr.getActualOutput() : null,
+                    tr.getPassed(),
+                    tr.getVerdict().name()));
+        }
+
+        String errorMessage = result.getErrorMessage().isEmpty() ? null : result.getErrorMessage();
+        int passedTests = countPassed(result);
+        return new SubmissionResult(result.getSuccess() && passedTests == testResults.size(), responses, errorMessage);
+    }
+
+    public static int countPassed(CodeExecutionResponse grpcResponse) {
+        int passed = 0;
+        for (ExecutionTestResult testResult : grpcResponse.getTestResultsList()) {
+            if (testResult.getPassed()) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+
+    // Convert gRPC response to domain object
+    private ExecutionResult convertGrpcResponse(CodeExecutionResponse grpcResponse) {
         ExecutionResult result = new ExecutionResult();
         result.setSuccess(grpcResponse.getSuccess());
         result.setExitCode(grpcResponse.getExitCode());
         result.setErrorMessage(grpcResponse.getErrorMessage());
+        result.setQueueWaitMs(grpcResponse.getQueueWaitMs());
+        result.setCompileErrors(grpcResponse.getCompileErrorsList().stream()
+                .map(CodeExecutionService::convertGrpcCompileError)
+                .collect(Collectors.toList()));
 
         // Convert test results
         List<TestResult> testResults = grpcResponse.getTestResultsList().stream()
@@ -51,9 +158,6 @@ public class CodeExecutionService {
         result.setTotalTests(testResults.size());
         result.setAllTestsPassed(passedTests == testResults.size() && grpcResponse.getSuccess());
 
-        log.info("Code execution completed - Success: {}, Passed: {}/{}",
-                result.isSuccess(), result.getPassedTests(), result.getTotalTests());
-
         return result;
     }
 
@@ -69,22 +173,7 @@ public class CodeExecutionService {
         CodeExecutionResponse grpcResponse = grpcClient.executeCodeWithTimeout(
                 language, code, testCases, timeoutSeconds);
 
-        ExecutionResult result = new ExecutionResult();
-        result.setSuccess(grpcResponse.getSuccess());
-        result.setExitCode(grpcResponse.getExitCode());
-        result.setErrorMessage(grpcResponse.getErrorMessage());
-
-        List<TestResult> testResults = grpcResponse.getTestResultsList().stream()
-                .map(this::convertGrpcTestResult)
-                .collect(Collectors.toList());
-        result.setTestResults(testResults);
-
-        long passedTests = testResults.stream().mapToLong(tr -> tr.isPassed() ? 1 : 0).sum();
-        result.setPassedTests((int) passedTests);
-        result.setTotalTests(testResults.size());
-        result.setAllTestsPassed(passedTests == testResults.size() && grpcResponse.getSuccess());
-
-        return result;
+        return convertGrpcResponse(grpcResponse);
     }
 
     /**
@@ -94,12 +183,29 @@ public class CodeExecutionService {
         return grpcClient.isHealthy();
     }
 
+    public Map<String, Boolean> getLanguageHealth() {
+        return grpcClient.getLanguageHealth();
+    }
+
+    public static CompileError convertGrpcCompileError(CompileDiagnostic diagnostic) {
+        CompileError error = new CompileError();
+        error.setLine(diagnostic.getLine());
+        error.setColumn(diagnostic.getColumn());
+        error.setMessage(diagnostic.getMessage());
+        return error;
+    }
+
     private TestResult convertGrpcTestResult(ExecutionTestResult grpcResult) {
         TestResult testResult = new TestResult();
         testResult.setInput(grpcResult.getInput());
         testResult.setExpectedOutput(grpcResult.getExpectedOutput());
         testResult.setActualOutput(grpcResult.getActualOutput());
         testResult.setPassed(grpcResult.getPassed());
+        testResult.setVerdict(grpcResult.getVerdict().name());
+        testResult.setStderr(grpcResult.getStderr());
+        testResult.setDiffLine(grpcResult.getDiffLine());
+        testResult.setDiffColumn(grpcResult.getDiffColumn());
+        testResult.setDiffMessage(grpcResult.getDiffMessage());
         return testResult;
     }
 
@@ -112,6 +218,8 @@ public class CodeExecutionService {
         private int passedTests;
         private int totalTests;
         private boolean allTestsPassed;
+        private long queueWaitMs;
+        private List<CompileError> compileErrors;
 
         // Getters and setters
         public boolean isSuccess() { return success; }
@@ -134,6 +242,28 @@ public class CodeExecutionService {
 
         public boolean isAllTestsPassed() { return allTestsPassed; }
         public void setAllTestsPassed(boolean allTestsPassed) { this.allTestsPassed = allTestsPassed; }
+
+        public long getQueueWaitMs() { return queueWaitMs; }
+        public void setQueueWaitMs(long queueWaitMs) { this.queueWaitMs = queueWaitMs; }
+
+        public List<CompileError> getCompileErrors() { return compileErrors; }
+        public void setCompileErrors(List<CompileError> compileErrors) { this.compileErrors = compileErrors; }
+    }
+
+    public static class CompileError {
+        private int line;
+        private int column;
+        private String message;
+
+        // Getters and setters
+        public int getLine() { return line; }
+        public void setLine(int line) { this.line = line; }
+
+        public int getColumn() { return column; }
+        public void setColumn(int column) { this.column = column; }
+
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
     }
 
     public static class TestResult {
@@ -141,6 +271,11 @@ public class CodeExecutionService {
         private String expectedOutput;
         private String actualOutput;
         private boolean passed;
+        private String verdict;
+        private String stderr;
+        private long diffLine;
+        private long diffColumn;
+        private String diffMessage;
 
         // Getters and setters
         public String getInput() { return input; }
@@ -154,5 +289,20 @@ public class CodeExecutionService {
 
         public boolean isPassed() { return passed; }
         public void setPassed(boolean passed) { this.passed = passed; }
+
+        public String getVerdict() { return verdict; }
+        public void setVerdict(String verdict) { this.verdict = verdict; }
+
+        public String getStderr() { return stderr; }
+        public void setStderr(String stderr) { this.stderr = stderr; }
+
+        public long getDiffLine() { return diffLine; }
+        public void setDiffLine(long diffLine) { this.diffLine = diffLine; }
+
+        public long getDiffColumn() { return diffColumn; }
+        public void setDiffColumn(long diffColumn) { this.diffColumn = diffColumn; }
+
+        public String getDiffMessage() { return diffMessage; }
+        public void setDiffMessage(String diffMessage) { this.diffMessage = diffMessage; }
     }
 }
\ No newline at end of file
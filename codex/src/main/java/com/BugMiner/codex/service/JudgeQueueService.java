@@ -0,0 +1,223 @@
+package com.BugMiner.codex.service;
+
+import com.BugMiner.codex.dto.SubmissionResult;
+import com.BugMiner.codex.entity.JudgeJob;
+import com.BugMiner.codex.repository.JudgeJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The durable judge queue: submissions are rows of the judge_jobs table, taken by workers with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, so any number of codex instances can share it and a
+ * queued submission survives a restart.
+ * <p>
+ * A job's row lock is held only while taking it. The job is then marked RUNNING with a lease; if
+ * the instance judging it goes away, the job is taken again once the lease has expired.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class JudgeQueueService {
+
+    private final JudgeJobRepository jobRepository;
+    private final ObjectMapper objectMapper;
+
+    // A job running longer than this is assumed lost with its instance; must exceed the execution timeout
+    @Value("${judge.queue.lease-seconds:300}")
+    private long leaseSeconds;
+
+    // Workers judging on this instance: the most that a wakeup can usefully start
+    @Value("${judge.queue.workers:8}")
+    private int workerCount;
+
+    // Wakeups of idle local workers, so that a submission queued on this instance starts at once.
+    // Enqueues coalesce beyond one permit per worker; a look at the queue answers all earlier ones
+    private final Semaphore queued = new Semaphore(0);
+    // Long-polling clients waiting for a job that is judged on this instance
+    private final Map<Long, Set<CompletableFuture<JudgeJob>>> waiters = new ConcurrentHashMap<>();
+
+    public JudgeJob enqueue(Long problemId, String userId, String language, String code) {
+        Instant now = Instant.now();
+        JudgeJob job = jobRepository.save(JudgeJob.builder()
+                .problemId(problemId)
+                .userId(userId)
+                .language(language)
+                .code(code)
+                .status(JudgeJob.Status.QUEUED)
+                .availableAt(now)
+                .createdAt(now)
+                .build());
+        // After the insert has committed, so the woken worker finds the row
+        wakeWorker();
+        log.debug("Queued submission {} for problem {}", job.getId(), problemId);
+        return job;
+    }
+
+    public Optional<JudgeJob> find(Long id) {
+        return jobRepository.findById(id);
+    }
+
+    /**
+     * Take the oldest due job and mark it RUNNING.
+     *
+     * @return the job, or null if none is due
+     */
+    @Transactional
+    public JudgeJob takeNext() {
+        // Every job whose wakeup is dropped here has committed already, so the query below sees it
+        queued.drainPermits();
+        Instant now = Instant.now();
+        JudgeJob job = jobRepository.lockNextDue(now, now.minusSeconds(leaseSeconds)).orElse(null);
+        if (job == null) {
+            return null;
+        }
+        if (job.getStatus() == JudgeJob.Status.RUNNING) {
+            log.warn("Submission {} outlived its lease (attempt {}), judging it again", job.getId(), job.getAttempts());
+        }
+        job.setStatus(JudgeJob.Status.RUNNING);
+        job.setLockedAt(now);
+        job.setAttempts(job.getAttempts() + 1);
+        // More jobs may be due: pass the wakeup on to another idle worker
+        wakeWorker();
+        return job;
+    }
+
+    /**
+     * Wait until a submission is queued on this instance or the timeout has passed. Jobs queued by
+     * other instances are only noticed by polling.
+     */
+    public void awaitQueued(long timeoutMs) throws InterruptedException {
+        queued.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return false if the job had been taken over by another worker, which then records its outcome
+     */
+    @Transactional
+    public boolean complete(JudgeJob taken, SubmissionResult result) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the result of submission " + taken.getId(), e);
+        }
+        return finish(taken, JudgeJob.Status.DONE, json, null);
+    }
+
+    @Transactional
+    public void fail(JudgeJob taken, String errorMessage) {
+        finish(taken, JudgeJob.Status.FAILED, null, errorMessage);
+    }
+
+    /**
+     * Put a job back in the queue, to be taken again after the delay.
+     */
+    @Transactional
+    public void retryLater(JudgeJob taken, long delayMs, String reason) {
+        JudgeJob job = current(taken);
+        if (job == null) {
+            return;
+        }
+        job.setStatus(JudgeJob.Status.QUEUED);
+        job.setAvailableAt(Instant.now().plusMillis(delayMs));
+        job.setLockedAt(null);
+        log.info("Submission {} could not be judged ({}), retrying in {} ms", job.getId(), reason, delayMs);
+    }
+
+    /**
+     * @return the result of a DONE job, null otherwise
+     */
+    public SubmissionResult resultOf(JudgeJob job) {
+        if (job.getResult() == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(job.getResult(), SubmissionResult.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored result of submission " + job.getId() + " is unreadable", e);
+        }
+    }
+
+    /**
+     * @return completed with the job when it finishes on this instance; stop waiting with
+     * {@link #stopWaiting} if it is not needed anymore
+     */
+    public CompletableFuture<JudgeJob> whenFinished(Long id) {
+        CompletableFuture<JudgeJob> finished = new CompletableFuture<>();
+        waiters.compute(id, (key, futures) -> {
+            Set<CompletableFuture<JudgeJob>> waiting = futures != null ? futures : ConcurrentHashMap.newKeySet();
+            waiting.add(finished);
+            return waiting;
+        });
+        return finished;
+    }
+
+    public void stopWaiting(Long id, CompletableFuture<JudgeJob> finished) {
+        waiters.computeIfPresent(id, (key, futures) -> {
+            futures.remove(finished);
+            return futures.isEmpty() ? null : futures;
+        });
+    }
+
+    // Only here do permits grow, so they never exceed the number of workers
+    private synchronized void wakeWorker() {
+        if (queued.availablePermits() < workerCount) {
+            queued.release();
+        }
+    }
+
+    private boolean finish(JudgeJob taken, JudgeJob.Status status, String result, String errorMessage) {
+        JudgeJob job = current(taken);
+        if (job == null) {
+            return false;
+        }
+        job.setStatus(status);
+        job.setResult(result);
+        job.setErrorMessage(errorMessage);
+        job.setFinishedAt(Instant.now());
+        job.setLockedAt(null);
+
+        // Waiters hand the outcome to their clients, so they are told only once it is committed; a rollback
+        // leaves them waiting for the job's next attempt
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                Set<CompletableFuture<JudgeJob>> waiting = waiters.remove(job.getId());
+                if (waiting != null) {
+                    waiting.forEach(finished -> finished.complete(job));
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return the job as stored, or null if it has been taken again since, by a worker that found
+     * its lease expired; that worker's outcome counts
+     */
+    private JudgeJob current(JudgeJob taken) {
+        JudgeJob job = jobRepository.findById(taken.getId()).orElse(null);
+        if (job == null || job.getStatus() != JudgeJob.Status.RUNNING || job.getAttempts() != taken.getAttempts()) {
+            log.warn("Submission {} was taken over by another worker, dropping the outcome of attempt {}",
+                    taken.getId(), taken.getAttempts());
+            return null;
+        }
+        return job;
+    }
+}
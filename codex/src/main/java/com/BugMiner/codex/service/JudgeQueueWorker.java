@@ -0,0 +1,148 @@
+package com.BugMiner.codex.service;
+
+import com.BugMiner.codex.client.CodeExecutionGrpcClient;
+import com.BugMiner.codex.dto.SubmissionResult;
+import com.BugMiner.codex.entity.JudgeJob;
+import com.BugMiner.codex.grpc.CodeExecutionResponse;
+import com.BugMiner.codex.grpc.JudgingMode;
+import com.BugMiner.codex.grpc.ResponseVerbosity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the {@link JudgeQueueService judge queue}. Each worker judges one submission at a time, so
+ * the number of workers caps the load this instance puts on langs-service however large the
+ * backlog grows. While no langs-service node is healthy, nothing is taken from the queue.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JudgeQueueWorker {
+
+    private final JudgeQueueService judgeQueue;
+    private final CodeExecutionService executionService;
+    private final ProblemTestSetCache testSetCache;
+    private final SubmissionHistoryService submissionHistory;
+
+    @Value("${judge.queue.workers:8}")
+    private int workerCount;
+
+    // How often idle workers look for submissions queued by other instances or due for a retry
+    @Value("${judge.queue.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    // Attempts per submission before it is marked FAILED
+    @Value("${judge.queue.max-attempts:5}")
+    private int maxAttempts;
+
+    // Delay before the first retry, doubled on each further one
+    @Value("${judge.queue.retry-delay-ms:2000}")
+    private long retryDelayMs;
+
+    @Value("${judge.queue.execution-timeout-seconds:60}")
+    private long executionTimeoutSeconds;
+
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "judge-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+        log.info("Started {} judge queue workers", workerCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.shutdownNow();
+        try {
+            // A submission being judged when the instance stops is judged again after its lease
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                if (!executionService.isLangsServiceHealthy()) {
+                    Thread.sleep(pollIntervalMs);
+                    continue;
+                }
+                JudgeJob job = judgeQueue.takeNext();
+                if (job == null) {
+                    judgeQueue.awaitQueued(pollIntervalMs);
+                    continue;
+                }
+                judge(job);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // E.g. the database is unreachable; the job, if one was taken, is judged again after its lease
+                log.error("Judge queue worker failed", e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void judge(JudgeJob job) throws InterruptedException {
+        if (job.getAttempts() > maxAttempts) {
+            judgeQueue.fail(job, "Gave up after " + maxAttempts + " attempts");
+            return;
+        }
+        ProblemTestSetCache.TestSet testSet = testSetCache.get(job.getProblemId()).orElse(null);
+        if (testSet == null) {
+            judgeQueue.fail(job, "Problem " + job.getProblemId() + " does not exist anymore");
+            return;
+        }
+
+        CodeExecutionResponse response;
+        try {
+            response = executionService.executeCodeAsync(job.getLanguage(), job.getCode(), testSet.testCases(),
+                    JudgingMode.ALL, testSet.compilerProfile(), testSet.outputCheck(), ResponseVerbosity.DIFF,
+                    executionTimeoutSeconds).get();
+        } catch (ExecutionException e) {
+            // Not expected, failures are reported in the response
+            throw new IllegalStateException("Judging submission " + job.getId() + " failed", e.getCause());
+        }
+
+        if (response.getExitCode() != CodeExecutionGrpcClient.CALL_FAILED_EXIT_CODE) {
+            SubmissionResult result = executionService.toSubmissionResult(testSet, response);
+            // Not recorded if the job was meanwhile taken over by another worker, which records it instead
+            if (judgeQueue.complete(job, result)) {
+                submissionHistory.record(job.getProblemId(), job.getUserId(), job.getLanguage(), job.getCode(),
+                        result, job.getId());
+            }
+        } else if (job.getAttempts() < maxAttempts) {
+            // No verdict because langs-service failed, not because of the submission
+            long delayMs = retryDelayMs << Math.min(job.getAttempts() - 1, 10);
+            judgeQueue.retryLater(job, delayMs, response.getErrorMessage());
+        } else {
+            judgeQueue.fail(job, response.getErrorMessage());
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.util.Optional;
 public class ProblemService {
 
     private final ProblemRepository problemRepository;
+    private final ProblemTestSetCache testSetCache;
 
     public List<Problem> getAllProblems() {
         return problemRepository.findAll();
@@ -24,10 +25,14 @@ public class ProblemService {
     }
 
     public Problem createOrUpdateProblem(Problem problem) {
-        return problemRepository.save(problem);
+        Problem saved = problemRepository.save(problem);
+        // Test cases saved along with the problem are covered too
+        testSetCache.invalidate(saved.getId());
+        return saved;
     }
 
     public void deleteProblem(Long id) {
         problemRepository.deleteById(id);
+        testSetCache.invalidate(id);
     }
 }
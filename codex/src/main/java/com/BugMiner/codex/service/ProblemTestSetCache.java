@@ -0,0 +1,127 @@
+package com.BugMiner.codex.service;
+
+import com.BugMiner.codex.client.CodeExecutionGrpcClient;
+import com.BugMiner.codex.entity.Problem;
+import com.BugMiner.codex.repository.ProblemRepository;
+import com.BugMiner.codex.repository.TestCaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * In-memory copy of each problem's judging data (test cases, compiler profile and output
+ * comparison), loaded on the first submission and kept until a write to the problem or one of its
+ * test cases invalidates it, so judging a submission does not query the database. Only the most
+ * recently judged problems are kept.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProblemTestSetCache {
+
+    private final ProblemRepository problemRepository;
+    private final TestCaseRepository testCaseRepository;
+
+    @Value("${problems.test-set-cache.max-problems:500}")
+    private int maxProblems;
+
+    // Loaded or loading test sets by problem, least recently used first; guarded by this
+    private final Map<Long, CompletableFuture<Optional<TestSet>>> testSets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<Optional<TestSet>>> eldest) {
+            return size() > maxProblems;
+        }
+    };
+
+    /**
+     * @return the judging data of the problem, or empty if there is no such problem
+     */
+    public Optional<TestSet> get(Long problemId) {
+        CompletableFuture<Optional<TestSet>> testSet;
+        CompletableFuture<Optional<TestSet>> loading = null;
+        synchronized (this) {
+            testSet = testSets.get(problemId);
+            if (testSet == null) {
+                loading = new CompletableFuture<>();
+                testSets.put(problemId, loading);
+                testSet = loading;
+            }
+        }
+
+        if (loading != null) {
+            // Loaded outside the lock, concurrent requests for the problem wait for this load. An
+            // invalidation meanwhile removes the future, so what it loads is not kept
+            try {
+                Optional<TestSet> loaded = load(problemId);
+                if (loaded.isEmpty()) {
+                    // Unknown problems are not kept, so requests for them cannot push out real ones
+                    forget(problemId, loading);
+                }
+                loading.complete(loaded);
+            } catch (RuntimeException | Error e) {
+                // Waiters get the failure, the next request loads again
+                forget(problemId, loading);
+                loading.completeExceptionally(e);
+            }
+        }
+        try {
+            return testSet.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    public synchronized void invalidate(Long problemId) {
+        if (problemId != null && testSets.remove(problemId) != null) {
+            log.debug("Dropped cached test set of problem {}", problemId);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        testSets.clear();
+    }
+
+    private synchronized void forget(Long problemId, CompletableFuture<Optional<TestSet>> loading) {
+        testSets.remove(problemId, loading);
+    }
+
+    private Optional<TestSet> load(Long problemId) {
+        Problem problem = problemRepository.findById(problemId).orElse(null);
+        if (problem == null) {
+            return Optional.empty();
+        }
+        // Public test cases are the samples, the others are hidden from the submitter
+        List<CodeExecutionGrpcClient.TestCase> testCases = testCaseRepository.findByProblemIdOrderByIdAsc(problemId).stream()
+                .map(tc -> new CodeExecutionGrpcClient.TestCase(tc.getInput(), tc.getExpectedOutput(), tc.isPublic()))
+                .toList();
+        log.debug("Loaded {} test cases of problem {}", testCases.size(), problemId);
+        return Optional.of(new TestSet(problemId, problem.getCompilerProfile(), outputCheckOf(problem), testCases));
+    }
+
+    private static CodeExecutionGrpcClient.OutputCheck outputCheckOf(Problem problem) {
+        try {
+            return CodeExecutionGrpcClient.OutputCheck.of(problem.getComparisonPolicy(), problem.getFloatEpsilon());
+        } catch (IllegalArgumentException e) {
+            // Judging with the default is better than not judging at all
+            log.warn("Problem {} has an invalid comparison setting, comparing trimmed output: {}", problem.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The test cases of a problem in a fixed order, and the compiler profile and output comparison
+     * it is judged with (null for the defaults). Shared between submissions, so neither the list
+     * nor its test cases may be modified.
+     */
+    public record TestSet(Long problemId, String compilerProfile, CodeExecutionGrpcClient.OutputCheck outputCheck,
+                          List<CodeExecutionGrpcClient.TestCase> testCases) {
+    }
+}
@@ -0,0 +1,152 @@
+package com.BugMiner.codex.service;
+
+import com.BugMiner.codex.dto.SubmissionPage;
+import com.BugMiner.codex.dto.SubmissionResult;
+import com.BugMiner.codex.dto.SubmissionSummary;
+import com.BugMiner.codex.entity.Submission;
+import com.BugMiner.codex.repository.SubmissionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class SubmissionHistoryService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 1000;
+    // Cursor of the first page: after the newest possible submission
+    private static final Cursor FIRST_PAGE = new Cursor(Instant.parse("9999-12-31T00:00:00Z"), Long.MAX_VALUE);
+
+    private final SubmissionRepository submissionRepository;
+    private final SubmissionWriter submissionWriter;
+
+    /**
+     * Record a judged submission. Returns at once, the submission is stored shortly after.
+     *
+     * @param judgeJobId the judge queue job, null for a submission judged directly
+     */
+    public void record(Long problemId, String userId, String language, String code, SubmissionResult result,
+                       Long judgeJobId) {
+        int passedTests = (int) result.getTestResults().stream().filter(SubmissionResult.TestCaseResult::isPassed).count();
+        String errorMessage = result.getErrorMessage();
+        if (errorMessage != null && errorMessage.length() > MAX_ERROR_MESSAGE_LENGTH) {
+            errorMessage = errorMessage.substring(0, MAX_ERROR_MESSAGE_LENGTH);
+        }
+        submissionWriter.write(Submission.builder()
+                .problemId(problemId)
+                .userId(userId)
+                .language(language)
+                .code(code)
+                .verdict(verdictOf(result))
+                .allPassed(result.isAllPassed())
+                .passedTests(passedTests)
+                .totalTests(result.getTestResults().size())
+                .errorMessage(errorMessage)
+                .judgeJobId(judgeJobId)
+                // PostgreSQL keeps microseconds; truncated here, so cursors match stored values exactly
+                .createdAt(Instant.now().truncatedTo(ChronoUnit.MICROS))
+                .build());
+    }
+
+    public Optional<Submission> find(Long id) {
+        return submissionRepository.findById(id);
+    }
+
+    /**
+     * A page of submissions, newest first, of a user, a problem, or a user on a problem.
+     *
+     * @param userId null for every user's submissions to the problem
+     * @param problemId null for the user's submissions to every problem
+     * @param cursor the previous page's nextCursor, null for the first page
+     * @throws IllegalArgumentException if neither a user nor a problem is given or the cursor is malformed
+     */
+    public SubmissionPage list(String userId, Long problemId, String cursor, int size) {
+        if (userId == null && problemId == null) {
+            throw new IllegalArgumentException("A user or a problem is required");
+        }
+        Cursor after = cursor != null ? Cursor.decode(cursor) : FIRST_PAGE;
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // One row more than the page tells whether there is a next page
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+
+        List<SubmissionSummary> submissions;
+        if (userId == null) {
+            submissions = submissionRepository.findByProblemBefore(problemId, after.createdAt(), after.id(), limit);
+        } else if (problemId == null) {
+            submissions = submissionRepository.findByUserBefore(userId, after.createdAt(), after.id(), limit);
+        } else {
+            submissions = submissionRepository.findByProblemAndUserBefore(problemId, userId, after.createdAt(), after.id(), limit);
+        }
+
+        if (submissions.size() <= pageSize) {
+            return new SubmissionPage(submissions, null);
+        }
+        submissions = submissions.subList(0, pageSize);
+        SubmissionSummary last = submissions.get(pageSize - 1);
+        return new SubmissionPage(submissions, new Cursor(last.getCreatedAt(), last.getId()).encode());
+    }
+
+    /**
+     * @return the number of submissions to the problem per verdict
+     */
+    public Map<String, Long> countVerdicts(Long problemId) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Object[] row : submissionRepository.countVerdictsByProblem(problemId)) {
+            counts.put((String) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+    /**
+     * @return how many submissions wait to be stored, and how many were lost because the queue was
+     * full or the database rejected them
+     */
+    public Map<String, Long> writerCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("queued", (long) submissionWriter.getQueued());
+        counts.put("dropped", submissionWriter.getDropped());
+        counts.put("failed", submissionWriter.getFailed());
+        return counts;
+    }
+
+    private static String verdictOf(SubmissionResult result) {
+        if (result.isAllPassed()) {
+            return "ACCEPTED";
+        }
+        return result.getTestResults().stream()
+                .filter(testResult -> !testResult.isPassed())
+                .map(SubmissionResult.TestCaseResult::getVerdict)
+                .findFirst()
+                .orElse("ERROR");
+    }
+
+    // Position in the newest-first order: the page continues with older submissions
+    private record Cursor(Instant createdAt, long id) {
+
+        String encode() {
+            String value = createdAt + "," + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = value.indexOf(',');
+                return new Cursor(Instant.parse(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+            }
+        }
+    }
+}
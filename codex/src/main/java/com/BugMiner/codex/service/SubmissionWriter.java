@@ -0,0 +1,132 @@
+package com.BugMiner.codex.service;
+
+import com.BugMiner.codex.entity.Submission;
+import com.BugMiner.codex.repository.SubmissionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores submissions off the request path. Submissions are queued in memory and a single thread
+ * writes whatever has accumulated in one transaction, sent as JDBC batches: under load the batches
+ * grow, at low rates each submission is written almost at once.
+ * <p>
+ * Writing never blocks the caller. When the database falls so far behind that the queue is full,
+ * further submissions are not recorded. A batch the database rejects is written again one
+ * submission at a time, so a bad row only loses itself; both losses are counted.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SubmissionWriter {
+
+    private final SubmissionRepository submissionRepository;
+
+    @Value("${submissions.writer.batch-size:100}")
+    private int batchSize;
+
+    @Value("${submissions.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<Submission> pending;
+    private Thread writer;
+    private volatile boolean running;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        pending = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::run, "submission-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        // The writer finishes what is queued before it stops
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pending.isEmpty()) {
+            log.warn("{} submissions were not stored before shutdown", pending.size());
+        }
+    }
+
+    public void write(Submission submission) {
+        if (!pending.offer(submission)) {
+            long total = dropped.incrementAndGet();
+            // Once per thousand, not to flood the log while the database is behind
+            if (total % 1000 == 1) {
+                log.warn("Submission history is {} submissions behind, {} not recorded so far", queueCapacity, total);
+            }
+        }
+    }
+
+    // Submissions not recorded because the queue was full
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // Submissions not recorded because the database rejected them
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getQueued() {
+        return pending.size();
+    }
+
+    private void run() {
+        List<Submission> batch = new ArrayList<>(batchSize);
+        while (running || !pending.isEmpty()) {
+            try {
+                Submission first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, batchSize - 1);
+                store(batch);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void store(List<Submission> batch) {
+        try {
+            submissionRepository.saveAll(batch);
+            log.debug("Stored {} submissions", batch.size());
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Could not store {} submissions in one transaction, storing them one by one", batch.size(), e);
+        }
+        for (Submission submission : batch) {
+            // The rolled back transaction may have given it an id that was never stored
+            submission.setId(null);
+            try {
+                submissionRepository.save(submission);
+            } catch (RuntimeException e) {
+                log.error("Could not store submission of problem {} ({} not stored so far): {}",
+                        submission.getProblemId(), failed.incrementAndGet(), e.getMessage());
+            }
+        }
+    }
+}
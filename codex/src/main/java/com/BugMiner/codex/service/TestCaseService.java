@@ -1,6 +1,7 @@
 // src/main/java/com/BugMiner/codex/service/TestCaseService.java
 package com.BugMiner.codex.service;
 
+import com.BugMiner.codex.entity.Problem;
 import com.BugMiner.codex.entity.TestCase;
 import com.BugMiner.codex.repository.TestCaseRepository;
 import lombok.RequiredArgsConstructor;
@@ -14,6 +15,7 @@ import java.util.Optional;
 public class TestCaseService {
 
     private final TestCaseRepository testCaseRepository;
+    private final ProblemTestSetCache testSetCache;
 
     public List<TestCase> getAllTestCases() {
         return testCaseRepository.findAll();
@@ -24,10 +26,24 @@ public class TestCaseService {
     }
 
     public TestCase createOrUpdateTestCase(TestCase testCase) {
-        return testCaseRepository.save(testCase);
+        // An update may move the test case to another problem, whose test set changes as well
+        Long previousProblemId = testCase.getId() != null ? problemIdOf(testCase.getId()) : null;
+        TestCase saved = testCaseRepository.save(testCase);
+        testSetCache.invalidate(previousProblemId);
+        testSetCache.invalidate(saved.getProblem() != null ? saved.getProblem().getId() : null);
+        return saved;
     }
 
     public void deleteTestCase(Long id) {
+        Long problemId = problemIdOf(id);
         testCaseRepository.deleteById(id);
+        testSetCache.invalidate(problemId);
+    }
+
+    private Long problemIdOf(Long testCaseId) {
+        return testCaseRepository.findById(testCaseId)
+                .map(TestCase::getProblem)
+                .map(Problem::getId)
+                .orElse(null);
     }
 }
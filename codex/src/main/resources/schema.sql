@@ -24,6 +24,50 @@ CREATE TABLE IF NOT EXISTS test_cases (
     problem_id BIGINT NOT NULL REFERENCES problems(id) ON DELETE CASCADE
 );
 
+-- Judge queue: workers take due rows with SELECT ... FOR UPDATE SKIP LOCKED (matching the JudgeJob entity)
+CREATE TABLE IF NOT EXISTS judge_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    problem_id BIGINT NOT NULL,
+    user_id VARCHAR(255),
+    language VARCHAR(255) NOT NULL,
+    code TEXT NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    available_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    locked_at TIMESTAMP(6) WITH TIME ZONE,
+    result TEXT,
+    error_message VARCHAR(1000),
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    finished_at TIMESTAMP(6) WITH TIME ZONE
+);
+
+-- Keeps the queue scan on the unfinished jobs, however many finished ones accumulate
+CREATE INDEX IF NOT EXISTS judge_jobs_unfinished_idx ON judge_jobs (id) WHERE status IN ('QUEUED', 'RUNNING');
+
+-- Submission history (matching the Submission entity); ids come from a sequence stepping by the
+-- entity's allocation size, so Hibernate can batch the inserts
+CREATE SEQUENCE IF NOT EXISTS submissions_id_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS submissions (
+    id BIGINT PRIMARY KEY,
+    problem_id BIGINT NOT NULL,
+    user_id VARCHAR(255),
+    language VARCHAR(255) NOT NULL,
+    code TEXT NOT NULL,
+    verdict VARCHAR(32) NOT NULL,
+    all_passed BOOLEAN NOT NULL,
+    passed_tests INTEGER NOT NULL,
+    total_tests INTEGER NOT NULL,
+    error_message VARCHAR(1000),
+    judge_job_id BIGINT,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+-- Keyset pages are read newest first along these indexes, whatever the page number
+CREATE INDEX IF NOT EXISTS submissions_problem_user_created_idx ON submissions (problem_id, user_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS submissions_problem_created_idx ON submissions (problem_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS submissions_user_created_idx ON submissions (user_id, created_at DESC, id DESC);
+
 -- Insert learning path data
 INSERT INTO learning_paths (language, topic, subtopic)
 VALUES
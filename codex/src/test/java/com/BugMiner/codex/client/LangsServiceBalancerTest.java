@@ -0,0 +1,241 @@
+package com.BugMiner.codex.client;
+
+import com.BugMiner.codex.grpc.CodeExecutionRequest;
+import com.BugMiner.codex.grpc.CodeExecutionResponse;
+import com.BugMiner.codex.grpc.ExecutionServiceGrpc;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.services.HealthStatusManager;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LangsServiceBalancerTest {
+
+    private static final long REFRESH_OFTEN_MS = 50;
+    private static final long REFRESH_RARELY_MS = TimeUnit.HOURS.toMillis(1);
+    private static final CodeExecutionRequest REQUEST = CodeExecutionRequest.newBuilder()
+            .setLanguage("python")
+            .setCode("print(input())")
+            .build();
+
+    private FakeNode a;
+    private FakeNode b;
+    private LangsServiceBalancer balancer;
+
+    @BeforeEach
+    void startNodes() throws IOException {
+        a = new FakeNode();
+        b = new FakeNode();
+    }
+
+    @AfterEach
+    void stop() {
+        if (balancer != null) {
+            balancer.close();
+        }
+        a.server.shutdownNow();
+        b.server.shutdownNow();
+    }
+
+    @Test
+    void picksLeastLoadedHealthyNode() throws InterruptedException {
+        start(REFRESH_RARELY_MS);
+
+        LangsServiceNode first = balancer.pick(Set.of(), "python");
+        first.callStarted();
+        LangsServiceNode second = balancer.pick(Set.of(), "python");
+        assertNotSame(first, second);
+
+        second.callStarted();
+        second.callStarted();
+        assertSame(first, balancer.pick(Set.of(), "python"));
+        assertSame(second, balancer.pick(Set.of(first), "python"));
+    }
+
+    @Test
+    void spreadsIdleCallsOverNodes() throws InterruptedException {
+        start(REFRESH_RARELY_MS);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(balancer.call("python", node -> node.getBlockingStub().executeCode(REQUEST), true).getSuccess());
+        }
+        assertEquals(50, a.calls.get() + b.calls.get());
+        assertTrue(a.calls.get() > 0 && b.calls.get() > 0, a.calls + " / " + b.calls);
+    }
+
+    @Test
+    void skipsNodeFailingHealthCheckUntilItRecovers() throws InterruptedException {
+        start(REFRESH_OFTEN_MS);
+
+        b.health.setStatus(ExecutionServiceGrpc.SERVICE_NAME, ServingStatus.NOT_SERVING);
+        await(() -> !node(b).isHealthy());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(a.name, balancer.pick(Set.of(), "python").getAddress());
+        }
+
+        b.health.setStatus(ExecutionServiceGrpc.SERVICE_NAME, ServingStatus.SERVING);
+        await(() -> node(b).isHealthy());
+    }
+
+    @Test
+    void skipsNodeForLanguageWhoseRunnerIsDown() throws InterruptedException {
+        start(REFRESH_OFTEN_MS);
+
+        b.health.setStatus("python", ServingStatus.NOT_SERVING);
+        await(() -> !node(b).servesLanguage("python"));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(a.name, balancer.pick(Set.of(), "python").getAddress());
+        }
+        // The node still serves the languages whose runners are up
+        assertTrue(node(b).isHealthy());
+        assertTrue(node(b).servesLanguage("java"));
+        assertEquals(List.of(true, true), List.copyOf(balancer.getLanguageHealth().values()));
+    }
+
+    @Test
+    void retriesResourceExhaustedOnAnotherNode() throws InterruptedException {
+        start(REFRESH_RARELY_MS);
+        a.failure = Status.RESOURCE_EXHAUSTED;
+        // Busier, so that the full node is tried first
+        node(b).callStarted();
+
+        assertTrue(balancer.call("python", node -> node.getBlockingStub().executeCode(REQUEST), true).getSuccess());
+        assertEquals(1, a.calls.get());
+        assertEquals(1, b.calls.get());
+        // A full admission queue is not an outage
+        assertTrue(node(a).isHealthy());
+    }
+
+    @Test
+    void retriesResourceExhaustedAsyncCallOnAnotherNode() throws Exception {
+        start(REFRESH_RARELY_MS);
+        a.failure = Status.RESOURCE_EXHAUSTED;
+        node(b).callStarted();
+
+        CodeExecutionResponse response = balancer.<CodeExecutionResponse>callAsync("python",
+                (node, observer) -> node.getAsyncStub().executeCode(REQUEST, observer)).get(5, TimeUnit.SECONDS);
+        assertTrue(response.getSuccess());
+        assertEquals(1, a.calls.get());
+        assertEquals(1, b.calls.get());
+    }
+
+    @Test
+    void doesNotRetryNonIdempotentCall() throws InterruptedException {
+        start(REFRESH_RARELY_MS);
+        a.failure = Status.RESOURCE_EXHAUSTED;
+        node(b).callStarted();
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> balancer.call("python", node -> node.getBlockingStub().executeCode(REQUEST), false));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, e.getStatus().getCode());
+        assertEquals(0, b.calls.get());
+    }
+
+    @Test
+    void skipsNodeFailingCallWithUnavailableRightAway() throws InterruptedException {
+        start(REFRESH_RARELY_MS);
+        a.failure = Status.UNAVAILABLE;
+        node(b).callStarted();
+
+        assertTrue(balancer.call("python", node -> node.getBlockingStub().executeCode(REQUEST), true).getSuccess());
+        assertFalse(node(a).isHealthy());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(b.name, balancer.pick(Set.of(), "python").getAddress());
+        }
+    }
+
+    @Test
+    void failsWithLastStatusWhenEveryNodeFails() throws InterruptedException {
+        start(REFRESH_RARELY_MS);
+        a.failure = Status.RESOURCE_EXHAUSTED;
+        b.failure = Status.RESOURCE_EXHAUSTED;
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> balancer.call("python", node -> node.getBlockingStub().executeCode(REQUEST), true));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, e.getStatus().getCode());
+        // Each node once, however many attempts are allowed
+        assertEquals(1, a.calls.get());
+        assertEquals(1, b.calls.get());
+    }
+
+    private void start(long refreshIntervalMs) throws InterruptedException {
+        balancer = new LangsServiceBalancer(List.of(a.name, b.name), List.of("python", "java"), refreshIntervalMs,
+                TimeUnit.MINUTES.toMillis(1), 3,
+                address -> InProcessChannelBuilder.forName(address).directExecutor().build());
+        balancer.start();
+        // Both nodes answered their first check, so no late result overrides what a test sets up
+        await(() -> node(a).isCheckFresh(Long.MAX_VALUE) && node(b).isCheckFresh(Long.MAX_VALUE));
+        assertTrue(node(a).isHealthy() && node(b).isHealthy() && balancer.hasHealthyNode());
+    }
+
+    // Every node is reachable through pick, which falls back to unhealthy ones
+    private LangsServiceNode node(FakeNode fake) {
+        Set<LangsServiceNode> seen = new HashSet<>();
+        LangsServiceNode node;
+        while ((node = balancer.pick(seen, "python")) != null) {
+            if (node.getAddress().equals(fake.name)) {
+                return node;
+            }
+            seen.add(node);
+        }
+        throw new AssertionError("No node at " + fake.name);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met within 5 seconds");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * An in-process langs-service answering ExecuteCode with success or a configured failure.
+     */
+    private static final class FakeNode extends ExecutionServiceGrpc.ExecutionServiceImplBase {
+
+        final String name = InProcessServerBuilder.generateName();
+        final HealthStatusManager health = new HealthStatusManager();
+        final AtomicInteger calls = new AtomicInteger();
+        final Server server;
+        volatile Status failure;
+
+        FakeNode() throws IOException {
+            health.setStatus(ExecutionServiceGrpc.SERVICE_NAME, ServingStatus.SERVING);
+            health.setStatus("python", ServingStatus.SERVING);
+            server = InProcessServerBuilder.forName(name)
+                    .directExecutor()
+                    .addService(this)
+                    .addService(health.getHealthService())
+                    .build()
+                    .start();
+        }
+
+        @Override
+        public void executeCode(CodeExecutionRequest request, StreamObserver<CodeExecutionResponse> responseObserver) {
+            calls.incrementAndGet();
+            if (failure != null) {
+                responseObserver.onError(failure.asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(CodeExecutionResponse.newBuilder().setSuccess(true).build());
+            responseObserver.onCompleted();
+        }
+    }
+}
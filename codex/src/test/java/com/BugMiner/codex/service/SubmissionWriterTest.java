@@ -0,0 +1,90 @@
+package com.BugMiner.codex.service;
+
+import com.BugMiner.codex.entity.Submission;
+import com.BugMiner.codex.repository.SubmissionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class SubmissionWriterTest {
+
+    private final SubmissionRepository repository = mock(SubmissionRepository.class);
+    private final List<Long> stored = new CopyOnWriteArrayList<>();
+    private SubmissionWriter writer;
+
+    @BeforeEach
+    void startWriter() {
+        writer = new SubmissionWriter(repository);
+        ReflectionTestUtils.setField(writer, "batchSize", 100);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 100);
+        writer.start();
+    }
+
+    @Test
+    void storesQueuedSubmissionsInBatches() {
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Submission> batch = invocation.getArgument(0);
+            batch.forEach(submission -> stored.add(submission.getProblemId()));
+            return batch;
+        });
+
+        writeAll(1L, 2L, 3L);
+
+        assertEquals(List.of(1L, 2L, 3L), stored);
+        verify(repository, never()).save(any());
+        assertEquals(0, writer.getFailed());
+    }
+
+    @Test
+    void storesRejectedBatchOneByOneSkippingOnlyTheBadRow() {
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Submission> batch = invocation.getArgument(0);
+            // Like a rolled back flush, ids were given out but nothing was stored
+            batch.forEach(submission -> submission.setId(-1L));
+            throw new DataIntegrityViolationException("value too long");
+        });
+        when(repository.save(any())).thenAnswer(invocation -> {
+            Submission submission = invocation.getArgument(0);
+            assertNull(submission.getId());
+            if (submission.getProblemId() == 2L) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            stored.add(submission.getProblemId());
+            return submission;
+        });
+
+        writeAll(1L, 2L, 3L);
+
+        assertEquals(List.of(1L, 3L), stored);
+        assertEquals(1, writer.getFailed());
+        assertEquals(0, writer.getDropped());
+    }
+
+    // Stopping the writer waits until everything queued is written
+    private void writeAll(Long... problemIds) {
+        for (Long problemId : problemIds) {
+            writer.write(submission(problemId));
+        }
+        writer.stop();
+    }
+
+    private static Submission submission(Long problemId) {
+        return Submission.builder()
+                .problemId(problemId)
+                .language("python")
+                .code("print(1)")
+                .verdict("ACCEPTED")
+                .createdAt(Instant.now())
+                .build();
+    }
+}
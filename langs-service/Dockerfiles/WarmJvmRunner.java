@@ -0,0 +1,382 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.HttpURLConnection;
+import java.net.ProxySelector;
+import java.net.ResponseCache;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm JVM worker for java-runner. langs-service drives it over stdin/stdout exactly like
+ * sandbox-worker.sh, but compiled submissions run inside this JVM instead of a new one per test,
+ * so short tests no longer pay for JVM startup and start on already compiled JDK code.
+ *
+ * Requests:
+ *   JOB <id> <timeout-seconds> <stdout-limit> <stderr-limit> <command-bytes> <stdin-bytes>\n<command><stdin>
+ *   <command> is "<class-directory> <main-class>"
+ *   PING <id>\n
+ * Responses are the ones of sandbox-worker.sh (START, O, E, END, PONG), with exit codes as a cold
+ * JVM would report them: 1 for an uncaught exception, 124 when the time limit is hit and 141 when
+ * stdout goes past its limit. START carries the pid of this JVM, killing it ends the job.
+ *
+ * Every run gets a fresh class loader (so the submission's static state starts over), its own
+ * stdin/stdout/stderr, and runs in its own thread group. System properties, the default locale,
+ * time zone and uncaught exception handler are restored afterwards. A run that cannot be cleaned
+ * up from inside the JVM is reported with "END <id> <exit-code> retire" and the JVM exits,
+ * langs-service then starts a fresh one. That is the case when the time or output limit was hit,
+ * an Error was thrown, any thread the run started is still alive (in whatever thread group, and
+ * including the carriers of virtual threads and common pool workers), or a JVM-wide default that
+ * cannot be put back was replaced. The one-shot URL factories are claimed at startup, so no run can
+ * install its own. A run that calls System.exit or halts ends this JVM, and langs-service runs the
+ * test again in a cold one.
+ *
+ * These checks are what lets runs of different submissions share a JVM; nothing filters the source
+ * beforehand. They keep one run from changing the result of the next, they are not a sandbox: the
+ * runs have the same user, files and process descriptors as the ones of sandbox-worker.sh, and the
+ * container is the isolation boundary for both.
+ */
+public final class WarmJvmRunner {
+
+    // Same line length as base64 -w 3072 in sandbox-worker.sh
+    private static final int FRAME_BYTES = 3072 / 4 * 3;
+    private static final int EXIT_UNCAUGHT = 1;
+    private static final int EXIT_TIMEOUT = 124;
+    private static final int EXIT_OUTPUT_LIMIT = 141;
+
+    private final InputStream requests = new BufferedInputStream(new FileInputStream(FileDescriptor.in), 1 << 16);
+    private final OutputStream protocol = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+    // What System.out of a cold JVM in this container would encode with
+    private final Charset outputCharset = outputCharset();
+
+    private final Properties initialProperties = (Properties) System.getProperties().clone();
+    private final Locale initialLocale = Locale.getDefault();
+    private final TimeZone initialTimeZone = TimeZone.getDefault();
+    private final Thread.UncaughtExceptionHandler initialUncaughtHandler = Thread.getDefaultUncaughtExceptionHandler();
+    private final List<Object> initialJvmDefaults = jvmDefaults();
+
+    public static void main(String[] args) throws IOException {
+        new WarmJvmRunner().serve();
+    }
+
+    private void serve() throws IOException {
+        // Nothing but this class writes to the protocol stream; stray output between runs is dropped
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+        System.setIn(InputStream.nullInputStream());
+        // Either factory can be set once per JVM; returning null keeps the JDK's own handlers
+        URL.setURLStreamHandlerFactory(protocolName -> null);
+        URLConnection.setContentHandlerFactory(mimeType -> null);
+
+        String header;
+        while ((header = readLine()) != null) {
+            String[] fields = header.split(" ");
+            switch (fields[0]) {
+                case "PING" -> writeLine("PONG " + fields[1]);
+                case "JOB" -> {
+                    byte[] command = requests.readNBytes(Integer.parseInt(fields[5]));
+                    byte[] stdin = requests.readNBytes(Integer.parseInt(fields[6]));
+                    boolean retire = runJob(fields[1], Long.parseLong(fields[2]), Integer.parseInt(fields[3]),
+                            Integer.parseInt(fields[4]), new String(command, StandardCharsets.UTF_8), stdin);
+                    if (retire) {
+                        protocol.flush();
+                        Runtime.getRuntime().halt(0);
+                    }
+                }
+                default -> writeLine("ERR unknown request: " + fields[0]);
+            }
+            protocol.flush();
+        }
+    }
+
+    /**
+     * @return true if this JVM must not run another job
+     */
+    private boolean runJob(String id, long timeoutSeconds, int stdoutLimit, int stderrLimit,
+                           String command, byte[] stdin) throws IOException {
+        writeLine("START " + id + " " + ProcessHandle.current().pid());
+        protocol.flush();
+
+        String[] target = command.trim().split("\\s+");
+        CountDownLatch finished = new CountDownLatch(1);
+        FrameStream stdoutFrames = new FrameStream("O", stdoutLimit + 1L, finished);
+        FrameStream stderrFrames = new FrameStream("E", stderrLimit, null);
+        PrintStream out = new PrintStream(new BufferedOutputStream(stdoutFrames, 1 << 13), false, outputCharset);
+        PrintStream err = new PrintStream(stderrFrames, true, outputCharset);
+
+        int exitCode;
+        boolean retire = false;
+        ThreadGroup group = new ThreadGroup("submission-" + id);
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{Path.of(target[0]).toUri().toURL()},
+                ClassLoader.getPlatformClassLoader())) {
+            System.setIn(new ByteArrayInputStream(stdin));
+            System.setOut(out);
+            System.setErr(err);
+
+            int[] mainExit = {0};
+            boolean[] fatal = {false};
+            Thread main = new Thread(group, () -> {
+                try {
+                    mainExit[0] = invokeMain(loader, target[1], err);
+                } catch (Error e) {
+                    // OutOfMemoryError and friends may leave the JVM in a state not worth reusing
+                    err.print("Exception in thread \"main\" ");
+                    e.printStackTrace(err);
+                    mainExit[0] = EXIT_UNCAUGHT;
+                    fatal[0] = true;
+                } finally {
+                    finished.countDown();
+                }
+            }, "main");
+            main.setContextClassLoader(loader);
+            Set<Thread> threadsBefore = liveThreads();
+            main.start();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            boolean inTime = finished.await(timeoutSeconds, TimeUnit.SECONDS);
+            if (inTime && !stdoutFrames.isOverflowed()) {
+                // Like a cold JVM, the program only ends once its other non-daemon threads have ended
+                inTime = awaitNonDaemonThreads(group, deadline);
+            }
+            // Output still buffered may be what crosses the limit
+            out.flush();
+            if (stdoutFrames.isOverflowed()) {
+                exitCode = EXIT_OUTPUT_LIMIT;
+                retire = true;
+            } else if (!inTime) {
+                exitCode = EXIT_TIMEOUT;
+                retire = true;
+            } else {
+                exitCode = mainExit[0];
+                retire = fatal[0] || group.activeCount() > 0 || !threadsBefore.containsAll(liveThreads())
+                        || !initialJvmDefaults.equals(jvmDefaults());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exitCode = EXIT_TIMEOUT;
+            retire = true;
+        } finally {
+            System.setIn(InputStream.nullInputStream());
+            PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+            System.setOut(discard);
+            System.setErr(discard);
+            restoreGlobalState();
+        }
+
+        out.flush();
+        err.flush();
+        stdoutFrames.close();
+        stderrFrames.close();
+        writeLine("END " + id + " " + exitCode + (retire ? " retire" : ""));
+        return retire;
+    }
+
+    private static int invokeMain(ClassLoader loader, String className, PrintStream err) {
+        Method main;
+        try {
+            main = Class.forName(className, true, loader).getMethod("main", String[].class);
+        } catch (ClassNotFoundException e) {
+            err.println("Error: Could not find or load main class " + className);
+            return EXIT_UNCAUGHT;
+        } catch (NoSuchMethodException e) {
+            err.println("Error: Main method not found in class " + className
+                    + ", please define the main method as:\n   public static void main(String[] args)");
+            return EXIT_UNCAUGHT;
+        }
+        if (!Modifier.isStatic(main.getModifiers())) {
+            err.println("Error: Main method is not static in class " + className);
+            return EXIT_UNCAUGHT;
+        }
+        try {
+            main.invoke(null, (Object) new String[0]);
+            return 0;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            err.print("Exception in thread \"main\" ");
+            cause.printStackTrace(err);
+            return EXIT_UNCAUGHT;
+        } catch (IllegalAccessException e) {
+            err.println("Error: Main method not accessible in class " + className);
+            return EXIT_UNCAUGHT;
+        }
+    }
+
+    private static boolean awaitNonDaemonThreads(ThreadGroup group, long deadline) throws InterruptedException {
+        while (true) {
+            Thread[] threads = new Thread[group.activeCount() + 8];
+            int count = group.enumerate(threads, true);
+            Thread pending = null;
+            for (int i = 0; i < count && pending == null; i++) {
+                if (!threads[i].isDaemon() && threads[i].isAlive()) {
+                    pending = threads[i];
+                }
+            }
+            if (pending == null) {
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            pending.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        }
+    }
+
+    // Every platform thread of the JVM; virtual threads show through their carriers
+    private static Set<Thread> liveThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() + 8];
+        int count = root.enumerate(threads, true);
+        Set<Thread> live = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive()) {
+                live.add(threads[i]);
+            }
+        }
+        return live;
+    }
+
+    // JVM-wide defaults a run could replace and that are not restored like the system properties
+    private static List<Object> jvmDefaults() {
+        return Arrays.asList(CookieHandler.getDefault(), ProxySelector.getDefault(), ResponseCache.getDefault(),
+                Authenticator.getDefault(), HttpURLConnection.getFollowRedirects(), List.of(Security.getProviders()));
+    }
+
+    private static Charset outputCharset() {
+        String name = System.getProperty("stdout.encoding");
+        return name != null && Charset.isSupported(name) ? Charset.forName(name) : Charset.defaultCharset();
+    }
+
+    private void restoreGlobalState() {
+        System.setProperties((Properties) initialProperties.clone());
+        Locale.setDefault(initialLocale);
+        TimeZone.setDefault(initialTimeZone);
+        Thread.setDefaultUncaughtExceptionHandler(initialUncaughtHandler);
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = requests.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private void writeLine(String line) throws IOException {
+        synchronized (protocol) {
+            protocol.write((line + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Frames everything written to it as "<tag> <base64>" protocol lines, up to a byte limit.
+     * Past the limit, output is dropped; when a latch is given it is released so the job ends
+     * right away, as the agent's head -c does for stdout.
+     */
+    private final class FrameStream extends OutputStream {
+
+        private final String tag;
+        private final long limit;
+        private final CountDownLatch overflowLatch;
+        private final byte[] pending = new byte[FRAME_BYTES];
+        private int pendingLength;
+        private long written;
+        private volatile boolean overflowed;
+        private boolean closed;
+
+        FrameStream(String tag, long limit, CountDownLatch overflowLatch) {
+            this.tag = tag;
+            this.limit = limit;
+            this.overflowLatch = overflowLatch;
+        }
+
+        boolean isOverflowed() {
+            return overflowed;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+            if (closed) {
+                return;
+            }
+            int allowed = (int) Math.max(0, Math.min(length, limit - written));
+            written += allowed;
+            while (allowed > 0) {
+                int n = Math.min(allowed, pending.length - pendingLength);
+                System.arraycopy(bytes, offset, pending, pendingLength, n);
+                pendingLength += n;
+                offset += n;
+                allowed -= n;
+                if (pendingLength == pending.length) {
+                    flush();
+                }
+            }
+            if (written >= limit && length > 0 && overflowLatch != null && !overflowed) {
+                overflowed = true;
+                flush();
+                overflowLatch.countDown();
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (pendingLength > 0) {
+                byte[] chunk = new byte[pendingLength];
+                System.arraycopy(pending, 0, chunk, 0, pendingLength);
+                pendingLength = 0;
+                writeLine(tag + " " + Base64.getEncoder().encodeToString(chunk));
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            flush();
+            // Threads left behind by the submission must not write into the next job
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+#!/usr/bin/env bash
+# Concurrent-execution capacity of a running langs-service, run on its host:
+#   concurrency-bench.sh [submissions] [sleep-seconds] [grpc-target]
+# Defaults: 200 submissions, 1 second, localhost:9090. Needs grpcurl.
+# Sends every submission at once through ExecuteCode: a Python program that sleeps, then echoes its
+# single test's input. The report lists how many passed, the wall time and the peak number of OS
+# threads of the service's JVM (the platform threads, carriers included), sampled every 50 ms from
+# /proc. The JVM is found with pgrep, or given as LANGS_SERVICE_PID.
+#
+# To compare the thread models, size the pool, scheduler and admission to the submission count and run
+# once per setting of spring.threads.virtual.enabled, e.g. from langs-service:
+#   java -jar target/langs-service-*.jar --spring.threads.virtual.enabled=false \
+#       --sandbox.pool.size=200 --execution.scheduler.max-concurrency=200 \
+#       --execution.scheduler.memory-per-execution-mb=1 --execution.admission.max-concurrent=200
+# With -Djdk.tracePinnedThreads=full on the service, pinned virtual threads show in its log.
+set -euo pipefail
+
+submissions="${1:-200}"
+sleep_seconds="${2:-1}"
+target="${3:-localhost:9090}"
+proto_dir="$(cd "$(dirname "$0")/../src/main/proto" && pwd)"
+
+pid="${LANGS_SERVICE_PID:-$(pgrep -f 'langs-service.*\.jar|LangsServiceApplication' | head -n 1 || true)}"
+if [ -z "$pid" ]; then
+    echo "langs-service is not running here, set LANGS_SERVICE_PID" >&2
+    exit 1
+fi
+
+work=$(mktemp -d)
+trap 'kill "$sampler" 2>/dev/null || true; rm -rf "$work"' EXIT
+
+# Peak of the JVM's thread count, until killed
+(
+    peak=0
+    while threads=$(awk '/^Threads:/ { print $2 }' "/proc/$pid/status" 2>/dev/null); do
+        if [ "$threads" -gt "$peak" ]; then
+            peak=$threads
+            echo "$peak" > "$work/peak"
+        fi
+        sleep 0.05
+    done
+) &
+sampler=$!
+
+# Submission i sleeps, then prints i, which is its test's expected output
+submit() {
+    local i=$1
+    grpcurl -plaintext -max-time 300 -import-path "$proto_dir" -proto ExecutionService.proto -d @ \
+        "$target" ExecutionService/ExecuteCode > "$work/$i.json" 2> "$work/$i.err" <<EOF || true
+{
+  "language": "python",
+  "code": "import time\ntime.sleep($sleep_seconds)\nprint(input())\n",
+  "testCases": [{"input": "$i", "expectedOutput": "$i"}],
+  "verbosity": "VERDICT"
+}
+EOF
+}
+
+threads_before=$(awk '/^Threads:/ { print $2 }' "/proc/$pid/status")
+start=$(date +%s%N)
+for i in $(seq "$submissions"); do
+    submit "$i" &
+done
+wait $(jobs -p | grep -v "^$sampler\$")
+end=$(date +%s%N)
+
+passed=$(grep -l '"success": true' "$work"/*.json 2>/dev/null | wc -l)
+exhausted=$(grep -l 'ResourceExhausted' "$work"/*.err 2>/dev/null | wc -l)
+failed=$(( submissions - passed ))
+printf 'submissions: %d sleeping %ss, against %s (pid %s)\n' "$submissions" "$sleep_seconds" "$target" "$pid"
+printf 'passed: %d/%d (failed %d, of which RESOURCE_EXHAUSTED %d)\n' "$passed" "$submissions" "$failed" "$exhausted"
+printf 'wall time: %d ms\n' $(( (end - start) / 1000000 ))
+printf 'JVM threads: %d before, %s peak\n' "$threads_before" "$(cat "$work/peak" 2>/dev/null || echo "$threads_before")"
+if [ "$failed" -gt 0 ]; then
+    # One failure for a look, the rest are usually alike
+    for err in "$work"/*.err; do
+        if [ -s "$err" ]; then
+            printf 'first failure: %s\n' "$(head -n 3 "$err" | tr '\n' ' ')"
+            break
+        fi
+    done
+fi
@@ -0,0 +1,17 @@
+#include <bits/stdc++.h>
+using namespace std;
+typedef long long ll;
+const ll MOD = 1e9 + 7;
+
+int main() {
+    int n, w;
+    scanf("%d %d", &n, &w);
+    vector<int> weight(n), value(n);
+    for (int i = 0; i < n; i++) scanf("%d %d", &weight[i], &value[i]);
+    vector<ll> best(w + 1, 0);
+    for (int i = 0; i < n; i++)
+        for (int c = w; c >= weight[i]; c--)
+            best[c] = max(best[c], best[c - weight[i]] + value[i]);
+    printf("%lld\n", *max_element(best.begin(), best.end()) % MOD);
+    return 0;
+}
@@ -0,0 +1,14 @@
+#include <iostream>
+#include <vector>
+#include <algorithm>
+
+int main() {
+    int n;
+    std::cin >> n;
+    std::vector<long long> a(n);
+    for (auto& x : a) std::cin >> x;
+    std::sort(a.begin(), a.end());
+    long long sum = 0;
+    for (int i = 0; i < n; i++) sum += a[i] * (2LL * i - n + 1);
+    std::cout << sum << std::endl;
+}
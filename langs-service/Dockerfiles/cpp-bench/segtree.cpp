@@ -0,0 +1,39 @@
+#include <bits/stdc++.h>
+using namespace std;
+
+template <typename T>
+struct SegmentTree {
+    int n;
+    vector<T> tree;
+    explicit SegmentTree(int size) : n(size), tree(2 * size) {}
+    void update(int i, T value) {
+        for (tree[i += n] = value; i > 1; i >>= 1) tree[i >> 1] = tree[i] + tree[i ^ 1];
+    }
+    T query(int l, int r) {
+        T result{};
+        for (l += n, r += n; l < r; l >>= 1, r >>= 1) {
+            if (l & 1) result += tree[l++];
+            if (r & 1) result += tree[--r];
+        }
+        return result;
+    }
+};
+
+int main() {
+    int n, q;
+    cin >> n >> q;
+    SegmentTree<long long> st(n);
+    for (int i = 0; i < n; i++) {
+        long long x;
+        cin >> x;
+        st.update(i, x);
+    }
+    map<string, function<void()>> ops;
+    while (q--) {
+        string op;
+        int a, b;
+        cin >> op >> a >> b;
+        if (op == "set") st.update(a, b);
+        else cout << st.query(a, b) << "\n";
+    }
+}
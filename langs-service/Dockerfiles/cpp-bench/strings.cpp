@@ -0,0 +1,31 @@
+#include <bits/stdc++.h>
+using namespace std;
+
+vector<int> prefixFunction(const string& s) {
+    vector<int> pi(s.size());
+    for (size_t i = 1; i < s.size(); i++) {
+        int k = pi[i - 1];
+        while (k > 0 && s[i] != s[k]) k = pi[k - 1];
+        if (s[i] == s[k]) k++;
+        pi[i] = k;
+    }
+    return pi;
+}
+
+int main() {
+    string text, pattern;
+    getline(cin, text);
+    getline(cin, pattern);
+    auto pi = prefixFunction(pattern + "#" + text);
+    unordered_set<int> seen;
+    set<pair<int, int>> matches;
+    for (size_t i = pattern.size() + 1; i < pi.size(); i++) {
+        if (pi[i] == (int) pattern.size()) {
+            int start = (int) (i - 2 * pattern.size());
+            matches.insert({start, start + (int) pattern.size()});
+            seen.insert(start);
+        }
+    }
+    cout << matches.size() << endl;
+    for (auto [l, r] : matches) cout << l << " " << r << "\n";
+}
@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Compile latency of C++ submissions with and without the precompiled <bits/stdc++.h>, run in cpp-runner:
+#   cpp-pch-bench [corpus-directory] [runs-per-file] [g++ flags...]
+# Defaults: the sample corpus shipped in /opt/cpp-bench, 5 runs, -std=gnu++17 -O2.
+# Every file is compiled the same number of times each way with ccache out of the picture; the
+# report lists the median compile time per file and the total over the corpus.
+set -euo pipefail
+
+corpus="${1:-/opt/cpp-bench}"
+runs="${2:-5}"
+shift $(( $# > 2 ? 2 : $# ))
+flags=("$@")
+if [ ${#flags[@]} -eq 0 ]; then
+    flags=(-std=gnu++17 -O2)
+fi
+
+pch_dir=$(cpp-pch "${flags[@]}")
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+
+# Median wall time in milliseconds of compiling $1 runs times with the remaining arguments as extra flags
+median_ms() {
+    local file=$1
+    shift
+    local times=()
+    for _ in $(seq "$runs"); do
+        local start end
+        start=$(date +%s%N)
+        g++ "${flags[@]}" "$@" "$file" -o "$work/a.out"
+        end=$(date +%s%N)
+        times+=($(( (end - start) / 1000000 )))
+    done
+    printf '%s\n' "${times[@]}" | sort -n | sed -n "$(( (runs + 1) / 2 ))p"
+}
+
+printf 'flags: %s, %s runs per file\n' "${flags[*]}" "$runs"
+printf '%-28s %12s %12s %8s\n' file "plain (ms)" "pch (ms)" speedup
+total_plain=0
+total_pch=0
+for file in "$corpus"/*.cpp; do
+    plain=$(median_ms "$file")
+    pch=$(median_ms "$file" -I "$pch_dir" -Winvalid-pch)
+    total_plain=$(( total_plain + plain ))
+    total_pch=$(( total_pch + pch ))
+    printf '%-28s %12d %12d %7sx\n' "$(basename "$file")" "$plain" "$pch" \
+        "$(awk -v a="$plain" -v b="$pch" 'BEGIN { printf "%.1f", (b > 0 ? a / b : 0) }')"
+done
+printf '%-28s %12d %12d %7sx\n' total "$total_plain" "$total_pch" \
+    "$(awk -v a="$total_plain" -v b="$total_pch" 'BEGIN { printf "%.1f", (b > 0 ? a / b : 0) }')"
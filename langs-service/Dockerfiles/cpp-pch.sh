@@ -0,0 +1,24 @@
+#!/usr/bin/env bash
+# Builds the precompiled <bits/stdc++.h> for one set of judging flags and prints its directory:
+#   cpp-pch <g++ flags...>
+# The header goes to $CPP_PCH_ROOT/<first 16 hex digits of sha256("<flags joined by spaces>")>/bits,
+# which is where langs-service points -I for a compile with exactly these flags. g++ only uses a
+# precompiled header built with matching flags, a mismatch falls back to the regular header.
+set -euo pipefail
+
+root="${CPP_PCH_ROOT:-/opt/pch}"
+flags=("$@")
+dir="$root/$(printf '%s' "${flags[*]}" | sha256sum | cut -c1-16)"
+
+if [ ! -f "$dir/bits/stdc++.h.gch" ]; then
+    # The header these flags would include, first line of the include tree
+    header=$(echo '#include <bits/stdc++.h>' | g++ "${flags[@]}" -x c++ -E -H - 2>&1 >/dev/null | sed -n 's/^\. //p' | head -n 1)
+    mkdir -p "$dir/bits"
+    # Built under a temporary name so a compile never sees a partial header
+    tmp=$(mktemp "$dir/bits/.stdc++.h.gch.XXXXXX")
+    trap 'rm -f "$tmp"' EXIT
+    g++ "${flags[@]}" -x c++-header "$header" -o "$tmp"
+    chmod 644 "$tmp"
+    mv -f "$tmp" "$dir/bits/stdc++.h.gch"
+fi
+echo "$dir"
@@ -0,0 +1,314 @@
+#!/usr/bin/env python3
+"""Fork server for python-runner.
+
+langs-service drives it over stdin/stdout exactly like sandbox-worker.sh, but instead of starting
+a new interpreter per test, this process imports the commonly used standard library once and forks
+a child per job, so a test starts in a few milliseconds on already loaded modules.
+
+Requests:
+  JOB <id> <timeout-seconds> <stdout-limit> <stderr-limit> <command-bytes> <stdin-bytes>\\n<command><stdin>
+  <command> is the path of the script to run
+  PING <id>\\n
+Responses are the ones of sandbox-worker.sh (START, O, E, END, PONG), with exit codes as
+"timeout python3 <script>" would report them: 124 when the time limit is hit, 128 + signal for a
+child killed by a signal. START carries the pid of the child, which leads its own process group.
+
+Each child gets its own stdin/stdout/stderr pipes, runs with the script's directory as working
+directory and __main__, and has its CPU time, address space, file size and open files limited
+before any submitted code runs. A fork starts from the state of this process, so nothing a job
+does is seen by the next one.
+"""
+import argparse
+import atexit
+import base64
+import gc
+import io
+import os
+import resource
+import select
+import signal
+import sys
+import threading
+import time
+import traceback
+import types
+
+# Imported once here so children start with them loaded
+PRELOAD = (
+    "array", "bisect", "collections", "copy", "dataclasses", "datetime", "decimal", "enum",
+    "fractions", "functools", "heapq", "itertools", "json", "math", "operator", "random", "re",
+    "statistics", "string", "threading", "typing",
+)
+
+# Same line length as base64 -w 3072 in sandbox-worker.sh
+FRAME_BYTES = 3072 // 4 * 3
+EXIT_TIMEOUT = 124
+READ_BYTES = 1 << 16
+
+
+class Requests:
+    """Buffered reader over the request pipe, without a file object a child could flush or close."""
+
+    def __init__(self, fd):
+        self.fd = fd
+        self.buffer = b""
+
+    def readline(self):
+        while b"\n" not in self.buffer:
+            chunk = os.read(self.fd, READ_BYTES)
+            if not chunk:
+                return None
+            self.buffer += chunk
+        line, _, self.buffer = self.buffer.partition(b"\n")
+        return line.decode("ascii")
+
+    def read(self, size):
+        while len(self.buffer) < size:
+            chunk = os.read(self.fd, max(READ_BYTES, size - len(self.buffer)))
+            if not chunk:
+                raise EOFError("request truncated")
+            self.buffer += chunk
+        data, self.buffer = self.buffer[:size], self.buffer[size:]
+        return data
+
+
+class Zygote:
+
+    def __init__(self, limits):
+        self.limits = limits
+        # The protocol moves to private descriptors; stray output of this process goes nowhere
+        self.requests = Requests(os.dup(0))
+        self.responses = os.dup(1)
+        devnull = os.open(os.devnull, os.O_RDWR)
+        for fd in (0, 1, 2):
+            os.dup2(devnull, fd)
+        os.close(devnull)
+        # What a fresh interpreter in this container would use for its standard streams
+        self.stdio_encoding = sys.stdout.encoding
+        self.stdio_errors = sys.stdout.errors
+        self.stdin_errors = sys.stdin.errors
+
+    def serve(self):
+        for name in PRELOAD:
+            try:
+                __import__(name)
+            except ImportError:
+                pass
+        # Preloaded objects are never collected, so children do not touch (and copy) their pages
+        gc.collect()
+        gc.freeze()
+
+        while True:
+            header = self.requests.readline()
+            if header is None:
+                return
+            fields = header.split(" ")
+            if fields[0] == "PING":
+                self.write_line("PONG " + fields[1])
+            elif fields[0] == "JOB":
+                command = self.requests.read(int(fields[5])).decode("utf-8")
+                stdin = self.requests.read(int(fields[6]))
+                self.run_job(fields[1], int(fields[2]), int(fields[3]), int(fields[4]), command.strip(), stdin)
+            else:
+                self.write_line("ERR unknown request: " + fields[0])
+
+    def run_job(self, job_id, timeout_s, out_limit, err_limit, script, stdin):
+        in_r, in_w = os.pipe()
+        out_r, out_w = os.pipe()
+        err_r, err_w = os.pipe()
+        pid = os.fork()
+        if pid == 0:
+            for fd in (in_w, out_r, err_r, self.requests.fd, self.responses):
+                os.close(fd)
+            run_child(script, timeout_s, self.limits, in_r, out_w, err_w,
+                      self.stdio_encoding, self.stdio_errors, self.stdin_errors)
+        for fd in (in_r, out_w, err_w):
+            os.close(fd)
+        self.write_line("START %s %d" % (job_id, pid))
+
+        deadline = time.monotonic() + timeout_s
+        timed_out = False
+        status = None
+        child = os.pidfd_open(pid)
+        os.set_blocking(in_w, False)
+        # Like head -c in the shell agent: at most out_limit + 1 bytes of stdout are forwarded
+        out_room = out_limit + 1
+        err_room = err_limit
+        out_frames = Frames(self, "O")
+        err_frames = Frames(self, "E")
+        readers = {out_r, err_r}
+        try:
+            while readers or status is None:
+                remaining = deadline - time.monotonic()
+                if remaining <= 0 and not timed_out:
+                    timed_out = True
+                    kill_group(pid)
+                waiting = list(readers) + ([child] if status is None else [])
+                writing = [in_w] if in_w is not None else []
+                ready, writable, _ = select.select(waiting, writing, [], max(remaining, 0) if not timed_out else 1)
+                if in_w in writable:
+                    try:
+                        written = os.write(in_w, stdin[:READ_BYTES])
+                        stdin = stdin[written:]
+                    except BlockingIOError:
+                        pass
+                    except BrokenPipeError:
+                        stdin = b""
+                    if not stdin:
+                        os.close(in_w)
+                        in_w = None
+                if child in ready:
+                    status = os.waitpid(pid, 0)[1]
+                    # Whatever the script left running goes with it, so its pipes reach end-of-file
+                    kill_group(pid)
+                for fd in (out_r, err_r):
+                    if fd not in ready:
+                        continue
+                    chunk = os.read(fd, READ_BYTES)
+                    if not chunk:
+                        readers.discard(fd)
+                    elif fd == out_r and out_room > 0:
+                        out_frames.write(chunk[:out_room])
+                        out_room -= min(out_room, len(chunk))
+                        if out_room == 0:
+                            # The script sees a closed pipe on its next write, as after head -c
+                            readers.discard(out_r)
+                            os.close(out_r)
+                            out_r = None
+                    elif fd == err_r and err_room > 0:
+                        err_frames.write(chunk[:err_room])
+                        err_room -= min(err_room, len(chunk))
+        finally:
+            for fd in (in_w, out_r, err_r, child):
+                if fd is not None:
+                    os.close(fd)
+        out_frames.flush()
+        err_frames.flush()
+
+        if timed_out or (os.WIFSIGNALED(status) and os.WTERMSIG(status) == signal.SIGXCPU):
+            exit_code = EXIT_TIMEOUT
+        elif os.WIFSIGNALED(status):
+            exit_code = 128 + os.WTERMSIG(status)
+        else:
+            exit_code = os.WEXITSTATUS(status)
+        self.write_line("END %s %d" % (job_id, exit_code))
+
+    def write_line(self, line):
+        data = (line + "\n").encode("ascii")
+        while data:
+            data = data[os.write(self.responses, data):]
+
+
+class Frames:
+    """Frames bytes as "<tag> <base64>" protocol lines."""
+
+    def __init__(self, zygote, tag):
+        self.zygote = zygote
+        self.tag = tag
+        self.pending = b""
+
+    def write(self, data):
+        self.pending += data
+        while len(self.pending) >= FRAME_BYTES:
+            self.emit(self.pending[:FRAME_BYTES])
+            self.pending = self.pending[FRAME_BYTES:]
+
+    def flush(self):
+        if self.pending:
+            self.emit(self.pending)
+            self.pending = b""
+
+    def emit(self, chunk):
+        self.zygote.write_line(self.tag + " " + base64.b64encode(chunk).decode("ascii"))
+
+
+def kill_group(pid):
+    try:
+        os.killpg(pid, signal.SIGKILL)
+    except (ProcessLookupError, PermissionError):
+        pass
+
+
+def run_child(script, timeout_s, limits, in_r, out_w, err_w, encoding, errors, stdin_errors):
+    """Turn the forked process into "python3 <script>"; never returns into the server loop."""
+    os.setsid()
+    for target, fd in ((0, in_r), (1, out_w), (2, err_w)):
+        os.dup2(fd, target)
+        os.close(fd)
+    apply_limits(timeout_s, limits)
+
+    sys.stdin = sys.__stdin__ = io.TextIOWrapper(io.open(0, "rb", closefd=False), encoding=encoding, errors=stdin_errors)
+    sys.stdout = sys.__stdout__ = io.TextIOWrapper(io.open(1, "wb", closefd=False), encoding=encoding, errors=errors)
+    sys.stderr = sys.__stderr__ = io.TextIOWrapper(io.open(2, "wb", closefd=False), encoding=encoding,
+                                                   errors="backslashreplace", line_buffering=True)
+
+    directory = os.path.dirname(os.path.abspath(script))
+    os.chdir(directory)
+    sys.argv = [script]
+    sys.path[0] = directory
+    main = types.ModuleType("__main__")
+    main.__file__ = script
+    main.__builtins__ = __builtins__
+    sys.modules["__main__"] = main
+
+    exit_code = 0
+    try:
+        with open(script, "rb") as source:
+            code = compile(source.read(), script, "exec")
+        exec(code, main.__dict__)
+    except SystemExit as e:
+        exit_code = e.code
+    except BaseException as e:
+        # Start the traceback at the script, as python3 <script> prints it
+        tb = e.__traceback__
+        while tb is not None and tb.tb_frame.f_code.co_filename != script:
+            tb = tb.tb_next
+        traceback.print_exception(type(e), e, tb)
+        exit_code = 1
+    os._exit(shut_down(exit_code))
+
+
+def shut_down(code):
+    """What interpreter shutdown does for a script, without tearing down all the preloaded modules."""
+    if code is None:
+        code = 0
+    elif not isinstance(code, int):
+        print(code, file=sys.stderr)
+        code = 1
+    for thread in threading.enumerate():
+        if thread is not threading.main_thread() and not thread.daemon:
+            thread.join()
+    atexit._run_exitfuncs()
+    for stream in (sys.stdout, sys.stderr):
+        try:
+            stream.flush()
+        except (OSError, ValueError):
+            # CPython's exit status when flushing the standard streams fails
+            code = 120
+    return code
+
+
+def apply_limits(timeout_s, limits):
+    # CPU time beyond the wall clock limit means SIGXCPU, reported as a timeout
+    resource.setrlimit(resource.RLIMIT_CPU, (timeout_s, timeout_s + 1))
+    resource.setrlimit(resource.RLIMIT_CORE, (0, 0))
+    if limits.memory_mb > 0:
+        memory = limits.memory_mb * 1024 * 1024
+        resource.setrlimit(resource.RLIMIT_AS, (memory, memory))
+    if limits.file_size_mb > 0:
+        file_size = limits.file_size_mb * 1024 * 1024
+        resource.setrlimit(resource.RLIMIT_FSIZE, (file_size, file_size))
+    if limits.open_files > 0:
+        resource.setrlimit(resource.RLIMIT_NOFILE, (limits.open_files, limits.open_files))
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Fork server running Python submissions")
+    parser.add_argument("--memory-mb", type=int, default=0, help="address space limit per job, 0 for none")
+    parser.add_argument("--file-size-mb", type=int, default=64, help="largest file a job may write, 0 for no limit")
+    parser.add_argument("--open-files", type=int, default=256, help="open file limit per job, 0 for no limit")
+    Zygote(parser.parse_args()).serve()
+
+
+if __name__ == "__main__":
+    main()
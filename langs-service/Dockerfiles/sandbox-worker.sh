@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+# Long-lived sandbox worker driven by langs-service over the stdin/stdout of an attached exec session.
+#
+# Requests (one per job):
+#   JOB <id> <timeout-seconds> <stdout-limit> <stderr-limit> <command-bytes> <stdin-bytes>\n<command><stdin>
+#   The stdin payload is piped straight into the command, it is never written to a file.
+#   PING <id>\n
+# Responses:
+#   START <id> <pid>\n        the job is running; <pid> leads its process group, so it can be killed
+#                             from another exec with: kill -KILL -- -<pid> <pid>
+#   O <base64 chunk>\n        stdout of the command, repeated as needed. At most <stdout-limit> + 1
+#                             bytes are forwarded; the command gets SIGPIPE on the next write, so
+#                             receiving more than <stdout-limit> bytes means the limit was exceeded.
+#   E <base64 chunk>\n        stderr of the command, truncated to <stderr-limit> bytes (the rest is
+#                             drained and dropped, writing to stderr never stalls or kills the command)
+#   END <id> <exit-code>\n    terminates a JOB response, after all of its O and E lines
+#   PONG <id>\n               answers a PING
+set -o pipefail
+
+# Protocol lines that must bypass the output encoding go to the original stdout
+exec 3>&1
+
+# Frame stdin as "<tag> <base64>" lines
+frame() {
+    base64 -w 3072 | sed -u "s/^/$1 /"
+}
+
+while IFS=' ' read -r verb id timeout_s out_limit err_limit cmd_len in_len; do
+    case "$verb" in
+        PING)
+            echo "PONG $id"
+            continue
+            ;;
+        JOB)
+            ;;
+        *)
+            echo "ERR unknown request: $verb"
+            continue
+            ;;
+    esac
+
+    cmd=$(head -c "$cmd_len")
+
+    # The stdin payload is always consumed completely so the next header stays aligned,
+    # even when the command exits without reading it.
+    # The command runs in the background only to learn its pid; fd 4 hands it the stdin payload,
+    # which background commands would otherwise lose to /dev/null. Its stdout leaves through fd 6
+    # while its stderr goes down the inner pipe, so both streams are framed concurrently.
+    head -c "$in_len" | {
+        {
+            {
+                timeout -k 1 "$timeout_s" bash -c "$cmd" 0<&4 4<&- 2>&1 1>&6 6>&- &
+                echo "START $id $!" >&3
+                wait $!
+            } | { head -c "$err_limit" | frame E; cat > /dev/null; } >&3
+        } 4<&0 6>&1 | head -c "$((out_limit + 1))" | frame O
+        rc=$?
+        cat > /dev/null
+        exit "$rc"
+    }
+    echo "END $id $?"
+done
@@ -0,0 +1,319 @@
+package com.BugMiner.langs_service.cache;
+
+import com.BugMiner.langs_service.health.RunnerHealthRegistry;
+import com.BugMiner.langs_service.runtime.ContainerRuntime;
+import com.BugMiner.langs_service.runtime.ExecResult;
+import com.BugMiner.langs_service.service.Language;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of compiled artifacts, so resubmitting the same source skips the compiler.
+ * <p>
+ * Entries are keyed by a hash of the language, the compiler version reported by its runner, the
+ * compile command and the source. Each entry is the tar archive of the language's artifact path,
+ * ready to be extracted into a fresh working directory. Archives live on disk and are evicted least
+ * recently used first once the byte budget is exceeded; the in-memory index is rebuilt from the
+ * directory on startup, with file modification times preserving the recency order across restarts.
+ */
+@Slf4j
+@Component
+public class CompileCache {
+
+    private static final String ENTRY_SUFFIX = ".tar";
+
+    @Value("${compile-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${compile-cache.directory:${java.io.tmpdir}/langs-service/compile-cache}")
+    private Path directory;
+
+    @Value("${compile-cache.max-bytes:536870912}")
+    private long maxBytes;
+
+    @Value("${compile-cache.max-entry-bytes:67108864}")
+    private long maxEntryBytes;
+
+    private final ContainerRuntime containerRuntime;
+    private final RunnerHealthRegistry runnerHealth;
+    private final MeterRegistry meterRegistry;
+
+    // Key to archive size, in access order: the eldest entry is evicted first
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final Map<Language, CompilerVersion> compilerVersions = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private Counter evictedBytes;
+
+    public CompileCache(ContainerRuntime containerRuntime, RunnerHealthRegistry runnerHealth, MeterRegistry meterRegistry) {
+        this.containerRuntime = containerRuntime;
+        this.runnerHealth = runnerHealth;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("compile.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("compile.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss").register(meterRegistry);
+        Gauge.builder("compile.cache.hit.ratio", this, CompileCache::getHitRatio).register(meterRegistry);
+        Gauge.builder("compile.cache.size", this, CompileCache::getTotalBytes).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("compile.cache.entries", this, CompileCache::getEntryCount).register(meterRegistry);
+        evictedBytes = Counter.builder("compile.cache.evicted").baseUnit("bytes").register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            loadIndex();
+            log.info("Compile cache at {} holds {} entries ({} bytes, budget {})",
+                    directory, getEntryCount(), getTotalBytes(), maxBytes);
+        } catch (IOException e) {
+            log.error("Compile cache directory {} is unusable, caching disabled: {}", directory, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    /**
+     * Compute the cache key for a source file compiled in the runner with the given compile command.
+     * The compiler version is asked from the runner once and again after each runner restart.
+     *
+     * @return the key, or null if the artifacts of this compilation cannot be cached
+     */
+    public String keyForRunner(Language language, String compileCommand, String source) {
+        if (!enabled || compileCommand == null) {
+            return null;
+        }
+        String version = compilerVersion(language);
+        if (version == null) {
+            return null;
+        }
+        return keyFor(language, version + "\0" + compileCommand, source);
+    }
+
+    /**
+     * Compute the cache key for a source file compiled by some other compiler.
+     *
+     * @param compiler identifies the compiler, its version and options
+     */
+    public String keyFor(Language language, String compiler, String source) {
+        if (!enabled) {
+            return null;
+        }
+        MessageDigest digest = sha256();
+        for (String part : List.of(language.getId(), compiler)) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            // Separator so adjacent parts cannot be shifted into each other
+            digest.update((byte) 0);
+        }
+        digest.update(source.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return the cached artifact archive, or null on a miss
+     */
+    public byte[] get(String key) {
+        synchronized (this) {
+            if (index.get(key) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        Path file = entryPath(key);
+        try {
+            byte[] archive = Files.readAllBytes(file);
+            // The modification time carries the recency order over a restart
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return archive;
+        } catch (NoSuchFileException e) {
+            // Evicted between the lookup and the read
+            forget(key);
+        } catch (IOException e) {
+            log.warn("Could not read compile cache entry {}: {}", key, e.getMessage());
+            forget(key);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store the artifact archive of a successful compilation and evict older entries if needed.
+     */
+    public void put(String key, byte[] archive) {
+        if (!enabled || archive.length > maxEntryBytes) {
+            return;
+        }
+        Path file = entryPath(key);
+        // Written under a temporary name and moved into place, so a crash never leaves a torn entry
+        Path temporary = directory.resolve(key + ".tmp-" + UUID.randomUUID());
+        try {
+            Files.write(temporary, archive);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Could not store compile cache entry {}: {}", key, e.getMessage());
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Removed on the next startup
+            }
+            return;
+        }
+        synchronized (this) {
+            Long previous = index.put(key, (long) archive.length);
+            totalBytes += archive.length - (previous != null ? previous : 0);
+        }
+        evict();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return index.size();
+    }
+
+    private String compilerVersion(Language language) {
+        long generation = runnerHealth.getRunnerGeneration(language);
+        CompilerVersion known = compilerVersions.get(language);
+        if (known != null && known.generation() == generation) {
+            return known.version();
+        }
+        try {
+            ExecResult result = containerRuntime.exec(language.getContainerName(),
+                    List.of("sh", "-c", language.getCompilerVersionCommand() + " 2>&1"));
+            if (!result.isSuccess()) {
+                log.warn("Compiler version check failed in {} with exit code {}", language.getContainerName(), result.exitCode());
+                return null;
+            }
+            String version = result.stdout().trim();
+            compilerVersions.put(language, new CompilerVersion(generation, version));
+            log.debug("Compiler in {}: {}", language.getContainerName(), version.lines().findFirst().orElse(""));
+            return version;
+        } catch (IOException e) {
+            log.warn("Could not check compiler version in {}: {}", language.getContainerName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(ENTRY_SUFFIX)) {
+                    entries.add(file);
+                } else if (name.contains(".tmp-")) {
+                    // Left behind by a write that never completed
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        // Oldest first, so the most recently used entries end up at the tail of the access order
+        entries.sort(Comparator.comparing(CompileCache::lastModified));
+        synchronized (this) {
+            for (Path file : entries) {
+                String name = file.getFileName().toString();
+                long size = Files.size(file);
+                index.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+                totalBytes += size;
+            }
+        }
+        evict();
+    }
+
+    private void evict() {
+        List<String> victims = new ArrayList<>();
+        long freed = 0;
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                victims.add(entry.getKey());
+                totalBytes -= entry.getValue();
+                freed += entry.getValue();
+                eldest.remove();
+            }
+        }
+        for (String key : victims) {
+            try {
+                Files.deleteIfExists(entryPath(key));
+            } catch (IOException e) {
+                log.warn("Could not delete compile cache entry {}: {}", key, e.getMessage());
+            }
+        }
+        if (freed > 0) {
+            evictedBytes.increment(freed);
+            log.debug("Evicted {} compile cache entries ({} bytes)", victims.size(), freed);
+        }
+    }
+
+    private synchronized void forget(String key) {
+        Long size = index.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record CompilerVersion(long generation, String version) {
+    }
+}
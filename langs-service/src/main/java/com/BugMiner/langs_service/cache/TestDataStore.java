@@ -0,0 +1,275 @@
+package com.BugMiner.langs_service.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of test data (inputs and expected outputs), so a request can refer to
+ * test data by its SHA-256 instead of carrying it.
+ * <p>
+ * Blobs are kept in memory and on disk, each tier with its own byte budget and evicted least
+ * recently used first. A blob evicted from memory is read back from disk on its next use. The disk
+ * index is rebuilt from the directory on startup, like the {@link CompileCache}'s.
+ */
+@Slf4j
+@Component
+public class TestDataStore {
+
+    private static final String ENTRY_SUFFIX = ".bin";
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    @Value("${test-data.directory:${java.io.tmpdir}/langs-service/test-data}")
+    private Path directory;
+
+    @Value("${test-data.memory-bytes:268435456}")
+    private long maxMemoryBytes;
+
+    @Value("${test-data.disk-bytes:4294967296}")
+    private long maxDiskBytes;
+
+    private final MeterRegistry meterRegistry;
+
+    // Hash to data and hash to file size, both in access order: the eldest entry is evicted first
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    private boolean diskEnabled = true;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TestDataStore(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("test.data.requests", hits, AtomicLong::get)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("test.data.requests", misses, AtomicLong::get)
+                .tag("result", "miss").register(meterRegistry);
+        Gauge.builder("test.data.memory.size", this, TestDataStore::getMemoryBytes).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("test.data.disk.size", this, TestDataStore::getDiskBytes).baseUnit("bytes").register(meterRegistry);
+
+        try {
+            Files.createDirectories(directory);
+            loadIndex();
+            log.info("Test data store at {} holds {} blobs ({} bytes, budget {})",
+                    directory, disk.size(), getDiskBytes(), maxDiskBytes);
+        } catch (IOException e) {
+            log.error("Test data directory {} is unusable, keeping test data in memory only: {}", directory, e.getMessage());
+            diskEnabled = false;
+        }
+    }
+
+    public static String hashOf(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param hash lower-case hex SHA-256 of the UTF-8 encoded data
+     * @return the data, or null if this node does not have it
+     */
+    public String get(String hash) {
+        synchronized (this) {
+            // Also a use of the disk copy, which would otherwise be evicted while hot in memory
+            boolean onDisk = disk.get(hash) != null;
+            String data = memory.get(hash);
+            if (data != null) {
+                hits.incrementAndGet();
+                return data;
+            }
+            if (!onDisk) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        Path file = entryPath(hash);
+        try {
+            String data = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            // The modification time carries the recency order over a restart
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            remember(hash, data);
+            return data;
+        } catch (NoSuchFileException e) {
+            // Evicted between the lookup and the read
+            forget(hash);
+        } catch (IOException e) {
+            log.warn("Could not read test data {}: {}", hash, e.getMessage());
+            forget(hash);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store a blob under its hash.
+     *
+     * @return false if the data does not match the hash, in which case nothing is stored
+     */
+    public boolean put(String hash, byte[] data) {
+        if (!HASH.matcher(hash).matches() || !hash.equals(hashOf(data))) {
+            return false;
+        }
+        synchronized (this) {
+            if (memory.containsKey(hash)) {
+                return true;
+            }
+        }
+        if (diskEnabled && data.length <= maxDiskBytes) {
+            store(hash, data);
+        }
+        remember(hash, new String(data, StandardCharsets.UTF_8));
+        return true;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    // Keeps the data in memory unless it alone exceeds the memory budget; sized by its length in chars
+    private void remember(String hash, String data) {
+        long size = data.length();
+        if (size > maxMemoryBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (memory.put(hash, data) == null) {
+                memoryBytes += size;
+            }
+            Iterator<Map.Entry<String, String>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                Map.Entry<String, String> entry = eldest.next();
+                memoryBytes -= entry.getValue().length();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void store(String hash, byte[] data) {
+        Path file = entryPath(hash);
+        // Written under a temporary name and moved into place, so a crash never leaves a torn blob
+        Path temporary = directory.resolve(hash + ".tmp-" + UUID.randomUUID());
+        try {
+            Files.write(temporary, data);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Could not store test data {}: {}", hash, e.getMessage());
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Removed on the next startup
+            }
+            return;
+        }
+        synchronized (this) {
+            Long previous = disk.put(hash, (long) data.length);
+            diskBytes += data.length - (previous != null ? previous : 0);
+        }
+        evictFromDisk();
+    }
+
+    private void loadIndex() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(ENTRY_SUFFIX)) {
+                    entries.add(file);
+                } else if (name.contains(".tmp-")) {
+                    // Left behind by a write that never completed
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        // Oldest first, so the most recently used blobs end up at the tail of the access order
+        entries.sort(Comparator.comparing(TestDataStore::lastModified));
+        synchronized (this) {
+            for (Path file : entries) {
+                String name = file.getFileName().toString();
+                long size = Files.size(file);
+                disk.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+                diskBytes += size;
+            }
+        }
+        evictFromDisk();
+    }
+
+    private void evictFromDisk() {
+        List<String> victims = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                victims.add(entry.getKey());
+                diskBytes -= entry.getValue();
+                eldest.remove();
+            }
+        }
+        for (String hash : victims) {
+            try {
+                Files.deleteIfExists(entryPath(hash));
+            } catch (IOException e) {
+                log.warn("Could not delete test data {}: {}", hash, e.getMessage());
+            }
+        }
+        if (!victims.isEmpty()) {
+            log.debug("Evicted {} test data blobs from disk", victims.size());
+        }
+    }
+
+    private synchronized void forget(String hash) {
+        Long size = disk.remove(hash);
+        if (size != null) {
+            diskBytes -= size;
+        }
+    }
+
+    private Path entryPath(String hash) {
+        return directory.resolve(hash + ENTRY_SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.BugMiner.langs_service.compiler;
+
+import com.BugMiner.langs_service.health.RunnerHealthRegistry;
+import com.BugMiner.langs_service.runtime.ContainerRuntime;
+import com.BugMiner.langs_service.runtime.ExecResult;
+import com.BugMiner.langs_service.service.Language;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * How C++ submissions are compiled in cpp-runner: the flag profile (language standard and
+ * optimisation level), a precompiled {@code <bits/stdc++.h>} for that profile and the shared ccache.
+ * <p>
+ * Precompiled headers are built in the runner by {@code cpp-pch} (see {@code Dockerfiles/cpp-pch.sh})
+ * into a directory named after the profile's flags, which the compile command puts on the include
+ * path. g++ only uses a precompiled header built with matching flags and falls back to the regular
+ * header otherwise, so a missing or stale one costs compile time, never correctness. The image ships
+ * them for the default profiles; any other profile gets its header built in the background on first use.
+ */
+@Slf4j
+@Component
+public class CppToolchain {
+
+    private static final String PCH_ROOT = "/opt/pch";
+
+    // name:flags pairs, separated by commas
+    @Value("${compile.cpp.profiles:gnu++17-O2:-std=gnu++17 -O2,gnu++20-O2:-std=gnu++20 -O2,gnu++17-O0:-std=gnu++17 -O0}")
+    private String profileSpecs;
+
+    @Value("${compile.cpp.default-profile:gnu++17-O2}")
+    private String defaultProfileName;
+
+    @Value("${compile.cpp.pch:true}")
+    private boolean pchEnabled;
+
+    @Value("${compile.cpp.ccache:true}")
+    private boolean ccacheEnabled;
+
+    private final ContainerRuntime containerRuntime;
+    private final RunnerHealthRegistry runnerHealth;
+
+    private final Map<String, Profile> profiles = new LinkedHashMap<>();
+    // Runner generation in which the precompiled header of a profile was last requested
+    private final Map<String, Long> pchGenerations = new ConcurrentHashMap<>();
+    private final ExecutorService pchBuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cpp-pch-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CppToolchain(ContainerRuntime containerRuntime, RunnerHealthRegistry runnerHealth) {
+        this.containerRuntime = containerRuntime;
+        this.runnerHealth = runnerHealth;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String spec : profileSpecs.split(",")) {
+            int separator = spec.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid C++ compiler profile, expected name:flags: " + spec);
+            }
+            String name = spec.substring(0, separator).trim();
+            List<String> flags = List.of(spec.substring(separator + 1).trim().split("\\s+"));
+            profiles.put(name, new Profile(name, flags));
+        }
+        if (!profiles.containsKey(defaultProfileName)) {
+            throw new IllegalArgumentException("Default C++ compiler profile " + defaultProfileName + " is not defined");
+        }
+    }
+
+    /**
+     * @param name profile name, null or blank for the default profile
+     * @return the profile, or null if no profile has this name
+     */
+    public Profile getProfile(String name) {
+        return profiles.get(name == null || name.isBlank() ? defaultProfileName : name.trim());
+    }
+
+    public List<String> getProfileNames() {
+        return new ArrayList<>(profiles.keySet());
+    }
+
+    /**
+     * The command compiling {@code main.cpp} into the language's artifact with the given profile.
+     * Also makes sure the profile's precompiled header gets built in the runner.
+     */
+    public String compileCommand(Profile profile) {
+        StringBuilder command = new StringBuilder();
+        if (ccacheEnabled) {
+            command.append("ccache ");
+        }
+        command.append("g++ ").append(String.join(" ", profile.flags()));
+        if (pchEnabled) {
+            requestPch(profile);
+            command.append(" -I ").append(pchDirectory(profile));
+            if (ccacheEnabled) {
+                // Lets ccache hash the preprocessed source when a precompiled header is used
+                command.append(" -fpch-preprocess");
+            }
+        }
+        return command.append(" main.cpp -o ").append(Language.CPP.getArtifactPath()).toString();
+    }
+
+    private void requestPch(Profile profile) {
+        long generation = runnerHealth.getRunnerGeneration(Language.CPP);
+        Long requested = pchGenerations.put(profile.name(), generation);
+        if (requested != null && requested == generation) {
+            return;
+        }
+        // A compile that runs before the header is ready simply parses the regular header
+        pchBuilder.execute(() -> {
+            List<String> command = new ArrayList<>();
+            command.add("cpp-pch");
+            command.addAll(profile.flags());
+            try {
+                ExecResult result = containerRuntime.exec(Language.CPP.getContainerName(), command);
+                if (result.isSuccess()) {
+                    log.debug("Precompiled header for C++ profile {} ready in {}", profile.name(), result.stdout().trim());
+                } else {
+                    log.warn("Building the precompiled header for C++ profile {} failed with exit code {}: {}",
+                            profile.name(), result.exitCode(), result.stderr().trim());
+                }
+            } catch (IOException e) {
+                log.warn("Could not build the precompiled header for C++ profile {}: {}", profile.name(), e.getMessage());
+            }
+        });
+    }
+
+    // Must match the directory cpp-pch derives from the same flags
+    private static String pchDirectory(Profile profile) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.join(" ", profile.flags()).getBytes(StandardCharsets.UTF_8));
+            return PCH_ROOT + "/" + HexFormat.of().formatHex(digest).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pchBuilder.shutdownNow();
+    }
+
+    /**
+     * A named set of judging flags, e.g. {@code gnu++17-O2} for {@code -std=gnu++17 -O2}.
+     */
+    public record Profile(String name, List<String> flags) {
+    }
+}
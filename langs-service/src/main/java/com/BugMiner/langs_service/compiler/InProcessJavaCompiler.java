@@ -0,0 +1,317 @@
+package com.BugMiner.langs_service.compiler;
+
+import com.BugMiner.langs_service.entity.CompileError;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles Java submissions inside the langs-service JVM with {@code javax.tools}, so a Java
+ * judgement does not pay for starting {@code javac} in the runner container.
+ * <p>
+ * Source and class files never touch the disk: the source is read from a string and class files
+ * are collected in memory, ready to be uploaded into the sandbox. Only the JDK platform classes
+ * of the configured release are visible to the submission, the service's own class path is not.
+ * Annotation processing is disabled, so compiling a submission never runs any of its code.
+ * <p>
+ * The source is untrusted and javac has no limits of its own: deeply nested or generics-heavy code
+ * can keep it busy for long and take much of the heap. Sources above a size limit are therefore
+ * left to the runner, compilations run on a few dedicated threads, and one that exceeds its time
+ * limit or runs out of memory or stack is abandoned, so the runner's javac, which has the sandbox's
+ * limits, compiles the submission instead.
+ */
+@Slf4j
+@Component
+public class InProcessJavaCompiler {
+
+    private static final String SOURCE_FILE_NAME = "Main.java";
+
+    @Value("${compile.java.in-process:true}")
+    private boolean enabled;
+
+    // Must match the Java version of the runner image
+    @Value("${compile.java.release:21}")
+    private int release;
+
+    // Larger sources are compiled in the runner
+    @Value("${compile.java.in-process-max-source-chars:65536}")
+    private int maxSourceChars;
+
+    @Value("${compile.java.in-process-timeout-ms:10000}")
+    private long timeoutMs;
+
+    // In-process compilations at once, which bounds the heap they can take
+    @Value("${compile.java.in-process-threads:2}")
+    private int threads;
+
+    private JavaCompiler compiler;
+    private ExecutorService executor;
+    // Held until a compilation has really ended, also one that was abandoned after its time limit
+    private Semaphore freeThreads;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            log.warn("No system Java compiler (running on a JRE?), Java submissions are compiled in the runner");
+        } else if (SourceVersion.latestSupported().ordinal() < release) {
+            log.warn("The service JVM cannot compile for Java {}, Java submissions are compiled in the runner", release);
+            compiler = null;
+        }
+        if (compiler != null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "java-compiler-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            freeThreads = new Semaphore(threads);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isAvailable() {
+        return compiler != null;
+    }
+
+    /**
+     * @return true if the source may be compiled in this JVM, i.e. the compiler is available and
+     * the source is not too large
+     */
+    public boolean accepts(String source) {
+        return compiler != null && source.length() <= maxSourceChars;
+    }
+
+    /**
+     * Compile a single {@code Main.java} within the time limit.
+     *
+     * @return the compilation, or empty if it should be left to the runner: the source is too
+     * large, every compiler thread is busy, or the compilation took too long or ran out of memory
+     * or stack
+     */
+    public Optional<JavaCompilation> tryCompile(String source) throws IOException, InterruptedException {
+        if (!accepts(source)) {
+            return Optional.empty();
+        }
+        if (!freeThreads.tryAcquire()) {
+            log.debug("All in-process compiler threads are busy, compiling in the runner");
+            return Optional.empty();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Future<JavaCompilation> compilation;
+        try {
+            compilation = executor.submit(() -> {
+                try {
+                    return compile(source, deadline);
+                } finally {
+                    freeThreads.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            freeThreads.release();
+            throw e;
+        }
+
+        try {
+            return Optional.of(compilation.get(timeoutMs, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            // Stopped by the deadline check at javac's next phase, its thread stays taken until then.
+            // Not interrupted: that closes the platform class archive javac shares across the JVM
+            log.warn("In-process compilation exceeded {} ms, compiling in the runner", timeoutMs);
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof VirtualMachineError) {
+                // OutOfMemoryError or StackOverflowError, from this compilation's data only
+                log.warn("In-process compilation failed with {}, compiling in the runner", cause.toString());
+                return Optional.empty();
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IllegalStateException("In-process compilation failed", cause);
+        }
+    }
+
+    /**
+     * Identifies the compiler and its options, for cache keys.
+     */
+    public String getVersion() {
+        return "javac " + Runtime.version() + " " + String.join(" ", options());
+    }
+
+    /**
+     * Compile a single {@code Main.java}, abandoning it once past the deadline.
+     *
+     * @return class files by path relative to the class output root, or the errors that stopped compilation
+     */
+    private JavaCompilation compile(String source, long deadline) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, byte[]> classFiles = new LinkedHashMap<>();
+
+        // A standard file manager holds open platform archives and is not thread-safe, one per compilation
+        try (StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8);
+             MemoryFileManager fileManager = new MemoryFileManager(standardFileManager, classFiles)) {
+            standardFileManager.setLocation(StandardLocation.CLASS_PATH, List.of());
+            standardFileManager.setLocation(StandardLocation.SOURCE_PATH, List.of());
+
+            JavacTask task = (JavacTask) compiler.getTask(null, fileManager, diagnostics, options(), null,
+                    List.of(new SourceFile(source)));
+            task.addTaskListener(new DeadlineListener(deadline));
+            boolean success = task.call();
+            if (success) {
+                return new JavaCompilation(classFiles, List.of(), null);
+            }
+        }
+
+        List<CompileError> errors = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            int line = (int) Math.max(0, diagnostic.getLineNumber());
+            int column = (int) Math.max(0, diagnostic.getColumnNumber());
+            String message = diagnostic.getMessage(Locale.ROOT);
+            errors.add(new CompileError(line, column, message));
+            // Same shape as javac's own output, which is what the error message used to carry
+            text.append(SOURCE_FILE_NAME).append(':').append(line).append(": error: ").append(message).append('\n');
+        }
+        text.append(errors.size()).append(errors.size() == 1 ? " error" : " errors");
+        return new JavaCompilation(Map.of(), errors, text.toString());
+    }
+
+    private List<String> options() {
+        return List.of("--release", String.valueOf(release), "-proc:none", "-encoding", "UTF-8", "-nowarn");
+    }
+
+    /**
+     * Outcome of an in-process compilation.
+     *
+     * @param classFiles class file bytes by relative path, e.g. {@code Main$1.class}; empty on failure
+     * @param errors     compiler errors, empty on success
+     * @param errorText  the errors formatted like javac output, null on success
+     */
+    public record JavaCompilation(Map<String, byte[]> classFiles, List<CompileError> errors, String errorText) {
+
+        public boolean isSuccess() {
+            return errorText == null;
+        }
+    }
+
+    /**
+     * Aborts a compilation that is past its deadline. javac cannot be stopped at any point, only
+     * between the phases of a compilation unit or class.
+     */
+    private static final class DeadlineListener implements TaskListener {
+
+        private final long deadline;
+
+        DeadlineListener(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void started(TaskEvent event) {
+            check();
+        }
+
+        @Override
+        public void finished(TaskEvent event) {
+            check();
+        }
+
+        private void check() {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Compilation abandoned after its time limit");
+            }
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String source;
+
+        SourceFile(String source) {
+            super(URI.create("string:///" + SOURCE_FILE_NAME), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, byte[]> classFiles;
+
+        MemoryFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> classFiles) {
+            super(fileManager);
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            String path = className.replace('.', '/') + kind.extension;
+            return new SimpleJavaFileObject(URI.create("mem:///" + path), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classFiles.put(path, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
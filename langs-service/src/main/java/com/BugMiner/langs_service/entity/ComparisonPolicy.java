@@ -0,0 +1,17 @@
+package com.BugMiner.langs_service.entity;
+
+/**
+ * How a program's output is compared with the expected output.
+ */
+public enum ComparisonPolicy {
+    // Identical once leading and trailing whitespace is removed, with \r\n read as \n; the default
+    TRIMMED_EXACT,
+    // Whitespace-separated tokens must match, the amount and kind of whitespace is irrelevant
+    WHITESPACE_TOKENS,
+    // Byte-for-byte identical
+    EXACT,
+    // Identical up to \r\n vs \n line endings and trailing newlines
+    LINE_ENDING_INSENSITIVE,
+    // Like WHITESPACE_TOKENS, but numeric tokens only need to agree within an epsilon
+    FLOAT_EPSILON
+}
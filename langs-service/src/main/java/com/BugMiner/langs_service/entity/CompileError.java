@@ -0,0 +1,17 @@
+package com.BugMiner.langs_service.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A compiler error pointing into the submitted source (1-based, 0 when the compiler gave no position).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompileError {
+    private int line;
+    private int column;
+    private String message;
+}
@@ -13,4 +13,10 @@ public class ExecutionRequest {
     private String language;
     private String code;
     private List<TestCase> testCases;
+    private JudgingMode judgingMode = JudgingMode.ALL;
+    private ComparisonPolicy comparisonPolicy = ComparisonPolicy.TRIMMED_EXACT;
+    // Tolerance for FLOAT_EPSILON, absolute or relative to the expected value
+    private double floatEpsilon = 1e-6;
+    // Named compiler flag set, e.g. gnu++17-O2 for C++; null for the language's default
+    private String compilerProfile;
 }
@@ -14,4 +14,10 @@ public class ExecutionResult {
     private List<TestCaseResult> testResults;
     private String errorMessage;
     private int exitCode;
+    // Structured compiler errors when the compile stage failed, empty otherwise
+    private List<CompileError> compileErrors = List.of();
+
+    public ExecutionResult(boolean success, List<TestCaseResult> testResults, String errorMessage, int exitCode) {
+        this(success, testResults, errorMessage, exitCode, List.of());
+    }
 }
@@ -0,0 +1,13 @@
+package com.BugMiner.langs_service.entity;
+
+/**
+ * Which test cases of a request are judged and when judging stops.
+ */
+public enum JudgingMode {
+    // Run every test case
+    ALL,
+    // Stop at the first failing test case, the remaining ones are cancelled
+    STOP_ON_FIRST_FAILURE,
+    // Run only the test cases marked as samples
+    SAMPLE_ONLY
+}
@@ -10,4 +10,5 @@ import lombok.NoArgsConstructor;
 public class TestCase {
     private String input;
     private String expectedOutput;
+    private boolean sample;
 }
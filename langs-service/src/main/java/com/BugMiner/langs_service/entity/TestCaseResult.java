@@ -12,4 +12,10 @@ public class TestCaseResult {
     private String expectedOutput;
     private String actualOutput;
     private boolean passed;
+    private Verdict verdict;
+    private String stderr;
+    // First difference from the expected output (0 when the output matched)
+    private long diffLine;
+    private long diffColumn;
+    private String diffMessage;
 }
@@ -0,0 +1,16 @@
+package com.BugMiner.langs_service.entity;
+
+/**
+ * Outcome of a single test case.
+ */
+public enum Verdict {
+    ACCEPTED,
+    WRONG_ANSWER,
+    TIME_LIMIT_EXCEEDED,
+    // The program wrote more than the output limit and was stopped
+    OUTPUT_LIMIT_EXCEEDED,
+    // The program exited with a non-zero code
+    RUNTIME_ERROR,
+    // The test could not be run, e.g. no sandbox worker was available
+    INTERNAL_ERROR
+}
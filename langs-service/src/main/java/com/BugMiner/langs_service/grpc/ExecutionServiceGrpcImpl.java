@@ -1,21 +1,45 @@
 package com.BugMiner.langs_service.grpc;
 
+import com.BugMiner.langs_service.cache.TestDataStore;
+import com.BugMiner.langs_service.entity.ComparisonPolicy;
+import com.BugMiner.langs_service.entity.CompileError;
 import com.BugMiner.langs_service.entity.ExecutionRequest;
 import com.BugMiner.langs_service.entity.ExecutionResult;
+import com.BugMiner.langs_service.entity.JudgingMode;
 import com.BugMiner.langs_service.entity.TestCase;
 import com.BugMiner.langs_service.entity.TestCaseResult;
+import com.BugMiner.langs_service.service.AdmissionController;
 import com.BugMiner.langs_service.service.CodeExecutionService;
+import com.BugMiner.langs_service.service.ExecutionCancellation;
+import com.BugMiner.langs_service.service.ExecutionListener;
 import com.langservice.grpc.CodeExecutionRequest;
 import com.langservice.grpc.CodeExecutionResponse;
+import com.langservice.grpc.CompileDiagnostic;
+import com.langservice.grpc.CompileStatus;
+import com.langservice.grpc.ExecutionEvent;
 import com.langservice.grpc.ExecutionServiceGrpc;
+import com.langservice.grpc.ExecutionSummary;
 import com.langservice.grpc.ExecutionTestCase;
 import com.langservice.grpc.ExecutionTestResult;
+import com.langservice.grpc.PutTestDataRequest;
+import com.langservice.grpc.PutTestDataResponse;
+import com.langservice.grpc.ResponseVerbosity;
+import com.langservice.grpc.TestDataBlob;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -23,21 +47,118 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ExecutionServiceGrpcImpl extends ExecutionServiceGrpc.ExecutionServiceImplBase {
 
+    private static final Metadata.Key<String> RETRY_AFTER_MS =
+            Metadata.Key.of("retry-after-ms", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Metadata.Key<String> MISSING_TEST_DATA =
+            Metadata.Key.of("missing-test-data", Metadata.ASCII_STRING_MARSHALLER);
+    // Keeps the trailer well below the default 8 KiB metadata limit; beyond it the trailer is "*"
+    private static final int MAX_LISTED_MISSING = 64;
+
     private final CodeExecutionService codeExecutionService;
+    private final AdmissionController admissionController;
+    private final TestDataStore testDataStore;
+
+    // Leading part of the actual output and stderr kept in results under the DIFF verbosity
+    @Value("${execution.diff-preview-chars:256}")
+    private int diffPreviewChars;
 
     @Override
     public void executeCode(CodeExecutionRequest request, StreamObserver<CodeExecutionResponse> responseObserver) {
-        try {
-            log.info("Received gRPC execution request for language: {}", request.getLanguage());
+        ExecutionRequest serviceRequest = convertToServiceRequest(request, responseObserver);
+        if (serviceRequest != null) {
+            admit(responseObserver, (queueWaitMs, cancellation) ->
+                    executeCode(serviceRequest, request.getVerbosity(), responseObserver, queueWaitMs, cancellation));
+        }
+    }
 
-            // Convert gRPC request to service entity
-            ExecutionRequest serviceRequest = convertToServiceRequest(request);
+    @Override
+    public void executeCodeStream(CodeExecutionRequest request, StreamObserver<ExecutionEvent> responseObserver) {
+        ExecutionRequest serviceRequest = convertToServiceRequest(request, responseObserver);
+        if (serviceRequest != null) {
+            admit(responseObserver, (queueWaitMs, cancellation) ->
+                    executeCodeStream(serviceRequest, request.getVerbosity(), responseObserver, queueWaitMs, cancellation));
+        }
+    }
 
-            // Execute code using existing service
-            ExecutionResult result = codeExecutionService.executeCode(serviceRequest);
+    @Override
+    public void putTestData(PutTestDataRequest request, StreamObserver<PutTestDataResponse> responseObserver) {
+        int stored = 0;
+        for (TestDataBlob blob : request.getBlobsList()) {
+            if (!testDataStore.put(blob.getHash(), blob.getData().toByteArray())) {
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                        .withDescription("Test data does not match its hash " + blob.getHash())
+                        .asRuntimeException());
+                return;
+            }
+            stored++;
+        }
+        log.debug("Stored {} test data blobs", stored);
+
+        responseObserver.onNext(PutTestDataResponse.newBuilder().setStored(stored).build());
+        responseObserver.onCompleted();
+    }
+
+    // An admitted call, given how long it waited and what tells it that its client went away
+    @FunctionalInterface
+    private interface AdmittedCall {
+        void run(long queueWaitMs, ExecutionCancellation cancellation);
+    }
+
+    /**
+     * Hand the call to admission control, or fail it with RESOURCE_EXHAUSTED and a retry hint
+     * when the admission queue is full.
+     */
+    private void admit(StreamObserver<?> responseObserver, AdmittedCall call) {
+        ServerCallStreamObserver<?> serverObserver = (ServerCallStreamObserver<?>) responseObserver;
+        // When the client cancels or its deadline passes, the execution stops instead of running
+        // the whole test set. gRPC only takes the handler before this method returns
+        ExecutionCancellation cancellation = new ExecutionCancellation();
+        serverObserver.setOnCancelHandler(cancellation::cancel);
+
+        boolean admitted = admissionController.offer(queueWaitMs -> {
+            // The client may have given up while the call was queued
+            if (cancellation.isCancelled()) {
+                log.info("Dropping execution request cancelled after {} ms in the admission queue", queueWaitMs);
+                return;
+            }
+            call.run(queueWaitMs, cancellation);
+        });
+
+        if (!admitted) {
+            long retryAfterMs = admissionController.estimateRetryAfterMillis();
+            log.warn("Rejecting execution request, admission queue is full (retry after {} ms)", retryAfterMs);
+
+            Metadata trailers = new Metadata();
+            trailers.put(RETRY_AFTER_MS, String.valueOf(retryAfterMs));
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Execution queue is full, retry after " + retryAfterMs + " ms")
+                    .asRuntimeException(trailers));
+        }
+    }
+
+    private void executeCode(ExecutionRequest serviceRequest, ResponseVerbosity verbosity,
+                             StreamObserver<CodeExecutionResponse> responseObserver, long queueWaitMs,
+                             ExecutionCancellation cancellation) {
+        try {
+            log.info("Received gRPC execution request for language: {}", serviceRequest.getLanguage());
+
+            // Each test result is converted once, as it arrives, and not retained in the service's form
+            ExecutionTestResult[] testResults = new ExecutionTestResult[serviceRequest.getTestCases().size()];
+            ExecutionResult result = codeExecutionService.executeCode(serviceRequest, new ExecutionListener() {
+                @Override
+                public void onTestResult(int index, TestCaseResult testResult) {
+                    testResults[index] = convertToGrpcTestResult(testResult, index, verbosity);
+                }
+            }, cancellation);
+            if (cancellation.isCancelled()) {
+                log.info("Execution request cancelled by its client, no response sent");
+                return;
+            }
 
             // Convert service result to gRPC response
-            CodeExecutionResponse response = convertToGrpcResponse(result);
+            CodeExecutionResponse response = convertToGrpcResponse(result, testResults).toBuilder()
+                    .setQueueWaitMs(queueWaitMs)
+                    .build();
 
             // Send response
             responseObserver.onNext(response);
@@ -46,6 +167,10 @@ public class ExecutionServiceGrpcImpl extends ExecutionServiceGrpc.ExecutionServ
             log.info("Successfully processed execution request with result: {}", result.isSuccess());
 
         } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                log.info("Execution request cancelled by its client, no response sent");
+                return;
+            }
             log.error("Error processing gRPC execution request", e);
 
             // Send error response
@@ -53,6 +178,7 @@ public class ExecutionServiceGrpcImpl extends ExecutionServiceGrpc.ExecutionServ
                     .setSuccess(false)
                     .setErrorMessage("Internal server error: " + e.getMessage())
                     .setExitCode(1)
+                    .setQueueWaitMs(queueWaitMs)
                     .build();
 
             responseObserver.onNext(errorResponse);
@@ -60,27 +186,188 @@ public class ExecutionServiceGrpcImpl extends ExecutionServiceGrpc.ExecutionServ
         }
     }
 
-    private ExecutionRequest convertToServiceRequest(CodeExecutionRequest grpcRequest) {
+    private void executeCodeStream(ExecutionRequest serviceRequest, ResponseVerbosity verbosity,
+                                   StreamObserver<ExecutionEvent> responseObserver, long queueWaitMs,
+                                   ExecutionCancellation cancellation) {
+        log.info("Received streaming gRPC execution request for language: {}", serviceRequest.getLanguage());
+
+        int totalTests = serviceRequest.getTestCases().size();
+        StreamingExecutionListener listener = new StreamingExecutionListener(responseObserver, verbosity, cancellation);
+        ExecutionSummary.Builder summary = ExecutionSummary.newBuilder()
+                .setTotalTests(totalTests)
+                .setQueueWaitMs(queueWaitMs);
+
+        try {
+            ExecutionResult result = codeExecutionService.executeCode(serviceRequest, listener, cancellation);
+
+            summary.setSuccess(result.isSuccess())
+                    .setExitCode(result.getExitCode())
+                    .setPassedTests(listener.getPassedTests());
+            if (result.getErrorMessage() != null) {
+                summary.setErrorMessage(result.getErrorMessage());
+            } else {
+                summary.setSkippedTests(totalTests - listener.getReportedTests());
+            }
+
+            log.info("Successfully streamed execution request with result: {}", result.isSuccess());
+
+        } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                log.info("Streaming execution request cancelled by its client");
+                return;
+            }
+            log.error("Error processing streaming gRPC execution request", e);
+
+            summary.setSuccess(false)
+                    .setErrorMessage("Internal server error: " + e.getMessage())
+                    .setExitCode(1)
+                    .setPassedTests(listener.getPassedTests());
+        }
+
+        if (cancellation.isCancelled()) {
+            log.info("Streaming execution request cancelled by its client, no summary sent");
+            return;
+        }
+        listener.send(ExecutionEvent.newBuilder().setSummary(summary).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Forwards execution progress to the gRPC stream. Test results arrive from scheduler threads,
+     * while a StreamObserver must not be called concurrently, hence the lock around every send.
+     * Nothing is sent once the client has cancelled the call.
+     */
+    private class StreamingExecutionListener implements ExecutionListener {
+
+        private final StreamObserver<ExecutionEvent> responseObserver;
+        private final ResponseVerbosity verbosity;
+        private final ExecutionCancellation cancellation;
+        private int passedTests;
+        private int reportedTests;
+
+        StreamingExecutionListener(StreamObserver<ExecutionEvent> responseObserver, ResponseVerbosity verbosity,
+                                   ExecutionCancellation cancellation) {
+            this.responseObserver = responseObserver;
+            this.verbosity = verbosity;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void onCompiled(boolean success, String errorMessage, int exitCode, List<CompileError> compileErrors) {
+            CompileStatus.Builder status = CompileStatus.newBuilder()
+                    .setSuccess(success)
+                    .setExitCode(exitCode)
+                    .addAllCompileErrors(convertToGrpcDiagnostics(compileErrors));
+            if (errorMessage != null) {
+                status.setErrorMessage(errorMessage);
+            }
+            send(ExecutionEvent.newBuilder().setCompileStatus(status).build());
+        }
+
+        @Override
+        public void onTestResult(int index, TestCaseResult result) {
+            synchronized (this) {
+                reportedTests++;
+                if (result.isPassed()) {
+                    passedTests++;
+                }
+            }
+            send(ExecutionEvent.newBuilder()
+                    .setTestResult(convertToGrpcTestResult(result, index, verbosity))
+                    .build());
+        }
+
+        synchronized void send(ExecutionEvent event) {
+            if (!cancellation.isCancelled()) {
+                responseObserver.onNext(event);
+            }
+        }
+
+        synchronized int getPassedTests() {
+            return passedTests;
+        }
+
+        synchronized int getReportedTests() {
+            return reportedTests;
+        }
+    }
+
+    /**
+     * Convert the request, taking test data sent by hash from the {@link TestDataStore}. If some of
+     * it is not stored here, fails the call with FAILED_PRECONDITION listing the missing hashes and
+     * returns null.
+     */
+    private ExecutionRequest convertToServiceRequest(CodeExecutionRequest grpcRequest, StreamObserver<?> responseObserver) {
+        Set<String> missing = new LinkedHashSet<>();
+        List<TestCase> testCases = new ArrayList<>(grpcRequest.getTestCasesCount());
+        for (ExecutionTestCase grpcTestCase : grpcRequest.getTestCasesList()) {
+            testCases.add(new TestCase(
+                    resolveTestData(grpcTestCase.getInputHash(), grpcTestCase.getInput(), missing),
+                    resolveTestData(grpcTestCase.getExpectedOutputHash(), grpcTestCase.getExpectedOutput(), missing),
+                    grpcTestCase.getSample()));
+        }
+
+        if (!missing.isEmpty()) {
+            log.info("Execution request refers to {} test data blobs this node does not hold", missing.size());
+
+            Metadata trailers = new Metadata();
+            trailers.put(MISSING_TEST_DATA, missing.size() <= MAX_LISTED_MISSING ? String.join(",", missing) : "*");
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                    .withDescription(missing.size() + " test data blobs are missing, upload them with PutTestData")
+                    .asRuntimeException(trailers));
+            return null;
+        }
+
         ExecutionRequest serviceRequest = new ExecutionRequest();
         serviceRequest.setLanguage(grpcRequest.getLanguage());
         serviceRequest.setCode(grpcRequest.getCode());
-
-        List<TestCase> testCases = grpcRequest.getTestCasesList().stream()
-                .map(this::convertToServiceTestCase)
-                .collect(Collectors.toList());
         serviceRequest.setTestCases(testCases);
+        serviceRequest.setJudgingMode(convertToServiceJudgingMode(grpcRequest.getJudgingMode()));
+        serviceRequest.setComparisonPolicy(convertToServiceComparisonPolicy(grpcRequest.getComparisonPolicy()));
+        if (grpcRequest.getFloatEpsilon() > 0) {
+            serviceRequest.setFloatEpsilon(grpcRequest.getFloatEpsilon());
+        }
+        if (!grpcRequest.getCompilerProfile().isEmpty()) {
+            serviceRequest.setCompilerProfile(grpcRequest.getCompilerProfile());
+        }
 
         return serviceRequest;
     }
 
-    private TestCase convertToServiceTestCase(ExecutionTestCase grpcTestCase) {
-        TestCase testCase = new TestCase();
-        testCase.setInput(grpcTestCase.getInput());
-        testCase.setExpectedOutput(grpcTestCase.getExpectedOutput());
-        return testCase;
+    private JudgingMode convertToServiceJudgingMode(com.langservice.grpc.JudgingMode grpcMode) {
+        return switch (grpcMode) {
+            case STOP_ON_FIRST_FAILURE -> JudgingMode.STOP_ON_FIRST_FAILURE;
+            case SAMPLE_ONLY -> JudgingMode.SAMPLE_ONLY;
+            default -> JudgingMode.ALL;
+        };
+    }
+
+    private ComparisonPolicy convertToServiceComparisonPolicy(com.langservice.grpc.ComparisonPolicy grpcPolicy) {
+        return switch (grpcPolicy) {
+            case WHITESPACE_TOKENS -> ComparisonPolicy.WHITESPACE_TOKENS;
+            case EXACT -> ComparisonPolicy.EXACT;
+            case LINE_ENDING_INSENSITIVE -> ComparisonPolicy.LINE_ENDING_INSENSITIVE;
+            case FLOAT_EPSILON -> ComparisonPolicy.FLOAT_EPSILON;
+            default -> ComparisonPolicy.TRIMMED_EXACT;
+        };
+    }
+
+    // The stored data when a hash is given, the inline value otherwise
+    private String resolveTestData(String hash, String inline, Set<String> missing) {
+        if (hash.isEmpty()) {
+            return inline;
+        }
+        String data = testDataStore.get(hash);
+        if (data == null) {
+            missing.add(hash);
+        }
+        return data;
     }
 
-    private CodeExecutionResponse convertToGrpcResponse(ExecutionResult result) {
+    /**
+     * @param testResults converted results by test index, null for tests that were not run
+     */
+    private CodeExecutionResponse convertToGrpcResponse(ExecutionResult result, ExecutionTestResult[] testResults) {
         CodeExecutionResponse.Builder responseBuilder = CodeExecutionResponse.newBuilder()
                 .setSuccess(result.isSuccess())
                 .setExitCode(result.getExitCode());
@@ -89,22 +376,66 @@ public class ExecutionServiceGrpcImpl extends ExecutionServiceGrpc.ExecutionServ
             responseBuilder.setErrorMessage(result.getErrorMessage());
         }
 
-        if (result.getTestResults() != null) {
-            List<ExecutionTestResult> grpcTestResults = result.getTestResults().stream()
-                    .map(this::convertToGrpcTestResult)
-                    .collect(Collectors.toList());
-            responseBuilder.addAllTestResults(grpcTestResults);
+        // Only a run that reached the test stage carries per-test results
+        if (result.getErrorMessage() == null) {
+            responseBuilder.addAllTestResults(Arrays.stream(testResults).filter(Objects::nonNull).toList());
+        }
+
+        if (result.getCompileErrors() != null) {
+            responseBuilder.addAllCompileErrors(convertToGrpcDiagnostics(result.getCompileErrors()));
         }
 
         return responseBuilder.build();
     }
 
-    private ExecutionTestResult convertToGrpcTestResult(TestCaseResult serviceResult) {
-        return ExecutionTestResult.newBuilder()
-                .setInput(serviceResult.getInput())
-                .setExpectedOutput(serviceResult.getExpectedOutput())
-                .setActualOutput(serviceResult.getActualOutput())
+    private List<CompileDiagnostic> convertToGrpcDiagnostics(List<CompileError> compileErrors) {
+        return compileErrors.stream()
+                .map(error -> CompileDiagnostic.newBuilder()
+                        .setLine(error.getLine())
+                        .setColumn(error.getColumn())
+                        .setMessage(error.getMessage())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Convert a test result, keeping as much of its data as the requested verbosity asks for. The
+     * caller already has the test data, so only FULL echoes it.
+     */
+    private ExecutionTestResult convertToGrpcTestResult(TestCaseResult serviceResult, int index,
+                                                        ResponseVerbosity verbosity) {
+        ExecutionTestResult.Builder builder = ExecutionTestResult.newBuilder()
                 .setPassed(serviceResult.isPassed())
-                .build();
+                .setIndex(index);
+
+        if (serviceResult.getVerdict() != null) {
+            builder.setVerdict(com.langservice.grpc.Verdict.valueOf(serviceResult.getVerdict().name()));
+        }
+        if (verbosity == ResponseVerbosity.VERDICT) {
+            return builder.build();
+        }
+        if (verbosity == ResponseVerbosity.DIFF) {
+            builder.setActualOutput(truncate(serviceResult.getActualOutput()));
+            if (serviceResult.getStderr() != null) {
+                builder.setStderr(truncate(serviceResult.getStderr()));
+            }
+        } else {
+            builder.setInput(serviceResult.getInput())
+                    .setExpectedOutput(serviceResult.getExpectedOutput())
+                    .setActualOutput(serviceResult.getActualOutput());
+            if (serviceResult.getStderr() != null) {
+                builder.setStderr(serviceResult.getStderr());
+            }
+        }
+        if (serviceResult.getDiffMessage() != null) {
+            builder.setDiffLine(serviceResult.getDiffLine())
+                    .setDiffColumn(serviceResult.getDiffColumn())
+                    .setDiffMessage(serviceResult.getDiffMessage());
+        }
+        return builder.build();
+    }
+
+    private String truncate(String text) {
+        return text.length() <= diffPreviewChars ? text : text.substring(0, diffPreviewChars);
     }
-}
\ No newline at end of file
+}
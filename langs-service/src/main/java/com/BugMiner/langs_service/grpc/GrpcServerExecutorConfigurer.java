@@ -0,0 +1,43 @@
+package com.BugMiner.langs_service.grpc;
+
+import io.grpc.ServerBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs gRPC calls on virtual threads, one per call, when {@code spring.threads.virtual.enabled} is
+ * set. Otherwise the server keeps its default cached pool of platform threads.
+ */
+@Slf4j
+@Component
+public class GrpcServerExecutorConfigurer implements GrpcServerConfigurer {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ExecutorService executor;
+
+    @Override
+    public void accept(ServerBuilder<?> serverBuilder) {
+        if (!virtualThreads) {
+            return;
+        }
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-call-", 1).factory());
+        serverBuilder.executor(executor);
+        log.info("gRPC calls run on virtual threads");
+    }
+
+    // The server does not shut down an executor it was given
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.BugMiner.langs_service.health;
+
+import com.BugMiner.langs_service.runtime.ContainerEvent;
+import com.BugMiner.langs_service.runtime.ContainerEventStream;
+import com.BugMiner.langs_service.runtime.ContainerRuntime;
+import com.BugMiner.langs_service.service.Language;
+import com.langservice.grpc.ExecutionServiceGrpc;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.protobuf.services.HealthStatusManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory view of which runner containers are up.
+ * <p>
+ * The view follows the container runtime's event stream, with a periodic full refresh to catch
+ * anything missed while the stream was down, so lookups never call out to the runtime. Runners
+ * that go down are started again, and every change is published through the gRPC health service:
+ * one entry per language id plus the ExecutionService entry, which is serving while any runner is up.
+ */
+@Slf4j
+@Component
+public class RunnerHealthRegistry {
+
+    @Value("${runners.auto-restart:true}")
+    private boolean autoRestart;
+
+    @Value("${runners.restart-delay-seconds:10}")
+    private long restartDelaySeconds;
+
+    @Value("${runners.events.reconnect-delay-seconds:5}")
+    private long reconnectDelaySeconds;
+
+    private final ContainerRuntime containerRuntime;
+    private final HealthStatusManager healthStatusManager;
+    private final Map<Language, Boolean> runnerUp = new ConcurrentHashMap<>();
+    private final Map<Language, Long> runnerStarts = new ConcurrentHashMap<>();
+    private final Set<Language> pendingRestarts = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService restarter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "runner-restarter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean stopped;
+    private volatile ContainerEventStream eventStream;
+
+    public RunnerHealthRegistry(ContainerRuntime containerRuntime, HealthStatusManager healthStatusManager) {
+        this.containerRuntime = containerRuntime;
+        this.healthStatusManager = healthStatusManager;
+    }
+
+    @PostConstruct
+    public void start() {
+        refresh();
+
+        Thread watcher = new Thread(this::watchEvents, "runner-events");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public boolean isRunnerUp(Language language) {
+        return runnerUp.getOrDefault(language, false);
+    }
+
+    /**
+     * @return a counter that changes every time the runner comes up, so anything derived from the
+     * runner's image (compiler versions and the like) can be re-checked after a restart
+     */
+    public long getRunnerGeneration(Language language) {
+        return runnerStarts.getOrDefault(language, 0L);
+    }
+
+    // Full resync with the runtime; events keep the view current in between
+    @Scheduled(fixedDelayString = "${runners.health.refresh-interval-ms:60000}")
+    public void refresh() {
+        for (Language language : Language.values()) {
+            boolean up;
+            try {
+                up = containerRuntime.isContainerRunning(language.getContainerName());
+            } catch (IOException e) {
+                log.warn("Could not inspect runner {}: {}", language.getContainerName(), e.getMessage());
+                up = false;
+            }
+            update(language, up);
+        }
+    }
+
+    private void watchEvents() {
+        List<String> containerNames = Arrays.stream(Language.values()).map(Language::getContainerName).toList();
+        while (!stopped) {
+            try (ContainerEventStream events = containerRuntime.openEventStream(containerNames)) {
+                eventStream = events;
+                // Anything that happened while we were not subscribed is picked up here
+                refresh();
+                ContainerEvent event;
+                while ((event = events.next()) != null) {
+                    onEvent(event);
+                }
+            } catch (IOException e) {
+                if (!stopped) {
+                    log.warn("Runner event stream failed, reconnecting in {}s: {}", reconnectDelaySeconds, e.getMessage());
+                }
+            }
+            if (!stopped) {
+                try {
+                    TimeUnit.SECONDS.sleep(reconnectDelaySeconds);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void onEvent(ContainerEvent event) {
+        Language language = Language.fromContainerName(event.containerName()).orElse(null);
+        if (language == null) {
+            return;
+        }
+        switch (event.action()) {
+            case "start", "unpause", "health_status: healthy" -> update(language, true);
+            case "die", "stop", "pause", "destroy", "health_status: unhealthy" -> update(language, false);
+            default -> {
+                // kill, exec_* and friends do not change the runner state on their own
+            }
+        }
+    }
+
+    private synchronized void update(Language language, boolean up) {
+        Boolean previous = runnerUp.put(language, up);
+        if (previous == null || previous != up) {
+            if (up) {
+                runnerStarts.merge(language, 1L, Long::sum);
+                log.info("Runner {} is up", language.getContainerName());
+            } else {
+                log.warn("Runner {} is down", language.getContainerName());
+            }
+            healthStatusManager.setStatus(language.getId(), up ? ServingStatus.SERVING : ServingStatus.NOT_SERVING);
+            boolean anyUp = runnerUp.containsValue(true);
+            healthStatusManager.setStatus(ExecutionServiceGrpc.SERVICE_NAME,
+                    anyUp ? ServingStatus.SERVING : ServingStatus.NOT_SERVING);
+        }
+        if (!up) {
+            scheduleRestart(language);
+        }
+    }
+
+    private void scheduleRestart(Language language) {
+        if (!autoRestart || stopped || !pendingRestarts.add(language)) {
+            return;
+        }
+        restarter.schedule(() -> {
+            pendingRestarts.remove(language);
+            if (isRunnerUp(language)) {
+                return;
+            }
+            String containerName = language.getContainerName();
+            try {
+                log.info("Restarting runner {}", containerName);
+                containerRuntime.startContainer(containerName);
+            } catch (IOException e) {
+                log.error("Could not restart runner {}: {}", containerName, e.getMessage());
+            }
+            // Re-check right away; a runner that is still down gets another attempt after the delay
+            try {
+                update(language, containerRuntime.isContainerRunning(containerName));
+            } catch (IOException e) {
+                update(language, false);
+            }
+        }, restartDelaySeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        ContainerEventStream events = eventStream;
+        if (events != null) {
+            events.close();
+        }
+        restarter.shutdownNow();
+    }
+}
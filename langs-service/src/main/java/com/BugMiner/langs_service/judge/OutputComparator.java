@@ -0,0 +1,409 @@
+package com.BugMiner.langs_service.judge;
+
+import com.BugMiner.langs_service.entity.ComparisonPolicy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Compares a program's output with the expected output while the output is still arriving.
+ * <p>
+ * The actual output is never materialised: bytes are checked as they come in and comparison stops
+ * at the first difference, which the caller can use to stop the program early. Positions are
+ * reported as 1-based line and column (in bytes) of the actual output.
+ * Instances are single-use and not thread-safe.
+ */
+public abstract class OutputComparator {
+
+    private static final int SNIPPET_LENGTH = 32;
+
+    private long line = 1;
+    private long column = 1;
+    private Mismatch mismatch;
+
+    /**
+     * First difference between the actual and the expected output.
+     *
+     * @param line    1-based line in the actual output
+     * @param column  1-based byte column in that line
+     * @param message what was expected and what was found
+     */
+    public record Mismatch(long line, long column, String message) {
+    }
+
+    public static OutputComparator create(ComparisonPolicy policy, String expectedOutput, double epsilon) {
+        byte[] expected = expectedOutput.getBytes(StandardCharsets.UTF_8);
+        return switch (policy) {
+            case TRIMMED_EXACT -> new TrimmedComparator(expected);
+            case EXACT -> new ByteComparator(expected, false);
+            case LINE_ENDING_INSENSITIVE -> new ByteComparator(expected, true);
+            case WHITESPACE_TOKENS -> new TokenComparator(expected, -1);
+            case FLOAT_EPSILON -> new TokenComparator(expected, epsilon);
+        };
+    }
+
+    /**
+     * Feed the next chunk of actual output.
+     *
+     * @return false once a difference has been found, further output is irrelevant
+     */
+    public final boolean accept(byte[] chunk) {
+        for (int i = 0; i < chunk.length && mismatch == null; i++) {
+            byte b = chunk[i];
+            consume(b);
+            if (b == '\n') {
+                line++;
+                column = 1;
+            } else {
+                column++;
+            }
+        }
+        return mismatch == null;
+    }
+
+    /**
+     * @return true if a difference was found before the end of the output
+     */
+    public final boolean isMismatched() {
+        return mismatch != null;
+    }
+
+    /**
+     * Signal the end of the actual output.
+     *
+     * @return the first difference, or null if the outputs match
+     */
+    public final Mismatch finish() {
+        if (mismatch == null) {
+            complete();
+        }
+        return mismatch;
+    }
+
+    protected abstract void consume(byte b);
+
+    protected abstract void complete();
+
+    protected final void fail(long atLine, long atColumn, String message) {
+        mismatch = new Mismatch(atLine, atColumn, message);
+    }
+
+    protected final void fail(String message) {
+        fail(line, column, message);
+    }
+
+    protected final long line() {
+        return line;
+    }
+
+    protected final long column() {
+        return column;
+    }
+
+    static String snippet(byte[] bytes, int from, int to) {
+        int end = Math.min(to, from + SNIPPET_LENGTH);
+        String text = new String(bytes, from, Math.max(0, end - from), StandardCharsets.UTF_8)
+                .replace("\r", "\\r")
+                .replace("\n", "\\n");
+        return "'" + text + (to > end ? "..." : "") + "'";
+    }
+
+    // End of the line starting at from, at least one byte further unless at the end
+    static int lineEnd(byte[] bytes, int from) {
+        int end = from;
+        while (end < bytes.length && bytes[end] != '\n') {
+            end++;
+        }
+        return Math.max(end, Math.min(from + 1, bytes.length));
+    }
+
+    // \r\n and \r as \n, without trailing newlines
+    static byte[] normalizeLineEndings(byte[] bytes) {
+        byte[] normalized = new byte[bytes.length];
+        int length = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\r') {
+                normalized[length++] = '\n';
+                if (i + 1 < bytes.length && bytes[i + 1] == '\n') {
+                    i++;
+                }
+            } else {
+                normalized[length++] = bytes[i];
+            }
+        }
+        // Trailing newlines are optional on both sides
+        while (length > 0 && normalized[length - 1] == '\n') {
+            length--;
+        }
+        return Arrays.copyOf(normalized, length);
+    }
+
+    /**
+     * Byte-by-byte comparison, optionally treating \r\n and \r as \n and ignoring trailing newlines.
+     */
+    private static final class ByteComparator extends OutputComparator {
+
+        private final byte[] expected;
+        private final boolean lenientLineEndings;
+        private int position;
+        private boolean afterCarriageReturn;
+
+        ByteComparator(byte[] expected, boolean lenientLineEndings) {
+            this.expected = lenientLineEndings ? normalizeLineEndings(expected) : expected;
+            this.lenientLineEndings = lenientLineEndings;
+        }
+
+        @Override
+        protected void consume(byte b) {
+            if (lenientLineEndings) {
+                if (afterCarriageReturn) {
+                    afterCarriageReturn = false;
+                    if (b == '\n') {
+                        // Second half of \r\n, already matched as a newline
+                        return;
+                    }
+                }
+                if (b == '\r') {
+                    afterCarriageReturn = true;
+                    b = '\n';
+                }
+            }
+
+            if (position < expected.length) {
+                if (expected[position] != b) {
+                    fail("expected " + snippet(expected, position, lineEnd(expected, position))
+                            + " but found " + snippet(new byte[]{b}, 0, 1));
+                    return;
+                }
+                position++;
+            } else if (!(lenientLineEndings && b == '\n')) {
+                fail("extra output after the expected end, starting with " + snippet(new byte[]{b}, 0, 1));
+            }
+        }
+
+        @Override
+        protected void complete() {
+            if (position < expected.length) {
+                fail("output ended early, expected " + snippet(expected, position, lineEnd(expected, position)));
+            }
+        }
+
+    }
+
+    /**
+     * Byte-by-byte comparison of the outputs with leading and trailing whitespace (any byte up to
+     * the space, as String.trim) removed and \r\n and \r read as \n. Whitespace inside the output
+     * must match exactly.
+     */
+    private static final class TrimmedComparator extends OutputComparator {
+
+        private final byte[] expected;
+        private int position;
+        private boolean started;
+        private boolean afterCarriageReturn;
+        // Whitespace since the last other byte, only checked once more output follows it since
+        // trailing whitespace does not count; the first difference within it is kept until then
+        private int pendingWhitespace;
+        private Mismatch pendingMismatch;
+
+        TrimmedComparator(byte[] expected) {
+            this.expected = trim(normalizeLineEndings(expected));
+        }
+
+        @Override
+        protected void consume(byte b) {
+            if (afterCarriageReturn) {
+                afterCarriageReturn = false;
+                if (b == '\n') {
+                    // Second half of \r\n, already taken as a newline
+                    return;
+                }
+            }
+            if (b == '\r') {
+                afterCarriageReturn = true;
+                b = '\n';
+            }
+
+            if (isTrimmed(b)) {
+                // Leading whitespace is skipped
+                if (started) {
+                    int at = position + pendingWhitespace;
+                    if (pendingMismatch == null && (at >= expected.length || expected[at] != b)) {
+                        pendingMismatch = new Mismatch(line(), column(), at >= expected.length
+                                ? "extra output after the expected end, starting with " + snippet(new byte[]{b}, 0, 1)
+                                : "expected " + snippet(expected, at, lineEnd(expected, at))
+                                + " but found " + snippet(new byte[]{b}, 0, 1));
+                    }
+                    pendingWhitespace++;
+                }
+                return;
+            }
+
+            started = true;
+            if (pendingMismatch != null) {
+                fail(pendingMismatch.line(), pendingMismatch.column(), pendingMismatch.message());
+                return;
+            }
+            position += pendingWhitespace;
+            pendingWhitespace = 0;
+            if (position >= expected.length) {
+                fail("extra output after the expected end, starting with " + snippet(new byte[]{b}, 0, 1));
+            } else if (expected[position] != b) {
+                fail("expected " + snippet(expected, position, lineEnd(expected, position))
+                        + " but found " + snippet(new byte[]{b}, 0, 1));
+            } else {
+                position++;
+            }
+        }
+
+        @Override
+        protected void complete() {
+            if (position < expected.length) {
+                fail("output ended early, expected " + snippet(expected, position, lineEnd(expected, position)));
+            }
+        }
+
+        private static boolean isTrimmed(byte b) {
+            // UTF-8 multi-byte sequences are negative as bytes, so only ASCII control bytes and space
+            return b >= 0 && b <= ' ';
+        }
+
+        private static byte[] trim(byte[] bytes) {
+            int from = 0;
+            int to = bytes.length;
+            while (from < to && isTrimmed(bytes[from])) {
+                from++;
+            }
+            while (to > from && isTrimmed(bytes[to - 1])) {
+                to--;
+            }
+            return Arrays.copyOfRange(bytes, from, to);
+        }
+    }
+
+    /**
+     * Token-by-token comparison, numeric tokens within an epsilon when one is given.
+     */
+    private static final class TokenComparator extends OutputComparator {
+
+        private static final Pattern NUMBER = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+        // How much longer than the expected token a numeric token may get, e.g. extra digits
+        private static final int NUMERIC_SLACK = 64;
+
+        private final List<byte[]> expected;
+        private final double epsilon;
+        private int tokenIndex;
+        private byte[] token = new byte[16];
+        private int tokenLength;
+        private long tokenLine;
+        private long tokenColumn;
+
+        TokenComparator(byte[] expectedBytes, double epsilon) {
+            this.expected = tokenize(expectedBytes);
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        protected void consume(byte b) {
+            if (isWhitespace(b)) {
+                if (tokenLength > 0) {
+                    endToken();
+                }
+                return;
+            }
+            if (tokenLength == 0) {
+                tokenLine = line();
+                tokenColumn = column();
+                if (tokenIndex >= expected.size()) {
+                    fail("extra output after the last expected token, starting with " + snippet(new byte[]{b}, 0, 1));
+                    return;
+                }
+            }
+            if (tokenLength == token.length) {
+                token = Arrays.copyOf(token, token.length * 2);
+            }
+            token[tokenLength++] = b;
+
+            byte[] want = expected.get(tokenIndex);
+            if (epsilon < 0) {
+                // Plain tokens can be rejected as soon as the prefix differs
+                if (tokenLength > want.length || want[tokenLength - 1] != b) {
+                    failToken(want);
+                }
+            } else if (tokenLength > want.length + NUMERIC_SLACK) {
+                failToken(want);
+            }
+        }
+
+        @Override
+        protected void complete() {
+            if (tokenLength > 0) {
+                endToken();
+            }
+            if (!isMismatched() && tokenIndex < expected.size()) {
+                byte[] want = expected.get(tokenIndex);
+                fail("output ended early, expected " + snippet(want, 0, want.length));
+            }
+        }
+
+        private void endToken() {
+            byte[] want = expected.get(tokenIndex);
+            if (!matches(want)) {
+                failToken(want);
+                return;
+            }
+            tokenIndex++;
+            tokenLength = 0;
+        }
+
+        private boolean matches(byte[] want) {
+            if (Arrays.equals(token, 0, tokenLength, want, 0, want.length)) {
+                return true;
+            }
+            if (epsilon < 0) {
+                return false;
+            }
+            String actual = new String(token, 0, tokenLength, StandardCharsets.US_ASCII);
+            String wanted = new String(want, StandardCharsets.US_ASCII);
+            if (!NUMBER.matcher(actual).matches() || !NUMBER.matcher(wanted).matches()) {
+                return false;
+            }
+            double a = Double.parseDouble(actual);
+            double w = Double.parseDouble(wanted);
+            if (!Double.isFinite(a) || !Double.isFinite(w)) {
+                // Beyond double range no tolerance applies, and an infinite relative bound would accept anything
+                return false;
+            }
+            double difference = Math.abs(a - w);
+            // Absolute error for small values, relative error for large ones
+            return difference <= epsilon || difference <= epsilon * Math.abs(w);
+        }
+
+        private void failToken(byte[] want) {
+            fail(tokenLine, tokenColumn, "expected " + snippet(want, 0, want.length)
+                    + " but found " + snippet(token, 0, tokenLength));
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+        }
+
+        private static List<byte[]> tokenize(byte[] bytes) {
+            List<byte[]> tokens = new ArrayList<>();
+            int start = -1;
+            for (int i = 0; i <= bytes.length; i++) {
+                boolean boundary = i == bytes.length || isWhitespace(bytes[i]);
+                if (boundary && start >= 0) {
+                    tokens.add(Arrays.copyOfRange(bytes, start, i));
+                    start = -1;
+                } else if (!boundary && start < 0) {
+                    start = i;
+                }
+            }
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.BugMiner.langs_service.runtime;
+
+/**
+ * A container lifecycle event, e.g. {@code start}, {@code die} or {@code health_status: unhealthy}.
+ */
+public record ContainerEvent(String containerName, String action) {
+}
@@ -0,0 +1,23 @@
+package com.BugMiner.langs_service.runtime;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Blocking stream of {@link ContainerEvent}s, see {@link ContainerRuntime#openEventStream}.
+ */
+public interface ContainerEventStream extends Closeable {
+
+    /**
+     * Wait for the next event.
+     *
+     * @return the event, or null once the stream has ended
+     */
+    ContainerEvent next() throws IOException;
+
+    /**
+     * Stop the subscription; a thread blocked in {@link #next()} returns or fails.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,65 @@
+package com.BugMiner.langs_service.runtime;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operations langs-service needs from the container runtime hosting the language runners.
+ */
+public interface ContainerRuntime {
+
+    /**
+     * @return true if a container with the given name exists and is running
+     */
+    boolean isContainerRunning(String containerName) throws IOException;
+
+    /**
+     * Run a command inside a container and wait for it to finish.
+     *
+     * @param containerName target container
+     * @param command       command and arguments, executed without a shell
+     * @return exit code with separated stdout and stderr
+     */
+    ExecResult exec(String containerName, List<String> command) throws IOException;
+
+    /**
+     * Start a command inside a container with stdin, stdout and stderr attached.
+     * The caller owns the returned session and must close it.
+     */
+    ExecSession openExec(String containerName, List<String> command) throws IOException;
+
+    /**
+     * Upload files into a container directory. Keys are paths relative to {@code directory},
+     * missing intermediate directories are created.
+     *
+     * @param directory existing absolute directory in the container
+     */
+    void putArchive(String containerName, String directory, Map<String, byte[]> files) throws IOException;
+
+    /**
+     * Upload a tar archive as is and extract it into a container directory, keeping file modes.
+     *
+     * @param directory existing absolute directory in the container
+     */
+    void putArchive(String containerName, String directory, byte[] archive) throws IOException;
+
+    /**
+     * Download a file or directory from a container as a tar archive. Entries are named after the
+     * last component of {@code path}, so the archive can be extracted into another directory with
+     * {@link #putArchive(String, String, byte[])}.
+     */
+    byte[] getArchive(String containerName, String path) throws IOException;
+
+    /**
+     * Start a stopped container. Starting a container that is already running is not an error.
+     */
+    void startContainer(String containerName) throws IOException;
+
+    /**
+     * Subscribe to lifecycle events of the given containers. Events are delivered until the
+     * returned stream is closed or the runtime drops the connection.
+     */
+    ContainerEventStream openEventStream(Collection<String> containerNames) throws IOException;
+}
@@ -0,0 +1,298 @@
+package com.BugMiner.langs_service.runtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * {@link ContainerRuntime} talking to the Docker Engine HTTP API over its Unix socket,
+ * instead of forking the docker CLI for every operation.
+ * <p>
+ * Plain request/response calls share a small pool of keep-alive connections. Attached execs
+ * hijack a connection of their own, which is closed together with the exec.
+ */
+@Component
+public class DockerEngineClient implements ContainerRuntime {
+
+    private static final Map<String, String> JSON = Map.of("Content-Type", "application/json");
+    private static final Map<String, String> JSON_UPGRADE = Map.of(
+            "Content-Type", "application/json",
+            "Connection", "Upgrade",
+            "Upgrade", "tcp");
+
+    private final Path socketPath;
+    private final String apiVersion;
+    private final int maxIdleConnections;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<UnixSocketHttpConnection> idleConnections = new LinkedBlockingQueue<>();
+
+    public DockerEngineClient(@Value("${docker.socket-path:/var/run/docker.sock}") String socketPath,
+                              @Value("${docker.api-version:v1.43}") String apiVersion,
+                              @Value("${docker.max-idle-connections:8}") int maxIdleConnections) {
+        this.socketPath = Path.of(socketPath);
+        this.apiVersion = apiVersion;
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    @Override
+    public boolean isContainerRunning(String containerName) throws IOException {
+        HttpResult response = call("GET", "/containers/" + encode(containerName) + "/json", Map.of(), null);
+        if (response.status() == 404) {
+            return false;
+        }
+        if (!response.isSuccessful()) {
+            throw new IOException("Container inspect failed with status " + response.status() + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body()).path("State").path("Running").asBoolean(false);
+    }
+
+    @Override
+    public ExecResult exec(String containerName, List<String> command) throws IOException {
+        String execId = createExec(containerName, command, false);
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        try (UnixSocketHttpConnection connection = startExec(execId)) {
+            MultiplexedStream frames = new MultiplexedStream(connection.rawInput());
+            byte[] buffer = new byte[8192];
+            MultiplexedStream.Frame frame;
+            while ((frame = frames.nextFrame()) != null) {
+                ByteArrayOutputStream target = frame.stream() == MultiplexedStream.STDERR ? stderr : stdout;
+                int left = frame.length();
+                while (left > 0) {
+                    int n = frames.readPayload(buffer, 0, Math.min(left, buffer.length));
+                    target.write(buffer, 0, n);
+                    left -= n;
+                }
+            }
+        }
+
+        return new ExecResult(inspectExitCode(execId),
+                stdout.toString(StandardCharsets.UTF_8),
+                stderr.toString(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public ExecSession openExec(String containerName, List<String> command) throws IOException {
+        String execId = createExec(containerName, command, true);
+        return new DockerExecSession(startExec(execId));
+    }
+
+    @Override
+    public void putArchive(String containerName, String directory, Map<String, byte[]> files) throws IOException {
+        putArchive(containerName, directory, TarArchive.of(files));
+    }
+
+    @Override
+    public void putArchive(String containerName, String directory, byte[] archive) throws IOException {
+        HttpResult response = call("PUT", "/containers/" + encode(containerName) + "/archive?path=" + encode(directory),
+                Map.of("Content-Type", "application/x-tar"), archive);
+        if (!response.isSuccessful()) {
+            throw new IOException("Archive upload to " + containerName + ":" + directory
+                    + " failed with status " + response.status() + ": " + response.body());
+        }
+    }
+
+    @Override
+    public byte[] getArchive(String containerName, String path) throws IOException {
+        HttpResult response = call("GET", "/containers/" + encode(containerName) + "/archive?path=" + encode(path), Map.of(), null);
+        if (!response.isSuccessful()) {
+            throw new IOException("Archive download from " + containerName + ":" + path
+                    + " failed with status " + response.status() + ": " + response.body());
+        }
+        return response.content();
+    }
+
+    @Override
+    public void startContainer(String containerName) throws IOException {
+        HttpResult response = call("POST", "/containers/" + encode(containerName) + "/start", Map.of(), null);
+        // 304 means the container was already running
+        if (!response.isSuccessful() && response.status() != 304) {
+            throw new IOException("Container start failed with status " + response.status() + ": " + response.body());
+        }
+    }
+
+    @Override
+    public ContainerEventStream openEventStream(Collection<String> containerNames) throws IOException {
+        ObjectNode filters = objectMapper.createObjectNode();
+        filters.putArray("type").add("container");
+        containerNames.forEach(filters.putArray("container")::add);
+
+        // The events endpoint never finishes its response, so it gets a connection of its own
+        UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath);
+        try {
+            UnixSocketHttpConnection.Response response = connection.send("GET",
+                    api("/events?filters=" + encode(objectMapper.writeValueAsString(filters))), Map.of(), null);
+            if (response.status() != 200) {
+                throw new IOException("Event subscription failed with status " + response.status() + ": " + response.bodyAsString());
+            }
+            return new DockerEventStream(connection, response.body());
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private String createExec(String containerName, List<String> command, boolean attachStdin) throws IOException {
+        ObjectNode request = objectMapper.createObjectNode()
+                .put("AttachStdin", attachStdin)
+                .put("AttachStdout", true)
+                .put("AttachStderr", true)
+                .put("Tty", false);
+        command.forEach(request.putArray("Cmd")::add);
+
+        String path = "/containers/" + encode(containerName) + "/exec";
+        HttpResult response = call("POST", path, JSON, objectMapper.writeValueAsBytes(request));
+        if (!response.isSuccessful()) {
+            throw new IOException("POST " + path + " failed with status " + response.status() + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body()).path("Id").asText();
+    }
+
+    /**
+     * Start an exec and hijack the connection; the multiplexed output follows the response headers.
+     */
+    private UnixSocketHttpConnection startExec(String execId) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(objectMapper.createObjectNode()
+                .put("Detach", false)
+                .put("Tty", false));
+
+        UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath);
+        try {
+            UnixSocketHttpConnection.Response response = connection.send("POST",
+                    api("/exec/" + execId + "/start"), JSON_UPGRADE, body);
+            if (response.status() != 101 && response.status() != 200) {
+                throw new IOException("Exec start failed with status " + response.status() + ": " + response.bodyAsString());
+            }
+            return connection;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private int inspectExitCode(String execId) throws IOException {
+        HttpResult response = call("GET", "/exec/" + execId + "/json", Map.of(), null);
+        if (!response.isSuccessful()) {
+            throw new IOException("Exec inspect failed with status " + response.status() + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body()).path("ExitCode").asInt(-1);
+    }
+
+    /**
+     * Plain request/response call on a pooled connection. A request that fails on a reused
+     * connection is retried once on a fresh one, since the daemon may have dropped it while idle.
+     */
+    private HttpResult call(String method, String path, Map<String, String> headers, byte[] body) throws IOException {
+        UnixSocketHttpConnection pooled = idleConnections.poll();
+        if (pooled != null) {
+            try {
+                return call(pooled, method, path, headers, body);
+            } catch (IOException e) {
+                // Fall through to a fresh connection
+            }
+        }
+        return call(UnixSocketHttpConnection.open(socketPath), method, path, headers, body);
+    }
+
+    private HttpResult call(UnixSocketHttpConnection connection, String method, String path,
+                            Map<String, String> headers, byte[] body) throws IOException {
+        HttpResult result;
+        try {
+            UnixSocketHttpConnection.Response response = connection.send(method, api(path), headers, body);
+            result = new HttpResult(response.status(), response.body().readAllBytes());
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+        release(connection);
+        return result;
+    }
+
+    private void release(UnixSocketHttpConnection connection) {
+        if (connection.isReusable() && idleConnections.size() < maxIdleConnections) {
+            idleConnections.offer(connection);
+        } else {
+            connection.close();
+        }
+    }
+
+    private String api(String path) {
+        return "/" + apiVersion + path;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Events arrive as one JSON object per line in a never-ending chunked response.
+     */
+    private final class DockerEventStream implements ContainerEventStream {
+
+        private final UnixSocketHttpConnection connection;
+        private final BufferedReader reader;
+
+        DockerEventStream(UnixSocketHttpConnection connection, InputStream body) {
+            this.connection = connection;
+            this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public ContainerEvent next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode event = objectMapper.readTree(line);
+                return new ContainerEvent(
+                        event.path("Actor").path("Attributes").path("name").asText(),
+                        event.path("Action").asText());
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            connection.close();
+        }
+    }
+
+    private record HttpResult(int status, byte[] content) {
+
+        boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+
+        String body() {
+            return new String(content, StandardCharsets.UTF_8);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        UnixSocketHttpConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connection.close();
+        }
+    }
+}
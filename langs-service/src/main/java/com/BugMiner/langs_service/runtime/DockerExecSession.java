@@ -0,0 +1,127 @@
+package com.BugMiner.langs_service.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link ExecSession} on top of a hijacked Engine API connection.
+ */
+final class DockerExecSession implements ExecSession {
+
+    private static final int STDERR_TAIL_BYTES = 8 * 1024;
+
+    private final UnixSocketHttpConnection connection;
+    private final DemultiplexedStdout stdout;
+    private final byte[] stderrTail = new byte[STDERR_TAIL_BYTES];
+    private int stderrLength;
+    private volatile boolean open = true;
+
+    DockerExecSession(UnixSocketHttpConnection connection) {
+        this.connection = connection;
+        this.stdout = new DemultiplexedStdout(new MultiplexedStream(connection.rawInput()));
+    }
+
+    @Override
+    public OutputStream stdin() {
+        return connection.rawOutput();
+    }
+
+    @Override
+    public InputStream stdout() {
+        return stdout;
+    }
+
+    @Override
+    public synchronized String stderrTail() {
+        return new String(stderrTail, 0, stderrLength, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void closeStdin() throws IOException {
+        connection.shutdownOutput();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && connection.isOpen();
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        connection.close();
+    }
+
+    private synchronized void appendStderr(byte[] data, int length) {
+        // Keep only the most recent bytes
+        if (length >= STDERR_TAIL_BYTES) {
+            System.arraycopy(data, length - STDERR_TAIL_BYTES, stderrTail, 0, STDERR_TAIL_BYTES);
+            stderrLength = STDERR_TAIL_BYTES;
+            return;
+        }
+        int keep = Math.min(stderrLength, STDERR_TAIL_BYTES - length);
+        System.arraycopy(stderrTail, stderrLength - keep, stderrTail, 0, keep);
+        System.arraycopy(data, 0, stderrTail, keep, length);
+        stderrLength = keep + length;
+    }
+
+    /**
+     * Presents the stdout frames as a plain stream and diverts stderr frames into the tail buffer.
+     */
+    private final class DemultiplexedStdout extends InputStream {
+        private final MultiplexedStream frames;
+        private final byte[] discard = new byte[4096];
+        private int remaining;
+        private boolean finished;
+
+        DemultiplexedStdout(MultiplexedStream frames) {
+            this.frames = frames;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (finished) {
+                    return -1;
+                }
+                MultiplexedStream.Frame frame = frames.nextFrame();
+                if (frame == null) {
+                    finished = true;
+                    open = false;
+                    return -1;
+                }
+                if (frame.stream() == MultiplexedStream.STDOUT) {
+                    remaining = frame.length();
+                } else {
+                    skipFrame(frame);
+                }
+            }
+            int n = frames.readPayload(b, off, Math.min(len, remaining));
+            remaining -= n;
+            return n;
+        }
+
+        private void skipFrame(MultiplexedStream.Frame frame) throws IOException {
+            int left = frame.length();
+            while (left > 0) {
+                int n = frames.readPayload(discard, 0, Math.min(left, discard.length));
+                if (frame.stream() == MultiplexedStream.STDERR) {
+                    appendStderr(discard, n);
+                }
+                left -= n;
+            }
+        }
+    }
+}
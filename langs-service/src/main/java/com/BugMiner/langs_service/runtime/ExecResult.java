@@ -0,0 +1,11 @@
+package com.BugMiner.langs_service.runtime;
+
+/**
+ * Outcome of a command run to completion through {@link ContainerRuntime#exec}.
+ */
+public record ExecResult(int exitCode, String stdout, String stderr) {
+
+    public boolean isSuccess() {
+        return exitCode == 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.BugMiner.langs_service.runtime;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An attached, still running exec inside a container.
+ */
+public interface ExecSession extends Closeable {
+
+    /**
+     * Stream connected to the process stdin.
+     */
+    OutputStream stdin();
+
+    /**
+     * Stream of the process stdout. Stderr is kept apart and available through {@link #stderrTail()}.
+     */
+    InputStream stdout();
+
+    /**
+     * Last bytes the process wrote to stderr, for diagnostics.
+     */
+    String stderrTail();
+
+    /**
+     * Signal end-of-file on the process stdin while keeping the output streams readable.
+     */
+    void closeStdin() throws IOException;
+
+    boolean isOpen();
+
+    /**
+     * Tear down the session. The remote process sees its stdin closed.
+     */
+    @Override
+    void close();
+}
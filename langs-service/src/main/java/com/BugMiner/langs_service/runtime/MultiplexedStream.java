@@ -0,0 +1,55 @@
+package com.BugMiner.langs_service.runtime;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reader for Docker's multiplexed attach stream (used when the exec has no TTY).
+ * Every frame starts with an 8 byte header: stream type, three padding bytes and the
+ * big-endian payload length.
+ */
+final class MultiplexedStream {
+
+    static final int STDIN = 0;
+    static final int STDOUT = 1;
+    static final int STDERR = 2;
+
+    private final InputStream in;
+    private final byte[] header = new byte[8];
+
+    MultiplexedStream(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Read the next frame header.
+     *
+     * @return the frame, or null at the end of the stream
+     */
+    Frame nextFrame() throws IOException {
+        int read = in.readNBytes(header, 0, header.length);
+        if (read == 0) {
+            return null;
+        }
+        if (read < header.length) {
+            throw new EOFException("Truncated multiplexed stream header");
+        }
+        int length = ((header[4] & 0xff) << 24) | ((header[5] & 0xff) << 16) | ((header[6] & 0xff) << 8) | (header[7] & 0xff);
+        return new Frame(header[0], length);
+    }
+
+    /**
+     * Read up to {@code len} payload bytes of the current frame.
+     */
+    int readPayload(byte[] buffer, int off, int len) throws IOException {
+        int n = in.read(buffer, off, len);
+        if (n == -1) {
+            throw new EOFException("Truncated multiplexed stream frame");
+        }
+        return n;
+    }
+
+    record Frame(int stream, int length) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.BugMiner.langs_service.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes the small ustar archives expected by the Engine API archive endpoints. Paths too long
+ * for a ustar header are carried in PAX extended headers.
+ */
+final class TarArchive {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private TarArchive() {
+    }
+
+    /**
+     * @param files relative entry path to file content
+     */
+    static byte[] of(Map<String, byte[]> files) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long mtime = System.currentTimeMillis() / 1000;
+
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            byte[] content = file.getValue();
+            if (!fitsHeader(file.getKey())) {
+                // PAX extended header carrying the full path, the ustar header that follows gets a stand-in
+                byte[] record = paxRecord("path", file.getKey());
+                String standIn = "PaxHeaders/" + Integer.toHexString(file.getKey().hashCode());
+                out.write(header(standIn, record.length, mtime, (byte) 'x'));
+                out.write(record);
+                out.write(new byte[(BLOCK_SIZE - record.length % BLOCK_SIZE) % BLOCK_SIZE]);
+                out.write(header(standIn, content.length, mtime, (byte) '0'));
+            } else {
+                out.write(header(file.getKey(), content.length, mtime, (byte) '0'));
+            }
+            out.write(content);
+            int padding = (BLOCK_SIZE - content.length % BLOCK_SIZE) % BLOCK_SIZE;
+            out.write(new byte[padding]);
+        }
+
+        // End of archive marker
+        out.write(new byte[BLOCK_SIZE * 2]);
+        return out.toByteArray();
+    }
+
+    private static boolean fitsHeader(String name) {
+        return splitPoint(name) >= 0;
+    }
+
+    /**
+     * @return -1 if the name does not fit a ustar header, 0 if it fits the name field alone, otherwise
+     * the index of the '/' that splits it into the prefix and name fields
+     */
+    private static int splitPoint(String name) {
+        if (utf8Length(name) <= 100) {
+            return 0;
+        }
+        int split = name.lastIndexOf('/');
+        while (split > 0 && utf8Length(name.substring(0, split)) > 155) {
+            split = name.lastIndexOf('/', split - 1);
+        }
+        return split > 0 && utf8Length(name.substring(split + 1)) <= 100 ? split : -1;
+    }
+
+    // A PAX record is "<length> <key>=<value>\n", where the length counts its own digits
+    private static byte[] paxRecord(String key, String value) {
+        int payload = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = payload + String.valueOf(payload).length();
+        if (String.valueOf(length).length() != String.valueOf(payload).length()) {
+            length++;
+        }
+        return (length + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static byte[] header(String name, long size, long mtime, byte type) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] prefixBytes = new byte[0];
+        int split = splitPoint(name);
+        if (split > 0) {
+            // Longer paths are split into the ustar prefix field and the name field at a '/'
+            prefixBytes = name.substring(0, split).getBytes(StandardCharsets.UTF_8);
+            nameBytes = name.substring(split + 1).getBytes(StandardCharsets.UTF_8);
+        }
+
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        System.arraycopy(prefixBytes, 0, header, 345, prefixBytes.length);
+        writeOctal(header, 100, 8, 0644);
+        writeOctal(header, 108, 8, 0);
+        writeOctal(header, 116, 8, 0);
+        writeOctal(header, 124, 12, size);
+        writeOctal(header, 136, 12, mtime);
+        header[156] = type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+
+        // The checksum is computed with its own field filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        writeOctal(header, 148, 7, checksum);
+        header[155] = ' ';
+        return header;
+    }
+
+    private static void writeOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        String padded = "0".repeat(Math.max(0, digits - octal.length())) + octal;
+        byte[] bytes = padded.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, digits);
+        header[offset + digits] = 0;
+    }
+}
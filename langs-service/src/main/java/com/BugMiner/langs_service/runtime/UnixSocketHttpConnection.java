@@ -0,0 +1,305 @@
+package com.BugMiner.langs_service.runtime;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal HTTP/1.1 client connection over a Unix domain socket, as used by the Docker Engine API.
+ * <p>
+ * A connection carries one request at a time. After a response body has been fully read it can be
+ * reused for the next request; after an upgrade (hijack) the raw streams belong to the caller.
+ */
+final class UnixSocketHttpConnection implements Closeable {
+
+    private static final String BACKLOG_FULL_MESSAGE = "Resource temporarily unavailable";
+    private static final int CONNECT_ATTEMPTS = 100;
+
+    private final SocketChannel channel;
+    private final InputStream in;
+    private final OutputStream out;
+    private boolean reusable = true;
+
+    private UnixSocketHttpConnection(SocketChannel channel) {
+        this.channel = channel;
+        // Reads and writes go straight to the channel so that both directions can be used
+        // concurrently from different threads once the connection is hijacked
+        this.in = new BufferedInputStream(new ChannelInput(channel), 16 * 1024);
+        this.out = new ChannelOutput(channel);
+    }
+
+    static UnixSocketHttpConnection open(Path socketPath) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socketPath));
+                return new UnixSocketHttpConnection(channel);
+            } catch (IOException e) {
+                channel.close();
+                // On a virtual thread the connect is non-blocking underneath, and a Unix socket whose
+                // listen backlog is full refuses it with EAGAIN where a blocking connect would wait
+                if (attempt >= CONNECT_ATTEMPTS || !BACKLOG_FULL_MESSAGE.equals(e.getMessage())) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(Math.min(attempt, 20));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while connecting to " + socketPath);
+            }
+        }
+    }
+
+    /**
+     * Send a request and read the status line and headers of the response.
+     * The body must be consumed through {@link Response#body()} before the connection is reused.
+     */
+    Response send(String method, String path, Map<String, String> headers, byte[] body) throws IOException {
+        StringBuilder request = new StringBuilder()
+                .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                .append("Host: docker\r\n");
+        headers.forEach((name, value) -> request.append(name).append(": ").append(value).append("\r\n"));
+        request.append("Content-Length: ").append(body != null ? body.length : 0).append("\r\n\r\n");
+
+        out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+        if (body != null) {
+            out.write(body);
+        }
+        out.flush();
+
+        String statusLine = readLine();
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2 || !statusParts[0].startsWith("HTTP/")) {
+            throw new IOException("Malformed HTTP status line: " + statusLine);
+        }
+        int status = Integer.parseInt(statusParts[1]);
+
+        Map<String, String> responseHeaders = new HashMap<>();
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                responseHeaders.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+
+        if ("close".equalsIgnoreCase(responseHeaders.get("connection"))) {
+            reusable = false;
+        }
+        return new Response(status, responseHeaders, openBody(status, responseHeaders));
+    }
+
+    private InputStream openBody(int status, Map<String, String> headers) {
+        if (status == 101 || status == 204 || status == 304) {
+            // 101 hands the raw stream to the caller, the others never carry a body
+            if (status == 101) {
+                reusable = false;
+            }
+            return InputStream.nullInputStream();
+        }
+        if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            return new ChunkedInput(in);
+        }
+        String contentLength = headers.get("content-length");
+        if (contentLength != null) {
+            return new BoundedInput(in, Long.parseLong(contentLength));
+        }
+        // Body delimited by connection close (also how docker answers a non-upgraded hijack)
+        reusable = false;
+        return in;
+    }
+
+    /**
+     * Raw stream of the connection, for hijacked (upgraded) responses.
+     */
+    InputStream rawInput() {
+        return in;
+    }
+
+    OutputStream rawOutput() {
+        return out;
+    }
+
+    void shutdownOutput() throws IOException {
+        channel.shutdownOutput();
+    }
+
+    boolean isReusable() {
+        return reusable && channel.isOpen();
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing useful to do, the socket is gone either way
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+            }
+            line.write(b);
+        }
+        throw new EOFException("Connection closed by the Docker daemon");
+    }
+
+    record Response(int status, Map<String, String> headers, InputStream body) {
+
+        String bodyAsString() throws IOException {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class ChannelInput extends InputStream {
+        private final SocketChannel channel;
+
+        ChannelInput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            return channel.read(ByteBuffer.wrap(b, off, len));
+        }
+    }
+
+    private static final class ChannelOutput extends OutputStream {
+        private final SocketChannel channel;
+
+        ChannelOutput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static final class BoundedInput extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInput(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Response body truncated");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new EOFException("Response body truncated");
+            }
+            remaining -= n;
+            return n;
+        }
+    }
+
+    private final class ChunkedInput extends InputStream {
+        private final InputStream in;
+        private long chunkRemaining;
+        private boolean finished;
+
+        ChunkedInput(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (chunkRemaining == 0) {
+                String sizeLine = readLine();
+                int extension = sizeLine.indexOf(';');
+                chunkRemaining = Long.parseLong((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+                if (chunkRemaining == 0) {
+                    // Skip trailers up to the terminating empty line
+                    while (!readLine().isEmpty()) {
+                        // ignore
+                    }
+                    finished = true;
+                    return -1;
+                }
+            }
+            int n = in.read(b, off, (int) Math.min(len, chunkRemaining));
+            if (n == -1) {
+                throw new EOFException("Chunked response truncated");
+            }
+            chunkRemaining -= n;
+            if (chunkRemaining == 0) {
+                readLine();
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.BugMiner.langs_service.sandbox;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Jobs that are cancelled together, typically the test runs of one submission. Once the group is
+ * cancelled, running jobs are killed and jobs that have not started yet are refused.
+ */
+public class JobGroup {
+
+    private final Set<SandboxWorker> running = new HashSet<>();
+    private boolean cancelled;
+
+    /**
+     * Run a job on the given worker as part of this group.
+     *
+     * @throws CancellationException if the group is or gets cancelled before the job completes
+     */
+    public JobResult execute(SandboxWorker worker, String command, byte[] input, long timeoutSeconds,
+                             int outputLimitBytes, int stderrLimitBytes, OutputSink outputSink) throws IOException {
+        synchronized (this) {
+            if (cancelled) {
+                throw new CancellationException("Job group cancelled");
+            }
+            running.add(worker);
+        }
+        try {
+            return worker.execute(command, input, timeoutSeconds, outputLimitBytes, stderrLimitBytes, outputSink);
+        } finally {
+            // Once removed under the lock the worker can no longer receive a cancel from this group
+            synchronized (this) {
+                running.remove(worker);
+            }
+        }
+    }
+
+    public synchronized void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            running.forEach(SandboxWorker::cancel);
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
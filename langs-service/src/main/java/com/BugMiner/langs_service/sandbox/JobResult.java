@@ -0,0 +1,20 @@
+package com.BugMiner.langs_service.sandbox;
+
+/**
+ * Outcome of a single job executed by a {@link SandboxWorker}.
+ *
+ * @param exitCode            exit code of the command, 124 when the in-container timeout fired
+ * @param output              stdout of the command, cut at the output limit
+ * @param stderr              stderr of the command, cut at the stderr limit
+ * @param outputLimitExceeded the command wrote more than the output limit to stdout and was stopped
+ */
+public record JobResult(int exitCode, String output, String stderr, boolean outputLimitExceeded) {
+
+    public boolean isSuccess() {
+        return exitCode == 0 && !outputLimitExceeded;
+    }
+
+    public boolean isTimedOut() {
+        return exitCode == 124;
+    }
+}
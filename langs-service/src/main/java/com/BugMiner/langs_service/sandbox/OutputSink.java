@@ -0,0 +1,14 @@
+package com.BugMiner.langs_service.sandbox;
+
+/**
+ * Receives a job's stdout incrementally, as the worker forwards it.
+ */
+@FunctionalInterface
+public interface OutputSink {
+
+    /**
+     * @param chunk next piece of stdout
+     * @return false if no more output is wanted; the job is then stopped
+     */
+    boolean accept(byte[] chunk);
+}
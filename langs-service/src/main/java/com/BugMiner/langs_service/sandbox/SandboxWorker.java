@@ -0,0 +1,296 @@
+package com.BugMiner.langs_service.sandbox;
+
+import com.BugMiner.langs_service.runtime.ContainerRuntime;
+import com.BugMiner.langs_service.runtime.ExecSession;
+import com.BugMiner.langs_service.service.Language;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-lived worker process running inside a runner container. Jobs are framed over the
+ * stdin/stdout of a single attached exec session (see {@code Dockerfiles/sandbox-worker.sh}),
+ * so running a command costs a round-trip on an open stream instead of a new exec.
+ * <p>
+ * The same client drives every {@link WorkerKind} of agent.
+ * A worker executes one job at a time; the {@link SandboxWorkerPool} guarantees exclusive use.
+ * The running job can be cancelled from any thread with {@link #cancel()}.
+ */
+@Slf4j
+public class SandboxWorker implements Closeable {
+
+    private static final AtomicLong JOB_IDS = new AtomicLong();
+    private static final long RESPONSE_GRACE_SECONDS = 5;
+    private static final int DEFAULT_OUTPUT_LIMIT_BYTES = 1024 * 1024;
+    private static final int DEFAULT_STDERR_LIMIT_BYTES = 64 * 1024;
+    // 128 + SIGKILL, what the shell reports for a killed job
+    private static final int KILLED_EXIT_CODE = 137;
+
+    private final Language language;
+    private final WorkerKind kind;
+    private final ExecSession session;
+    private final ContainerRuntime containerRuntime;
+    private final OutputStream stdin;
+    private final BufferedReader stdout;
+    private final ExecutorService ioExecutor;
+    private final ScheduledExecutorService watchdog;
+
+    private int jobsCompleted;
+    private volatile boolean broken;
+    // Process group of the running job (0 when idle) and whether it has been asked to stop
+    private volatile long jobPid;
+    private volatile boolean cancelRequested;
+
+    SandboxWorker(Language language, WorkerKind kind, ExecSession session, ContainerRuntime containerRuntime,
+                  ExecutorService ioExecutor, ScheduledExecutorService watchdog) {
+        this.language = language;
+        this.kind = kind;
+        this.session = session;
+        this.containerRuntime = containerRuntime;
+        this.stdin = session.stdin();
+        this.stdout = new BufferedReader(new InputStreamReader(session.stdout(), StandardCharsets.US_ASCII));
+        this.ioExecutor = ioExecutor;
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Run a shell command inside the runner container with the default output limits.
+     */
+    public JobResult execute(String command, byte[] input, long timeoutSeconds) throws IOException {
+        return execute(command, input, timeoutSeconds, DEFAULT_OUTPUT_LIMIT_BYTES, DEFAULT_STDERR_LIMIT_BYTES, null);
+    }
+
+    /**
+     * Run a shell command inside the runner container.
+     * <p>
+     * Stdout and stderr are collected separately while the command runs. Stderr beyond its limit is
+     * dropped; stdout beyond its limit stops the command and flags the result. With an output sink,
+     * stdout is handed to the sink as it arrives instead of being collected, and the command is
+     * stopped as soon as the sink declines further output.
+     *
+     * @param command          command line executed with {@code bash -c}
+     * @param input            bytes fed to the command's stdin
+     * @param timeoutSeconds   in-container time limit for the command
+     * @param outputLimitBytes maximum stdout size
+     * @param stderrLimitBytes maximum stderr size kept for diagnostics
+     * @param outputSink       receives stdout incrementally, or null to collect it in the result
+     * @return exit code, stdout (empty when a sink is used) and stderr of the command
+     * @throws CancellationException if the job was cancelled while it ran
+     */
+    public JobResult execute(String command, byte[] input, long timeoutSeconds,
+                             int outputLimitBytes, int stderrLimitBytes, OutputSink outputSink) throws IOException {
+        if (cancelRequested) {
+            throw new CancellationException("Job cancelled");
+        }
+        long jobId = JOB_IDS.incrementAndGet();
+        byte[] commandBytes = command.getBytes(StandardCharsets.UTF_8);
+        byte[] header = String.format("JOB %d %d %d %d %d %d\n", jobId, timeoutSeconds,
+                        outputLimitBytes, stderrLimitBytes, commandBytes.length, input.length)
+                .getBytes(StandardCharsets.US_ASCII);
+
+        // If the worker stops answering, killing the session unblocks the reader below
+        ScheduledFuture<?> guard = watchdog.schedule(this::kill, timeoutSeconds + RESPONSE_GRACE_SECONDS, TimeUnit.SECONDS);
+
+        // The request is written on a separate thread: a command may start producing output
+        // before it has consumed all of its input, and both pipes have to keep moving
+        Future<?> writer = ioExecutor.submit(() -> {
+            stdin.write(header);
+            stdin.write(commandBytes);
+            stdin.write(input);
+            stdin.flush();
+            return null;
+        });
+
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            boolean outputLimitExceeded = false;
+            boolean outputDeclined = false;
+            long outputBytes = 0;
+            Base64.Decoder decoder = Base64.getDecoder();
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                if (line.startsWith("O ")) {
+                    byte[] chunk = decoder.decode(line.substring(2));
+                    long room = outputLimitBytes - outputBytes;
+                    outputBytes += chunk.length;
+                    if (chunk.length > room && !outputLimitExceeded) {
+                        // The agent already cut the stream; this also stops programs that ignore SIGPIPE
+                        outputLimitExceeded = true;
+                        killJobIfRunning();
+                    }
+                    if (outputSink == null) {
+                        output.write(chunk, 0, (int) Math.max(0, Math.min(room, chunk.length)));
+                    } else if (!outputDeclined && !outputLimitExceeded && !outputSink.accept(chunk)) {
+                        outputDeclined = true;
+                        killJobIfRunning();
+                    }
+                } else if (line.startsWith("E ")) {
+                    byte[] chunk = decoder.decode(line.substring(2));
+                    errors.write(chunk, 0, Math.max(0, Math.min(stderrLimitBytes - errors.size(), chunk.length)));
+                } else if (line.startsWith("START ")) {
+                    jobPid = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+                    // A stop that was requested before the pid was known is carried out now
+                    if (cancelRequested || outputDeclined || outputLimitExceeded) {
+                        killJob(jobPid);
+                    }
+                } else if (line.startsWith("END ")) {
+                    String[] parts = line.split(" ");
+                    if (parts.length < 3 || parts.length > 4 || Long.parseLong(parts[1]) != jobId) {
+                        throw new IOException("Unexpected worker response: " + line);
+                    }
+                    writer.get();
+                    jobsCompleted++;
+                    if (parts.length == 4 && "retire".equals(parts[3])) {
+                        // The agent exits after this job, the pool replaces it on release
+                        broken = true;
+                    }
+                    if (cancelRequested) {
+                        throw new CancellationException("Job cancelled");
+                    }
+                    return new JobResult(Integer.parseInt(parts[2]), output.toString(StandardCharsets.UTF_8),
+                            errors.toString(StandardCharsets.UTF_8), outputLimitExceeded);
+                } else {
+                    throw new IOException("Unexpected worker response: " + line);
+                }
+            }
+            if (cancelRequested || outputDeclined || outputLimitExceeded) {
+                // An agent that runs jobs in its own process (the warm JVM) goes down with the job
+                // it was asked to stop; the job still has its outcome
+                broken = true;
+                if (cancelRequested) {
+                    throw new CancellationException("Job cancelled");
+                }
+                return new JobResult(KILLED_EXIT_CODE, output.toString(StandardCharsets.UTF_8),
+                        errors.toString(StandardCharsets.UTF_8), outputLimitExceeded);
+            }
+            throw new IOException("Worker session for " + language.getContainerName() + " closed unexpectedly: "
+                    + session.stderrTail());
+        } catch (IOException e) {
+            broken = true;
+            if (cancelRequested) {
+                // The session went down with the job it was asked to stop
+                throw new CancellationException("Job cancelled");
+            }
+            throw e;
+        } catch (CancellationException e) {
+            // The worker itself is fine, only the job was stopped
+            throw e;
+        } catch (Exception e) {
+            broken = true;
+            throw new IOException("Worker job failed: " + e.getMessage(), e);
+        } finally {
+            jobPid = 0;
+            guard.cancel(false);
+            writer.cancel(true);
+        }
+    }
+
+    /**
+     * Stop the job currently running on this worker, if any. The worker stays usable: the job's
+     * process group is killed from a separate exec and {@link #execute} throws a
+     * {@link CancellationException} once the worker reports the job as ended.
+     */
+    public void cancel() {
+        cancelRequested = true;
+        killJobIfRunning();
+    }
+
+    private void killJobIfRunning() {
+        long pid = jobPid;
+        if (pid > 0) {
+            killJob(pid);
+        }
+    }
+
+    private void killJob(long pid) {
+        ioExecutor.execute(() -> {
+            try {
+                // The pid itself is signalled too in case the job has not become a group leader yet
+                containerRuntime.exec(language.getContainerName(),
+                        List.of("kill", "-KILL", "--", "-" + pid, String.valueOf(pid)));
+            } catch (IOException e) {
+                log.warn("Could not cancel job in {}, dropping the worker: {}", language.getContainerName(), e.getMessage());
+                kill();
+            }
+        });
+    }
+
+    // Called by the pool when the worker is handed back, so a late cancel cannot hit the next job
+    void resetCancellation() {
+        cancelRequested = false;
+    }
+
+    /**
+     * Round-trip a PING through the worker to verify it is still responsive.
+     */
+    public boolean ping(long timeoutSeconds) {
+        if (!isAlive()) {
+            return false;
+        }
+        long pingId = JOB_IDS.incrementAndGet();
+        ScheduledFuture<?> guard = watchdog.schedule(this::kill, timeoutSeconds, TimeUnit.SECONDS);
+        try {
+            stdin.write(("PING " + pingId + "\n").getBytes(StandardCharsets.US_ASCII));
+            stdin.flush();
+            String line = stdout.readLine();
+            if (("PONG " + pingId).equals(line)) {
+                return true;
+            }
+        } catch (IOException e) {
+            log.debug("Ping failed for worker in {}: {}", language.getContainerName(), e.getMessage());
+        } finally {
+            guard.cancel(false);
+        }
+        broken = true;
+        return false;
+    }
+
+    public boolean isAlive() {
+        return !broken && session.isOpen();
+    }
+
+    public Language getLanguage() {
+        return language;
+    }
+
+    public WorkerKind getKind() {
+        return kind;
+    }
+
+    public int getJobsCompleted() {
+        return jobsCompleted;
+    }
+
+    private void kill() {
+        broken = true;
+        session.close();
+    }
+
+    @Override
+    public void close() {
+        broken = true;
+        try {
+            // End-of-file on stdin makes the worker loop exit on its own
+            session.closeStdin();
+        } catch (IOException e) {
+            log.debug("Failed to close worker stdin", e);
+        }
+        session.close();
+    }
+}
@@ -0,0 +1,294 @@
+package com.BugMiner.langs_service.sandbox;
+
+import com.BugMiner.langs_service.runtime.ContainerRuntime;
+import com.BugMiner.langs_service.service.Language;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a pool of pre-started {@link SandboxWorker}s per language and {@link WorkerKind}.
+ * <p>
+ * Workers are handed out exclusively via {@link #acquire(Language)} and must be returned with
+ * {@link #release(SandboxWorker)}. Broken workers and workers that reached the configured job count
+ * are discarded on release and replaced, idle workers are health-checked periodically.
+ * Warm JVM workers exist for Java only and zygotes for Python only; a kind that cannot be started is
+ * not offered for a while.
+ */
+@Slf4j
+@Component
+public class SandboxWorkerPool {
+
+    // Defaults to the core count so the execution scheduler never waits on a worker it cannot get
+    @Value("${sandbox.pool.size:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int poolSize;
+
+    @Value("${sandbox.pool.max-jobs-per-worker:500}")
+    private int maxJobsPerWorker;
+
+    @Value("${sandbox.pool.acquire-timeout-seconds:30}")
+    private long acquireTimeoutSeconds;
+
+    @Value("${sandbox.pool.ping-timeout-seconds:5}")
+    private long pingTimeoutSeconds;
+
+    @Value("${sandbox.worker.command:sandbox-worker}")
+    private String workerCommand;
+
+    @Value("${sandbox.warm-jvm.enabled:true}")
+    private boolean warmJvmEnabled;
+
+    // Split on whitespace into the exec command line
+    @Value("${sandbox.warm-jvm.command:java -cp /opt/warm-jvm WarmJvmRunner}")
+    private String warmJvmCommand;
+
+    // Bounds what a submission can leave behind in JDK state; misbehaving runs retire the JVM earlier
+    @Value("${sandbox.warm-jvm.max-runs-per-jvm:100}")
+    private int maxRunsPerWarmJvm;
+
+    @Value("${sandbox.warm-jvm.retry-delay-seconds:60}")
+    private long warmJvmRetryDelaySeconds;
+
+    @Value("${sandbox.python-zygote.enabled:true}")
+    private boolean pythonZygoteEnabled;
+
+    // Split on whitespace into the exec command line; the options are the per-test resource limits
+    @Value("${sandbox.python-zygote.command:python-zygote --memory-mb 256}")
+    private String pythonZygoteCommand;
+
+    @Value("${sandbox.python-zygote.retry-delay-seconds:60}")
+    private long pythonZygoteRetryDelaySeconds;
+
+    // Request writers and kill execs, all blocked on the runtime's socket most of the time
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final ContainerRuntime containerRuntime;
+    private final Map<PoolKey, BlockingQueue<SandboxWorker>> idleWorkers = new HashMap<>();
+    private final Map<PoolKey, AtomicInteger> workerCounts = new HashMap<>();
+    // System.nanoTime() before which no worker of a kind that failed to start is started again
+    private final Map<WorkerKind, Long> retryAt = new ConcurrentHashMap<>();
+
+    private ExecutorService ioExecutor;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sandbox-worker-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SandboxWorkerPool(ContainerRuntime containerRuntime) {
+        this.containerRuntime = containerRuntime;
+        for (Language language : Language.values()) {
+            for (WorkerKind kind : WorkerKind.values()) {
+                PoolKey key = new PoolKey(language, kind);
+                idleWorkers.put(key, new LinkedBlockingQueue<>());
+                workerCounts.put(key, new AtomicInteger());
+            }
+        }
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        ioExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sandbox-worker-io-", 1).factory())
+                : Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "sandbox-worker-io");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        idleWorkers.keySet().forEach(this::fill);
+    }
+
+    /**
+     * @return true if workers of this kind can currently be acquired for the language
+     */
+    public boolean isAvailable(Language language, WorkerKind kind) {
+        return switch (kind) {
+            case SHELL -> true;
+            case WARM_JVM -> warmJvmEnabled && language == Language.JAVA && !backingOff(kind);
+            case PYTHON_ZYGOTE -> pythonZygoteEnabled && language == Language.PYTHON && !backingOff(kind);
+        };
+    }
+
+    private boolean backingOff(WorkerKind kind) {
+        Long until = retryAt.get(kind);
+        return until != null && System.nanoTime() - until < 0;
+    }
+
+    /**
+     * Take an idle shell worker for the given language, starting a new one if the pool is not full yet.
+     *
+     * @throws IOException if no worker became available within the acquire timeout
+     */
+    public SandboxWorker acquire(Language language) throws IOException, InterruptedException {
+        return acquire(language, WorkerKind.SHELL);
+    }
+
+    /**
+     * Take an idle worker of the given kind, starting a new one if the pool is not full yet.
+     *
+     * @throws IOException if the kind is not available or no worker became available within the acquire timeout
+     */
+    public SandboxWorker acquire(Language language, WorkerKind kind) throws IOException, InterruptedException {
+        if (!isAvailable(language, kind)) {
+            throw new IOException(kind + " workers are not available for " + language.getId());
+        }
+        PoolKey key = new PoolKey(language, kind);
+        BlockingQueue<SandboxWorker> idle = idleWorkers.get(key);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(acquireTimeoutSeconds);
+
+        while (true) {
+            SandboxWorker worker = idle.poll();
+            if (worker == null && reserveSlot(key)) {
+                try {
+                    return startWorker(key);
+                } catch (IOException e) {
+                    workerCounts.get(key).decrementAndGet();
+                    throw e;
+                }
+            }
+            if (worker == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IOException("No " + kind + " sandbox worker available for " + language.getId());
+                }
+                worker = idle.poll(remaining, TimeUnit.NANOSECONDS);
+            }
+            if (worker != null) {
+                if (worker.isAlive()) {
+                    return worker;
+                }
+                discard(worker);
+            }
+        }
+    }
+
+    /**
+     * Return a worker to the pool. Dead workers and workers past their job budget are recycled.
+     */
+    public void release(SandboxWorker worker) {
+        PoolKey key = new PoolKey(worker.getLanguage(), worker.getKind());
+        int maxJobs = worker.getKind() == WorkerKind.WARM_JVM ? maxRunsPerWarmJvm : maxJobsPerWorker;
+        if (!worker.isAlive() || worker.getJobsCompleted() >= maxJobs) {
+            discard(worker);
+            ioExecutor.execute(() -> fill(key));
+            return;
+        }
+        worker.resetCancellation();
+        idleWorkers.get(key).offer(worker);
+    }
+
+    // Ping idle workers and replace the ones that stopped responding
+    @Scheduled(fixedDelayString = "${sandbox.pool.health-check-interval-ms:30000}")
+    public void checkIdleWorkers() {
+        for (Map.Entry<PoolKey, BlockingQueue<SandboxWorker>> entry : idleWorkers.entrySet()) {
+            BlockingQueue<SandboxWorker> idle = entry.getValue();
+            List<SandboxWorker> checked = new ArrayList<>();
+            SandboxWorker worker;
+            while ((worker = idle.poll()) != null) {
+                if (worker.ping(pingTimeoutSeconds)) {
+                    checked.add(worker);
+                } else {
+                    log.warn("Replacing unresponsive {} sandbox worker for {}",
+                            worker.getKind(), worker.getLanguage().getContainerName());
+                    discard(worker);
+                }
+            }
+            idle.addAll(checked);
+            fill(entry.getKey());
+        }
+    }
+
+    private void fill(PoolKey key) {
+        if (!isAvailable(key.language(), key.kind())) {
+            return;
+        }
+        while (reserveSlot(key)) {
+            try {
+                idleWorkers.get(key).offer(startWorker(key));
+            } catch (IOException e) {
+                workerCounts.get(key).decrementAndGet();
+                log.warn("Could not start {} sandbox worker for {}: {}",
+                        key.kind(), key.language().getContainerName(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private boolean reserveSlot(PoolKey key) {
+        AtomicInteger count = workerCounts.get(key);
+        int current;
+        do {
+            current = count.get();
+            if (current >= poolSize) {
+                return false;
+            }
+        } while (!count.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private SandboxWorker startWorker(PoolKey key) throws IOException {
+        Language language = key.language();
+        List<String> command = switch (key.kind()) {
+            case SHELL -> List.of(workerCommand);
+            case WARM_JVM -> List.of(warmJvmCommand.trim().split("\\s+"));
+            case PYTHON_ZYGOTE -> List.of(pythonZygoteCommand.trim().split("\\s+"));
+        };
+        SandboxWorker worker = new SandboxWorker(language, key.kind(),
+                containerRuntime.openExec(language.getContainerName(), command),
+                containerRuntime, ioExecutor, watchdog);
+
+        if (!worker.ping(pingTimeoutSeconds)) {
+            worker.close();
+            long retryDelaySeconds = switch (key.kind()) {
+                case SHELL -> 0;
+                case WARM_JVM -> warmJvmRetryDelaySeconds;
+                case PYTHON_ZYGOTE -> pythonZygoteRetryDelaySeconds;
+            };
+            if (retryDelaySeconds > 0) {
+                // Most likely an image without this agent; shell workers run the jobs meanwhile
+                retryAt.put(key.kind(), System.nanoTime() + TimeUnit.SECONDS.toNanos(retryDelaySeconds));
+            }
+            throw new IOException(key.kind() + " sandbox worker did not answer in " + language.getContainerName());
+        }
+        log.debug("Started {} sandbox worker for {}", key.kind(), language.getContainerName());
+        return worker;
+    }
+
+    private void discard(SandboxWorker worker) {
+        workerCounts.get(new PoolKey(worker.getLanguage(), worker.getKind())).decrementAndGet();
+        worker.close();
+    }
+
+    private record PoolKey(Language language, WorkerKind kind) {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (BlockingQueue<SandboxWorker> idle : idleWorkers.values()) {
+            SandboxWorker worker;
+            while ((worker = idle.poll()) != null) {
+                worker.close();
+            }
+        }
+        watchdog.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+}
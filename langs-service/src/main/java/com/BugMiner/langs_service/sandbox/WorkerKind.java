@@ -0,0 +1,25 @@
+package com.BugMiner.langs_service.sandbox;
+
+/**
+ * The agents a {@link SandboxWorker} can talk to. All of them speak the protocol of
+ * {@code Dockerfiles/sandbox-worker.sh}, they differ in what a job's command means.
+ */
+public enum WorkerKind {
+
+    /**
+     * {@code sandbox-worker.sh}: the command is a shell command line, available in every runner.
+     */
+    SHELL,
+
+    /**
+     * {@code Dockerfiles/WarmJvmRunner.java} in java-runner: the command is
+     * {@code <class-directory> <main-class>}, run inside an already started JVM.
+     */
+    WARM_JVM,
+
+    /**
+     * {@code Dockerfiles/python-zygote.py} in python-runner: the command is the path of the script,
+     * run in a process forked from an interpreter with the common standard library already imported.
+     */
+    PYTHON_ZYGOTE
+}
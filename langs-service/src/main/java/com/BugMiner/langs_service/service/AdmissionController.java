@@ -0,0 +1,149 @@
+package com.BugMiner.langs_service.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Bounded admission for execution requests.
+ * <p>
+ * At most {@code max-concurrent} requests run at once, up to {@code queue-depth} more wait in FIFO
+ * order and anything beyond that is rejected straight away, so a burst degrades into queueing
+ * and fast rejections instead of every submission timing out together. Admitted requests run on
+ * a dedicated pool, callers (gRPC threads) never block while waiting.
+ */
+@Slf4j
+@Component
+public class AdmissionController {
+
+    @Value("${execution.admission.max-concurrent:0}")
+    private int configuredMaxConcurrent;
+
+    @Value("${execution.admission.queue-depth:64}")
+    private int queueDepth;
+
+    // An admitted request spends its time waiting for its executions
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final ExecutionScheduler executionScheduler;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Admission> waiting = new ArrayDeque<>();
+    private ExecutorService executor;
+
+    private int maxConcurrent;
+    private int active;
+    // Moving average of how long an admitted request runs, used for retry hints
+    private double averageServiceMillis = 1000;
+
+    public AdmissionController(ExecutionScheduler executionScheduler) {
+        this.executionScheduler = executionScheduler;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Twice the execution slots by default, so the scheduler always has other submissions
+        // to interleave while one of them is compiling or finishing
+        maxConcurrent = configuredMaxConcurrent > 0 ? configuredMaxConcurrent : 2 * executionScheduler.getMaxConcurrency();
+        executor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("admitted-request-", 1).factory())
+                : Executors.newCachedThreadPool(new AdmissionThreadFactory());
+        log.info("Admission control allows {} concurrent requests with {} queued", maxConcurrent, queueDepth);
+    }
+
+    /**
+     * Run the request once a slot is free.
+     *
+     * @param request receives the time in milliseconds it spent waiting for admission
+     * @return false if the queue is full and the request was rejected
+     */
+    public boolean offer(LongConsumer request) {
+        lock.lock();
+        try {
+            if (active < maxConcurrent) {
+                active++;
+                start(new Admission(request, System.nanoTime()));
+                return true;
+            }
+            if (waiting.size() >= queueDepth) {
+                return false;
+            }
+            waiting.addLast(new Admission(request, System.nanoTime()));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rough time until a slot frees up for a request arriving now, for retry hints.
+     */
+    public long estimateRetryAfterMillis() {
+        lock.lock();
+        try {
+            return Math.max(100, (long) (averageServiceMillis * (waiting.size() + 1) / maxConcurrent));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called with the lock held and a slot reserved
+    private void start(Admission admission) {
+        executor.execute(() -> run(admission));
+    }
+
+    private void run(Admission admission) {
+        long startedAt = System.nanoTime();
+        try {
+            admission.request().accept(TimeUnit.NANOSECONDS.toMillis(startedAt - admission.queuedAt()));
+        } catch (RuntimeException e) {
+            log.error("Admitted request failed", e);
+        } finally {
+            long serviceMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            lock.lock();
+            try {
+                averageServiceMillis = 0.9 * averageServiceMillis + 0.1 * serviceMillis;
+                Admission next = waiting.pollFirst();
+                if (next != null) {
+                    // The slot passes straight to the next waiting request
+                    start(next);
+                } else {
+                    active--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Admission(LongConsumer request, long queuedAt) {
+    }
+
+    private static final class AdmissionThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "admitted-request-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,232 +1,477 @@
 package com.BugMiner.langs_service.service;
 
+import com.BugMiner.langs_service.cache.CompileCache;
+import com.BugMiner.langs_service.compiler.CppToolchain;
+import com.BugMiner.langs_service.compiler.InProcessJavaCompiler;
+import com.BugMiner.langs_service.entity.ComparisonPolicy;
 import com.BugMiner.langs_service.entity.ExecutionRequest;
 import com.BugMiner.langs_service.entity.ExecutionResult;
+import com.BugMiner.langs_service.entity.JudgingMode;
 import com.BugMiner.langs_service.entity.TestCase;
 import com.BugMiner.langs_service.entity.TestCaseResult;
+import com.BugMiner.langs_service.entity.Verdict;
+import com.BugMiner.langs_service.health.RunnerHealthRegistry;
+import com.BugMiner.langs_service.judge.OutputComparator;
+import com.BugMiner.langs_service.runtime.ContainerRuntime;
+import com.BugMiner.langs_service.runtime.ExecResult;
+import com.BugMiner.langs_service.sandbox.JobGroup;
+import com.BugMiner.langs_service.sandbox.JobResult;
+import com.BugMiner.langs_service.sandbox.OutputSink;
+import com.BugMiner.langs_service.sandbox.SandboxWorker;
+import com.BugMiner.langs_service.sandbox.SandboxWorkerPool;
+import com.BugMiner.langs_service.sandbox.WorkerKind;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class CodeExecutionService {
 
-    private static final String JAVA_CONTAINER = "java-runner";
-    private static final String CPP_CONTAINER = "cpp-runner";
-    private static final String PYTHON_CONTAINER = "python-runner";
+    private static final String CONTAINER_CODE_ROOT = "/code";
+    private static final long COMPILE_TIMEOUT_SECONDS = 30;
+    private static final long RUN_TIMEOUT_SECONDS = 10;
+    private static final long FILE_TRANSFER_TIMEOUT_SECONDS = 10;
+    private static final byte[] NO_INPUT = new byte[0];
+    private static final String JAVA_MAIN_CLASS = "Main";
 
-    public ExecutionResult executeCode(ExecutionRequest request) {
-        String language = request.getLanguage().toLowerCase();
-        String code = request.getCode();
-        List<TestCase> testCases = request.getTestCases();
+    @Value("${execution.output-limit-bytes:1048576}")
+    private int outputLimitBytes;
 
-        try {
-            Path tempDir = Files.createTempDirectory("exec-" + UUID.randomUUID());
-            Path codeFilePath = createCodeFile(tempDir, language, code);
+    @Value("${execution.stderr-limit-bytes:65536}")
+    private int stderrLimitBytes;
+
+    // Output is compared while it streams in, only this much of it is kept for the response
+    @Value("${execution.output-preview-bytes:16384}")
+    private int outputPreviewBytes;
+
+    private final SandboxWorkerPool workerPool;
+    private final ContainerRuntime containerRuntime;
+    private final ExecutionScheduler executionScheduler;
+    private final RunnerHealthRegistry runnerHealth;
+    private final CompileCache compileCache;
+    private final InProcessJavaCompiler javaCompiler;
+    private final CppToolchain cppToolchain;
+
+    public ExecutionResult executeCode(ExecutionRequest request) {
+        int testCount = request.getTestCases() != null ? request.getTestCases().size() : 0;
+        TestCaseResult[] results = new TestCaseResult[testCount];
 
-            String containerName = getContainerForLanguage(language);
-            if (containerName == null) {
-                return new ExecutionResult(false, null, "Unsupported language", 1);
+        ExecutionResult result = executeCode(request, new ExecutionListener() {
+            @Override
+            public void onTestResult(int index, TestCaseResult testResult) {
+                results[index] = testResult;
             }
+        });
 
-            if (!isContainerRunning(containerName)) {
-                return new ExecutionResult(false, null, "Container down: " + containerName + " is not running.", 1);
+        // Only a run that reached the test stage carries per-test results; tests skipped by the
+        // judging mode have none
+        if (result.getErrorMessage() == null) {
+            result.setTestResults(new ArrayList<>(Arrays.stream(results).filter(Objects::nonNull).toList()));
+        }
+        return result;
+    }
+
+    /**
+     * Execute a submission and report the compile outcome and every test result to the listener
+     * as soon as they are known. The returned result carries the overall outcome only, per-test
+     * results are not retained. Tests skipped or cancelled by the judging mode are not reported.
+     */
+    public ExecutionResult executeCode(ExecutionRequest request, ExecutionListener listener) {
+        return executeCode(request, listener, new ExecutionCancellation());
+    }
+
+    /**
+     * Execute a submission as above, stopping early if the caller cancels it. A cancelled
+     * execution reports no further results and returns an error result.
+     */
+    public ExecutionResult executeCode(ExecutionRequest request, ExecutionListener listener,
+                                       ExecutionCancellation cancellation) {
+        List<TestCase> testCases = request.getTestCases() != null ? request.getTestCases() : List.of();
+        JudgingMode judgingMode = request.getJudgingMode() != null ? request.getJudgingMode() : JudgingMode.ALL;
+        ComparisonPolicy comparisonPolicy = request.getComparisonPolicy() != null
+                ? request.getComparisonPolicy() : ComparisonPolicy.TRIMMED_EXACT;
+
+        Language language = Language.fromId(request.getLanguage()).orElse(null);
+        if (language == null) {
+            return new ExecutionResult(false, null, "Unsupported language", 1);
+        }
+        // A submission none of whose tests ran has not passed them
+        if (testCases.stream().noneMatch(testCase -> isJudged(judgingMode, testCase))) {
+            return new ExecutionResult(false, null, judgingMode == JudgingMode.SAMPLE_ONLY && !testCases.isEmpty()
+                    ? "No sample test case to judge" : "No test case to judge", 1);
+        }
+
+        // C++ is compiled with the flags of the requested profile
+        CppToolchain.Profile cppProfile = null;
+        if (language == Language.CPP) {
+            cppProfile = cppToolchain.getProfile(request.getCompilerProfile());
+            if (cppProfile == null) {
+                return new ExecutionResult(false, null, "Unknown compiler profile: " + request.getCompilerProfile()
+                        + " (available: " + String.join(", ", cppToolchain.getProfileNames()) + ")", 1);
             }
+        }
 
-            List<TestCaseResult> results = new ArrayList<>();
+        String containerName = language.getContainerName();
+        // One working directory per execution so the compiled artifact can be shared by every test case
+        String executionId = System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8);
+        String workDir = CONTAINER_CODE_ROOT + "/" + executionId;
+        ExecutionScheduler.Batch batch = executionScheduler.newBatch();
+        // Until the tests start, cancelling refuses the compile stage's scheduler tasks
+        cancellation.onCancel(batch::cancel);
+        boolean uploaded = false;
 
-            for (TestCase testCase : testCases) {
-                Path inputFilePath = createInputFile(tempDir, testCase.getInput());
-                String output = runInExistingContainer(containerName, codeFilePath, inputFilePath);
+        try {
+            if (!runnerHealth.isRunnerUp(language)) {
+                return new ExecutionResult(false, null, "Container down: " + containerName + " is not running.", 1);
+            }
 
-                boolean passed = output.trim().equals(testCase.getExpectedOutput().trim());
-                results.add(new TestCaseResult(testCase.getInput(), testCase.getExpectedOutput(), output, passed));
+            uploadSource(containerName, executionId, language, request.getCode());
+            uploaded = true;
+
+            // Compile stage: runs once per submission, a failure short-circuits the whole request.
+            // Artifacts of a source compiled before are restored from the compile cache instead.
+            // Java is compiled in this JVM when possible, which saves starting javac in the runner
+            boolean compileInProcess = language == Language.JAVA && javaCompiler.accepts(request.getCode());
+            String compileCommand = language == Language.CPP
+                    ? cppToolchain.compileCommand(cppProfile)
+                    : language.getCompileCommand();
+            String cacheKey = compileInProcess
+                    ? compileCache.keyFor(language, javaCompiler.getVersion(), request.getCode())
+                    : compileCache.keyForRunner(language, compileCommand, request.getCode());
+            byte[] cachedArtifacts = cacheKey != null ? compileCache.get(cacheKey) : null;
+            if (cachedArtifacts != null) {
+                containerRuntime.putArchive(containerName, workDir, cachedArtifacts);
+                log.debug("Restored compiled artifacts for {} from the compile cache", containerName);
+            } else {
+                InProcessJavaCompiler.JavaCompilation compilation = compileInProcess
+                        ? batch.submit(() -> javaCompiler.tryCompile(request.getCode())).join().orElse(null)
+                        : null;
+                if (compileInProcess && compilation == null) {
+                    // Abandoned in-process, compiled by the runner's javac instead, whose artifacts are keyed as such
+                    cacheKey = compileCache.keyForRunner(language, compileCommand, request.getCode());
+                }
+                if (compilation != null) {
+                    if (!compilation.isSuccess()) {
+                        String message = "Compilation failed:\n" + compilation.errorText();
+                        listener.onCompiled(false, message, 1, compilation.errors());
+                        return new ExecutionResult(false, null, message, 1, compilation.errors());
+                    }
+                    uploadClassFiles(containerName, workDir, language, compilation.classFiles());
+                    if (cacheKey != null) {
+                        storeArtifacts(language, workDir, cacheKey);
+                    }
+                } else if (language.requiresCompilation()) {
+                    JobResult compileResult = batch.submit(() -> withWorker(language, worker -> compile(worker, workDir, language, compileCommand))).join();
+                    if (!compileResult.isSuccess()) {
+                        String message = compileResult.isTimedOut()
+                                ? "Compilation timed out (" + COMPILE_TIMEOUT_SECONDS + " seconds limit exceeded)"
+                                : "Compilation failed:\n" + compileResult.output().trim();
+                        listener.onCompiled(false, message, compileResult.exitCode(), List.of());
+                        return new ExecutionResult(false, null, message, compileResult.exitCode());
+                    }
+                    if (cacheKey != null) {
+                        storeArtifacts(language, workDir, cacheKey);
+                    }
+                }
+            }
+            listener.onCompiled(true, null, 0, List.of());
+
+            // Run stage: test cases fan out through the scheduler and reuse the compiled classes/binary.
+            // Each result goes to the listener as soon as it is ready, tagged with its original position
+            JobGroup jobs = new JobGroup();
+            cancellation.onCancel(() -> {
+                batch.cancel();
+                jobs.cancel();
+            });
+            // Tests run in a warm runtime when the language has one; a warm run that breaks down
+            // sends the rest of the submission to shell workers
+            AtomicReference<WorkerKind> runKind = new AtomicReference<>(runKind(language));
+            List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+            for (int i = 0; i < testCases.size(); i++) {
+                int index = i;
+                TestCase testCase = testCases.get(i);
+                if (!isJudged(judgingMode, testCase)) {
+                    continue;
+                }
+                pending.add(batch.submit(() -> {
+                    TestCaseResult testResult = runTestCase(language, workDir, testCase, () -> OutputComparator.create(
+                            comparisonPolicy, testCase.getExpectedOutput(), request.getFloatEpsilon()), jobs, runKind);
+                    if (cancellation.isCancelled()) {
+                        throw new CancellationException("Execution cancelled");
+                    }
+                    if (!testResult.isPassed() && judgingMode == JudgingMode.STOP_ON_FIRST_FAILURE) {
+                        // The verdict is known: drop queued tests and kill the ones still running
+                        batch.cancel();
+                        jobs.cancel();
+                    }
+                    listener.onTestResult(index, testResult);
+                    return testResult.isPassed();
+                }));
             }
 
-            boolean allPassed = results.stream().allMatch(TestCaseResult::isPassed);
-            return new ExecutionResult(allPassed, results, null, 0);
+            boolean allPassed = true;
+            for (CompletableFuture<Boolean> passed : pending) {
+                try {
+                    allPassed &= passed.join();
+                } catch (CancellationException e) {
+                    // After a failure under STOP_ON_FIRST_FAILURE, or the caller cancelled
+                    allPassed = false;
+                }
+            }
+            if (cancellation.isCancelled()) {
+                return cancelledResult();
+            }
+            return new ExecutionResult(allPassed, null, null, 0);
 
+        } catch (CancellationException e) {
+            // The compile stage's tasks were refused
+            return cancelledResult();
         } catch (Exception e) {
-            log.error("Execution failed", e);
-            return new ExecutionResult(false, null, e.getMessage(), 1);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Execution failed", cause);
+            return new ExecutionResult(false, null, cause.getMessage(), 1);
+        } finally {
+            if (uploaded) {
+                cleanupContainerFiles(language, workDir);
+            }
         }
     }
 
-    private Path createCodeFile(Path dir, String language, String code) throws IOException {
-        String filename = switch (language) {
-            case "java" -> "Main.java";
-            case "cpp" -> "main.cpp";
-            case "python" -> "main.py";
-            default -> throw new IllegalArgumentException("Unsupported language: " + language);
-        };
-        Path filePath = dir.resolve(filename);
-        Files.writeString(filePath, code, StandardOpenOption.CREATE);
-        return filePath;
-    }
-
-    private Path createInputFile(Path dir, String input) throws IOException {
-        Path filePath = dir.resolve("input.txt");
-        Files.writeString(filePath, input != null ? input : "", StandardOpenOption.CREATE);
-        return filePath;
+    private static boolean isJudged(JudgingMode judgingMode, TestCase testCase) {
+        return judgingMode != JudgingMode.SAMPLE_ONLY || testCase.isSample();
     }
 
-    private String getContainerForLanguage(String language) {
-        return switch (language) {
-            case "java" -> JAVA_CONTAINER;
-            case "cpp" -> CPP_CONTAINER;
-            case "python" -> PYTHON_CONTAINER;
-            default -> null;
-        };
+    private static ExecutionResult cancelledResult() {
+        log.info("Execution cancelled by its caller");
+        return new ExecutionResult(false, null, "Execution cancelled", 1);
     }
 
-    private boolean isContainerRunning(String containerName) throws IOException, InterruptedException {
-        ProcessBuilder builder = new ProcessBuilder("docker", "ps", "--format", "{{.Names}}");
-        Process process = builder.start();
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().equals(containerName)) {
-                    return true;
+    private TestCaseResult runTestCase(Language language, String workDir, TestCase testCase,
+                                       Supplier<OutputComparator> comparators, JobGroup jobs,
+                                       AtomicReference<WorkerKind> runKind) {
+        OutputCapture capture = null;
+        JobResult result = null;
+        try {
+            WorkerKind warmKind = runKind.get();
+            if (warmKind != WorkerKind.SHELL) {
+                OutputCapture warmCapture = new OutputCapture(comparators.get(), outputPreviewBytes);
+                try {
+                    result = withWorker(language, warmKind, worker -> runInExistingContainer(
+                            worker, workDir, language, testCase.getInput(), warmCapture, jobs));
+                    capture = warmCapture;
+                } catch (IOException e) {
+                    // Typically System.exit in a warm JVM or an agent that went away; the test is run again cold
+                    log.info("{} run failed, using shell workers for the rest of the submission: {}", warmKind, e.getMessage());
+                    runKind.set(WorkerKind.SHELL);
                 }
             }
+            if (result == null) {
+                OutputCapture coldCapture = new OutputCapture(comparators.get(), outputPreviewBytes);
+                result = withWorker(language, WorkerKind.SHELL, worker -> runInExistingContainer(
+                        worker, workDir, language, testCase.getInput(), coldCapture, jobs));
+                capture = coldCapture;
+            }
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error during container execution", e);
+            return new TestCaseResult(testCase.getInput(), testCase.getExpectedOutput(), "Error: " + e.getMessage(),
+                    false, Verdict.INTERNAL_ERROR, "", 0, 0, null);
         }
 
-        process.waitFor();
-        return false;
+        OutputComparator comparator = capture.comparator;
+        ByteArrayOutputStream preview = capture.preview;
+        String output;
+        Verdict verdict;
+        OutputComparator.Mismatch mismatch = null;
+        // Exit code 124 is timeout's exit code
+        if (result.isTimedOut()) {
+            output = "Error: Execution timed out (" + RUN_TIMEOUT_SECONDS + " seconds limit exceeded)";
+            verdict = Verdict.TIME_LIMIT_EXCEEDED;
+        } else if (result.outputLimitExceeded()) {
+            output = "Error: Output limit exceeded (" + outputLimitBytes + " bytes)";
+            verdict = Verdict.OUTPUT_LIMIT_EXCEEDED;
+        } else {
+            output = preview.toString(StandardCharsets.UTF_8).trim();
+            // A program stopped because of a difference exits non-zero, that is still a wrong answer
+            if (result.exitCode() != 0 && !comparator.isMismatched()) {
+                verdict = Verdict.RUNTIME_ERROR;
+            } else {
+                mismatch = comparator.finish();
+                verdict = mismatch == null ? Verdict.ACCEPTED : Verdict.WRONG_ANSWER;
+            }
+        }
+        return new TestCaseResult(testCase.getInput(), testCase.getExpectedOutput(), output,
+                verdict == Verdict.ACCEPTED, verdict, result.stderr(),
+                mismatch != null ? mismatch.line() : 0,
+                mismatch != null ? mismatch.column() : 0,
+                mismatch != null ? mismatch.message() : null);
     }
 
-    private String runInExistingContainer(String containerName, Path codeFilePath, Path inputFilePath) throws IOException, InterruptedException {
-        String fileName = codeFilePath.getFileName().toString();
+    /**
+     * Java tests run in warm JVMs, Python tests in processes forked from a zygote.
+     * <p>
+     * Neither is a sandbox of its own: a warm JVM runs submissions as the same user and in the same
+     * runner container as the shell workers, and the container is what isolates them. What keeps one
+     * submission from changing the result of the next in a shared JVM is WarmJvmRunner, which retires
+     * the JVM after any run that leaves behind state it cannot reset. A program that exits the JVM
+     * ends it, and its test is run again cold.
+     */
+    private WorkerKind runKind(Language language) {
+        if (language == Language.JAVA && workerPool.isAvailable(language, WorkerKind.WARM_JVM)) {
+            return WorkerKind.WARM_JVM;
+        }
+        if (language == Language.PYTHON && workerPool.isAvailable(language, WorkerKind.PYTHON_ZYGOTE)) {
+            return WorkerKind.PYTHON_ZYGOTE;
+        }
+        return WorkerKind.SHELL;
+    }
 
-        // Create unique filenames to avoid conflicts between concurrent executions
-        String uniqueId = System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8);
-        String containerCodePath = "/code/" + uniqueId + "_" + fileName;
-        String containerInputPath = "/code/" + uniqueId + "_input.txt";
-        String containerInputFilename = uniqueId + "_input.txt";
+    private <T> T withWorker(Language language, WorkerJob<T> job) throws IOException, InterruptedException {
+        return withWorker(language, WorkerKind.SHELL, job);
+    }
 
+    private <T> T withWorker(Language language, WorkerKind kind, WorkerJob<T> job) throws IOException, InterruptedException {
+        SandboxWorker worker = workerPool.acquire(language, kind);
         try {
-            // Copy the code file into the container
-            Process copyCodeProcess = new ProcessBuilder("docker", "cp", codeFilePath.toString(), containerName + ":" + containerCodePath).start();
-            int copyCodeResult = copyCodeProcess.waitFor();
-            if (copyCodeResult != 0) {
-                log.error("Failed to copy code file to container. Exit code: {}", copyCodeResult);
-                return "Error: Failed to copy code file to container";
-            }
+            return job.run(worker);
+        } finally {
+            workerPool.release(worker);
+        }
+    }
 
-            // Copy the input file into the container
-            Process copyInputProcess = new ProcessBuilder("docker", "cp", inputFilePath.toString(), containerName + ":" + containerInputPath).start();
-            int copyInputResult = copyInputProcess.waitFor();
-            if (copyInputResult != 0) {
-                log.error("Failed to copy input file to container. Exit code: {}", copyInputResult);
-                return "Error: Failed to copy input file to container";
-            }
+    @FunctionalInterface
+    private interface WorkerJob<T> {
+        T run(SandboxWorker worker) throws IOException;
+    }
 
-            // Build the execution command with unique filenames and timeout
-            String execCommand = switch (fileName) {
-                case "Main.java" -> String.format("cd /code && timeout 10s bash -c 'javac %s && java Main < %s'", uniqueId + "_" + fileName, containerInputFilename);
-                case "main.cpp" -> String.format("cd /code && timeout 10s bash -c 'g++ %s -o %s_a.out && ./%s_a.out < %s'", uniqueId + "_" + fileName, uniqueId, uniqueId, containerInputFilename);
-                case "main.py" -> String.format("cd /code && timeout 10s python3 %s < %s", uniqueId + "_" + fileName, containerInputFilename);
-                default -> throw new IllegalArgumentException("Unknown file type: " + fileName);
-            };
-
-            log.debug("Executing command in container {}: {}", containerName, execCommand);
-
-            // Execute the command with timeout
-            ProcessBuilder execBuilder = new ProcessBuilder("docker", "exec", containerName, "bash", "-c", execCommand);
-            execBuilder.redirectErrorStream(true);
-            Process execProcess = execBuilder.start();
-
-            StringBuilder output = new StringBuilder();
-            boolean finished = false;
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(execProcess.getInputStream()))) {
-                // Wait for process to complete with timeout
-                finished = execProcess.waitFor(15, java.util.concurrent.TimeUnit.SECONDS);
-
-                if (!finished) {
-                    // Process didn't finish within timeout, kill it
-                    execProcess.destroyForcibly();
-                    log.warn("Process timed out and was killed for execution: {}", uniqueId);
-                    return "Error: Execution timed out (15 seconds limit exceeded)";
-                }
+    private void uploadSource(String containerName, String executionId, Language language, String code) throws IOException {
+        // The archive entry creates the execution directory under /code as it is extracted
+        String entry = executionId + "/" + language.getSourceFileName();
+        containerRuntime.putArchive(containerName, CONTAINER_CODE_ROOT, Map.of(entry, code.getBytes(StandardCharsets.UTF_8)));
+    }
 
-                // Read output after process completion
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
-            }
+    private void uploadClassFiles(String containerName, String workDir, Language language,
+                                  Map<String, byte[]> classFiles) throws IOException {
+        // Laid out as the runner's javac would have, so the run command is the same either way
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        classFiles.forEach((path, bytes) -> entries.put(language.getArtifactPath() + "/" + path, bytes));
+        containerRuntime.putArchive(containerName, workDir, entries);
+    }
 
-            int exitCode = execProcess.exitValue();
-            log.debug("Container execution completed with exit code: {}", exitCode);
+    private JobResult compile(SandboxWorker worker, String workDir, Language language, String compileCommand) throws IOException {
+        // Compilers report on stderr, folded into the output so it can be shown as the error message
+        String command = String.format("cd %s && %s 2>&1", workDir, compileCommand);
+        log.debug("Compiling in container {}: {}", language.getContainerName(), command);
 
-            String result = output.toString().trim();
+        JobResult result = worker.execute(command, NO_INPUT, COMPILE_TIMEOUT_SECONDS);
+        log.debug("Compilation finished with exit code: {}", result.exitCode());
+        return result;
+    }
 
-            // Check if timeout occurred (exit code 124 is timeout's exit code)
-            if (exitCode == 124) {
-                result = "Error: Execution timed out (10 seconds limit exceeded)";
-            }
+    private void storeArtifacts(Language language, String workDir, String cacheKey) {
+        try {
+            compileCache.put(cacheKey, containerRuntime.getArchive(language.getContainerName(),
+                    workDir + "/" + language.getArtifactPath()));
+        } catch (IOException e) {
+            // Only the next submission of the same source pays for this
+            log.warn("Could not cache compiled artifacts from {}: {}", language.getContainerName(), e.getMessage());
+        }
+    }
 
-            // Optional: Clean up files immediately after execution
-            // Comment out these lines if you want to rely only on periodic cleanup
-            cleanupContainerFiles(containerName, containerCodePath, containerInputPath, uniqueId);
+    private JobResult runInExistingContainer(SandboxWorker worker, String workDir, Language language, String input,
+                                             OutputSink outputSink, JobGroup jobs) throws IOException {
+        // The input is streamed into the program's stdin over the worker session and stdout/stderr
+        // come back the same way, so no per-test file is written on the host or in the container
+        byte[] inputBytes = (input != null ? input : "").getBytes(StandardCharsets.UTF_8);
+
+        // Only the run command is executed here, the artifact was built by the compile stage.
+        // A warm JVM is told where the classes are and which class to run, a zygote which script to run
+        String execCommand = switch (worker.getKind()) {
+            case SHELL -> String.format("cd %s && %s", workDir, language.getRunCommand());
+            case WARM_JVM -> String.format("%s/%s %s", workDir, language.getArtifactPath(), JAVA_MAIN_CLASS);
+            case PYTHON_ZYGOTE -> String.format("%s/%s", workDir, language.getSourceFileName());
+        };
+        log.debug("Executing command in container {}: {}", language.getContainerName(), execCommand);
 
-            return result;
+        JobResult result = jobs.execute(worker, execCommand, inputBytes, RUN_TIMEOUT_SECONDS,
+                outputLimitBytes, stderrLimitBytes, outputSink);
+        log.debug("Container execution completed with exit code: {}", result.exitCode());
+        return result;
+    }
 
-        } catch (Exception e) {
-            log.error("Error during container execution", e);
-            return "Error: " + e.getMessage();
+    /**
+     * Feeds a test's stdout to its comparator as it arrives and keeps a bounded preview of it.
+     * The first difference stops the program.
+     */
+    private static final class OutputCapture implements OutputSink {
+
+        private final OutputComparator comparator;
+        private final ByteArrayOutputStream preview = new ByteArrayOutputStream();
+        private final int previewBytes;
+
+        OutputCapture(OutputComparator comparator, int previewBytes) {
+            this.comparator = comparator;
+            this.previewBytes = previewBytes;
+        }
+
+        @Override
+        public boolean accept(byte[] chunk) {
+            preview.write(chunk, 0, Math.max(0, Math.min(previewBytes - preview.size(), chunk.length)));
+            return comparator.accept(chunk);
         }
     }
 
-    private void cleanupContainerFiles(String containerName, String containerCodePath, String containerInputPath, String uniqueId) {
+    private void cleanupContainerFiles(Language language, String workDir) {
         try {
-            // Clean up files in container - wait for completion to avoid race conditions
-            ProcessBuilder cleanupBuilder = new ProcessBuilder("docker", "exec", containerName, "bash", "-c",
-                    String.format("rm -f %s %s /code/%s_a.out", containerCodePath, containerInputPath, uniqueId));
-            Process cleanupProcess = cleanupBuilder.start();
-            int cleanupResult = cleanupProcess.waitFor();
-
-            if (cleanupResult != 0) {
-                log.warn("Cleanup process exited with code: {} for container: {}", cleanupResult, containerName);
+            JobResult cleanupResult = withWorker(language, worker -> worker.execute("rm -rf " + workDir, NO_INPUT, FILE_TRANSFER_TIMEOUT_SECONDS));
+
+            if (!cleanupResult.isSuccess()) {
+                log.warn("Cleanup exited with code: {} for container: {}", cleanupResult.exitCode(), language.getContainerName());
             } else {
-                log.debug("Successfully cleaned up files for execution: {}", uniqueId);
+                log.debug("Successfully cleaned up files for execution: {}", workDir);
             }
         } catch (Exception e) {
-            log.warn("Failed to cleanup container files for execution: {}", uniqueId, e);
+            log.warn("Failed to cleanup container files for execution: {}", workDir, e);
         }
     }
 
     // Periodic cleanup to prevent disk space issues
     @Scheduled(fixedRate = 3600000) // Every hour (3600000 ms)
     public void periodicContainerCleanup() {
-        String[] containers = {JAVA_CONTAINER, CPP_CONTAINER, PYTHON_CONTAINER};
-
-        for (String container : containers) {
+        for (Language language : Language.values()) {
+            String container = language.getContainerName();
             try {
-                if (isContainerRunning(container)) {
-                    // Remove files older than 2 hours to be safe
-                    ProcessBuilder pb = new ProcessBuilder(
-                            "docker", "exec", container,
-                            "find", "/code", "-type", "f", "-mmin", "+120", "-delete"
-                    );
-                    Process process = pb.start();
-                    int result = process.waitFor();
-
-                    if (result == 0) {
+                if (runnerHealth.isRunnerUp(language)) {
+                    // Remove execution directories older than 2 hours to be safe
+                    ExecResult result = containerRuntime.exec(container, List.of(
+                            "find", CONTAINER_CODE_ROOT, "-mindepth", "1", "-maxdepth", "1", "-mmin", "+120",
+                            "-exec", "rm", "-rf", "{}", "+"));
+
+                    if (result.isSuccess()) {
                         log.info("Periodic cleanup completed for container: {}", container);
                     } else {
-                        log.warn("Periodic cleanup had issues for container: {}, exit code: {}", container, result);
+                        log.warn("Periodic cleanup had issues for container: {}, exit code: {}", container, result.exitCode());
                     }
                 }
             } catch (Exception e) {
@@ -238,22 +483,11 @@ public class CodeExecutionService {
     // Optional: Method to get container disk usage for monitoring
     public String getContainerDiskUsage(String containerName) {
         try {
-            ProcessBuilder pb = new ProcessBuilder("docker", "exec", containerName, "du", "-sh", "/code");
-            Process process = pb.start();
-
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line);
-                }
-            }
-
-            process.waitFor();
-            return output.toString().trim();
+            ExecResult result = containerRuntime.exec(containerName, List.of("du", "-sh", CONTAINER_CODE_ROOT));
+            return result.stdout().trim();
         } catch (Exception e) {
             log.error("Failed to get disk usage for container: {}", containerName, e);
             return "Unknown";
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package com.BugMiner.langs_service.service;
+
+/**
+ * Lets the caller stop an execution it no longer needs, e.g. when the client cancelled the call or
+ * its deadline passed. Tests that have not started are dropped and running ones are killed; a
+ * compilation already under way runs to its end.
+ */
+public final class ExecutionCancellation {
+
+    private Runnable action;
+    private boolean cancelled;
+
+    public void cancel() {
+        Runnable toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = action;
+        }
+        if (toRun != null) {
+            toRun.run();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Set what cancelling does, replacing the previous action as the execution progresses. Runs it
+     * straight away if the execution has already been cancelled.
+     */
+    void onCancel(Runnable newAction) {
+        synchronized (this) {
+            action = newAction;
+            if (!cancelled) {
+                return;
+            }
+        }
+        newAction.run();
+    }
+}
@@ -0,0 +1,34 @@
+package com.BugMiner.langs_service.service;
+
+import com.BugMiner.langs_service.entity.CompileError;
+import com.BugMiner.langs_service.entity.TestCaseResult;
+
+import java.util.List;
+
+/**
+ * Receives progress of an execution while it runs.
+ * <p>
+ * Test results are reported in completion order from scheduler threads, so implementations
+ * must be thread-safe.
+ */
+public interface ExecutionListener {
+
+    ExecutionListener NONE = new ExecutionListener() {
+    };
+
+    /**
+     * Called once the compile stage is over, also for languages that need no compilation.
+     *
+     * @param compileErrors structured compiler errors, empty if the compiler gave none
+     */
+    default void onCompiled(boolean success, String errorMessage, int exitCode, List<CompileError> compileErrors) {
+    }
+
+    /**
+     * Called as soon as a test case has finished.
+     *
+     * @param index position of the test case in the request
+     */
+    default void onTestResult(int index, TestCaseResult result) {
+    }
+}
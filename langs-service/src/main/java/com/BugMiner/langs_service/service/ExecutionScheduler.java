@@ -0,0 +1,210 @@
+package com.BugMiner.langs_service.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Host-wide scheduler for compile and test executions.
+ * <p>
+ * The number of executions running at once is capped by the CPU count and by the memory budget
+ * divided by the memory reserved per execution. Work is grouped in {@link Batch}es (one per
+ * submission) and slots are handed out round-robin across batches, so a large submission cannot
+ * starve smaller ones that arrive after it.
+ */
+@Slf4j
+@Component
+public class ExecutionScheduler {
+
+    @Value("${execution.scheduler.max-concurrency:0}")
+    private int configuredMaxConcurrency;
+
+    @Value("${execution.scheduler.memory-budget-mb:0}")
+    private long memoryBudgetMb;
+
+    @Value("${execution.scheduler.memory-per-execution-mb:256}")
+    private long memoryPerExecutionMb;
+
+    // An execution mostly waits on its runner's socket, which parks a virtual thread without pinning it
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Batch> readyBatches = new ArrayDeque<>();
+    private ExecutorService executor;
+
+    private int maxConcurrency;
+    private int running;
+
+    @PostConstruct
+    public void init() {
+        int cpuSlots = Runtime.getRuntime().availableProcessors();
+
+        long budgetMb = memoryBudgetMb;
+        if (budgetMb <= 0) {
+            // Default to three quarters of the physical memory of the host
+            long totalBytes = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                    .getTotalMemorySize();
+            budgetMb = totalBytes / (1024 * 1024) * 3 / 4;
+        }
+        int memorySlots = (int) Math.max(1, budgetMb / Math.max(1, memoryPerExecutionMb));
+
+        maxConcurrency = configuredMaxConcurrency > 0 ? configuredMaxConcurrency : Math.min(cpuSlots, memorySlots);
+        executor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("execution-", 1).factory())
+                : Executors.newCachedThreadPool(new ExecutionThreadFactory());
+        log.info("Execution scheduler allows {} concurrent executions (cpu slots: {}, memory slots: {})",
+                maxConcurrency, cpuSlots, memorySlots);
+    }
+
+    /**
+     * Start a new batch of related executions, typically all test cases of one submission.
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    private boolean enqueue(Batch batch, Task task) {
+        lock.lock();
+        try {
+            if (batch.cancelled) {
+                return false;
+            }
+            batch.tasks.addLast(task);
+            if (!batch.ready) {
+                batch.ready = true;
+                readyBatches.addLast(batch);
+            }
+            dispatch();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Task> cancel(Batch batch) {
+        lock.lock();
+        try {
+            batch.cancelled = true;
+            if (batch.ready) {
+                batch.ready = false;
+                readyBatches.remove(batch);
+            }
+            List<Task> dropped = new ArrayList<>(batch.tasks);
+            batch.tasks.clear();
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called with the lock held
+    private void dispatch() {
+        while (running < maxConcurrency && !readyBatches.isEmpty()) {
+            Batch batch = readyBatches.pollFirst();
+            Task task = batch.tasks.pollFirst();
+            if (batch.tasks.isEmpty()) {
+                batch.ready = false;
+            } else {
+                // Back of the line: the next free slot goes to another batch first
+                readyBatches.addLast(batch);
+            }
+            running++;
+            executor.execute(() -> runAndRelease(task.body()));
+        }
+    }
+
+    private void runAndRelease(Runnable task) {
+        try {
+            task.run();
+        } finally {
+            lock.lock();
+            try {
+                running--;
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A group of executions scheduled fairly against other groups.
+     */
+    public final class Batch {
+
+        private final Deque<Task> tasks = new ArrayDeque<>();
+        private boolean ready;
+        private boolean cancelled;
+
+        private Batch() {
+        }
+
+        /**
+         * Queue a task; it runs once a slot is free and this batch's turn comes up.
+         * The future is cancelled if the batch is cancelled before the task starts.
+         */
+        public <T> CompletableFuture<T> submit(Callable<T> task) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            boolean queued = enqueue(this, new Task(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }, future));
+            if (!queued) {
+                future.cancel(false);
+            }
+            return future;
+        }
+
+        /**
+         * Drop every task of this batch that has not started yet and refuse new ones.
+         * Tasks already running are not interrupted.
+         */
+        public void cancel() {
+            for (Task task : ExecutionScheduler.this.cancel(this)) {
+                task.future().cancel(false);
+            }
+        }
+    }
+
+    private record Task(Runnable body, CompletableFuture<?> future) {
+    }
+
+    private static final class ExecutionThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "execution-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
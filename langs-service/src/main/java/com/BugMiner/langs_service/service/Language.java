@@ -0,0 +1,89 @@
+package com.BugMiner.langs_service.service;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Supported submission languages and how each one is built and run inside its runner container.
+ * Commands are executed from the per-execution working directory; compiled languages put their
+ * build output in a single artifact path so it can be cached and restored as a whole.
+ */
+public enum Language {
+
+    JAVA("java", "java-runner", "Main.java", "javac -d classes Main.java", "java -cp classes Main",
+            "classes", "javac -version"),
+    CPP("cpp", "cpp-runner", "main.cpp", "g++ main.cpp -o main", "./main",
+            "main", "g++ --version"),
+    PYTHON("python", "python-runner", "main.py", null, "python3 main.py", null, null);
+
+    private final String id;
+    private final String containerName;
+    private final String sourceFileName;
+    private final String compileCommand;
+    private final String runCommand;
+    private final String artifactPath;
+    private final String compilerVersionCommand;
+
+    Language(String id, String containerName, String sourceFileName, String compileCommand, String runCommand,
+             String artifactPath, String compilerVersionCommand) {
+        this.id = id;
+        this.containerName = containerName;
+        this.sourceFileName = sourceFileName;
+        this.compileCommand = compileCommand;
+        this.runCommand = runCommand;
+        this.artifactPath = artifactPath;
+        this.compilerVersionCommand = compilerVersionCommand;
+    }
+
+    public static Optional<Language> fromId(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        String normalized = id.trim().toLowerCase();
+        return Arrays.stream(values())
+                .filter(language -> language.id.equals(normalized))
+                .findFirst();
+    }
+
+    public static Optional<Language> fromContainerName(String containerName) {
+        return Arrays.stream(values())
+                .filter(language -> language.containerName.equals(containerName))
+                .findFirst();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getContainerName() {
+        return containerName;
+    }
+
+    public String getSourceFileName() {
+        return sourceFileName;
+    }
+
+    public boolean requiresCompilation() {
+        return compileCommand != null;
+    }
+
+    public String getCompileCommand() {
+        return compileCommand;
+    }
+
+    public String getRunCommand() {
+        return runCommand;
+    }
+
+    /**
+     * @return file or directory, relative to the working directory, holding everything the compile
+     * command produces and the run command needs
+     */
+    public String getArtifactPath() {
+        return artifactPath;
+    }
+
+    public String getCompilerVersionCommand() {
+        return compilerVersionCommand;
+    }
+}
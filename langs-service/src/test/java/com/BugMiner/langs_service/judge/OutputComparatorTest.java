@@ -0,0 +1,155 @@
+package com.BugMiner.langs_service.judge;
+
+import com.BugMiner.langs_service.entity.ComparisonPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static com.BugMiner.langs_service.entity.ComparisonPolicy.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+class OutputComparatorTest {
+
+    private static final double EPSILON = 1e-6;
+
+    static Stream<Arguments> cases() {
+        return Stream.of(
+                // policy, expected, actual, accepted
+                arguments(TRIMMED_EXACT, "1 2", "1 2", true),
+                arguments(TRIMMED_EXACT, "1 2", "1  2", false),
+                arguments(TRIMMED_EXACT, "1 2", "1\n2", false),
+                arguments(TRIMMED_EXACT, "1 2", "1\t2", false),
+                arguments(TRIMMED_EXACT, "1 2\n", "1 2   \n\n", true),
+                arguments(TRIMMED_EXACT, "1 2", "\n  1 2", true),
+                arguments(TRIMMED_EXACT, "  1 2  ", "1 2", true),
+                arguments(TRIMMED_EXACT, "a\nb", "a\r\nb\r\n", true),
+                arguments(TRIMMED_EXACT, "a\nb", "a\rb", true),
+                arguments(TRIMMED_EXACT, "a\n\nb", "a\nb", false),
+                arguments(TRIMMED_EXACT, "a b", "a b c", false),
+                arguments(TRIMMED_EXACT, "a b c", "a b", false),
+                arguments(TRIMMED_EXACT, "a b", "a b ", true),
+                arguments(TRIMMED_EXACT, "", " \n\t", true),
+                arguments(TRIMMED_EXACT, "", "x", false),
+                arguments(TRIMMED_EXACT, "x", "", false),
+                arguments(TRIMMED_EXACT, "héllo", "héllo\n", true),
+                arguments(TRIMMED_EXACT, "héllo", "hello", false),
+
+                arguments(EXACT, "1\n", "1\n", true),
+                arguments(EXACT, "1\n", "1", false),
+                arguments(EXACT, "1\n", "1\r\n", false),
+                arguments(EXACT, "1", "1 ", false),
+
+                arguments(LINE_ENDING_INSENSITIVE, "1\n2\n", "1\r\n2", true),
+                arguments(LINE_ENDING_INSENSITIVE, "1\n2", "1\n2\n\n", true),
+                arguments(LINE_ENDING_INSENSITIVE, "1\n2", "1\r2", true),
+                arguments(LINE_ENDING_INSENSITIVE, "1 2", "1 2 ", false),
+                arguments(LINE_ENDING_INSENSITIVE, "1\n\n2", "1\n2", false),
+
+                arguments(WHITESPACE_TOKENS, "1 2", "1\n\t2  \r\n", true),
+                arguments(WHITESPACE_TOKENS, "1 2", "  1     2", true),
+                arguments(WHITESPACE_TOKENS, "1 2", "1 3", false),
+                arguments(WHITESPACE_TOKENS, "12", "1 2", false),
+                arguments(WHITESPACE_TOKENS, "1 2", "12", false),
+                arguments(WHITESPACE_TOKENS, "1 2", "1 2 3", false),
+                arguments(WHITESPACE_TOKENS, "1 2 3", "1 2", false),
+                arguments(WHITESPACE_TOKENS, "", "  \n", true),
+                arguments(WHITESPACE_TOKENS, "a", "", false),
+                arguments(WHITESPACE_TOKENS, "1.0", "1", false),
+                arguments(WHITESPACE_TOKENS, "a\u000Bb", "a b", true),
+
+                arguments(FLOAT_EPSILON, "0.5", "0.5000001", true),
+                arguments(FLOAT_EPSILON, "0.5", "0.50001", false),
+                arguments(FLOAT_EPSILON, "0", "0.0000009", true),
+                arguments(FLOAT_EPSILON, "0", "0.000002", false),
+                arguments(FLOAT_EPSILON, "1000000", "1000000.5", true),
+                arguments(FLOAT_EPSILON, "1e9", "1000000001", true),
+                arguments(FLOAT_EPSILON, "1e9", "1.001e9", false),
+                arguments(FLOAT_EPSILON, "1.5E+3", "1500", true),
+                arguments(FLOAT_EPSILON, "1.5e-3", "0.0015", true),
+                arguments(FLOAT_EPSILON, "1.5e-3", "15e-4", true),
+                arguments(FLOAT_EPSILON, ".5", "0.5", true),
+                arguments(FLOAT_EPSILON, "5.", "5", true),
+                arguments(FLOAT_EPSILON, "-0", "0", true),
+                arguments(FLOAT_EPSILON, "+1", "1", true),
+                arguments(FLOAT_EPSILON, "-1", "1", false),
+                arguments(FLOAT_EPSILON, "1e", "1", false),
+                arguments(FLOAT_EPSILON, "0x10", "16", false),
+                arguments(FLOAT_EPSILON, "NaN", "NaN", true),
+                arguments(FLOAT_EPSILON, "NaN", "nan", false),
+                arguments(FLOAT_EPSILON, "1", "NaN", false),
+                arguments(FLOAT_EPSILON, "inf", "inf", true),
+                arguments(FLOAT_EPSILON, "Infinity", "1e309", false),
+                // Beyond double range only the identical text is accepted
+                arguments(FLOAT_EPSILON, "1e309", "1e309", true),
+                arguments(FLOAT_EPSILON, "1e309", "5", false),
+                arguments(FLOAT_EPSILON, "1e309", "1e310", false),
+                arguments(FLOAT_EPSILON, "yes 0.5", "yes 0.5000001", true),
+                arguments(FLOAT_EPSILON, "yes 0.5", "no 0.5", false),
+                arguments(FLOAT_EPSILON, "1.0\n2.0\n", "1.0000001   \n2\n\n", true),
+                arguments(FLOAT_EPSILON, "1.0 2.0", "1.0", false)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("cases")
+    void acceptsAsExpected(ComparisonPolicy policy, String expected, String actual, boolean accepted) {
+        OutputComparator.Mismatch whole = compare(policy, expected, actual, Integer.MAX_VALUE);
+        assertEquals(accepted, whole == null, () -> "whole output: " + whole);
+
+        // Chunk boundaries must not matter, down to single bytes
+        OutputComparator.Mismatch byByte = compare(policy, expected, actual, 1);
+        assertEquals(whole, byByte);
+    }
+
+    @Test
+    void reportsFirstDifferenceInActualOutput() {
+        assertEquals(new OutputComparator.Mismatch(2, 3, "expected '4' but found '5'"),
+                compare(TRIMMED_EXACT, "1 2\n3 4", "1 2\n3 5", Integer.MAX_VALUE));
+        assertEquals(new OutputComparator.Mismatch(2, 1, "expected '4' but found '5'"),
+                compare(WHITESPACE_TOKENS, "1 2 4", "1 2\n5", Integer.MAX_VALUE));
+        assertEquals(new OutputComparator.Mismatch(1, 2, "output ended early, expected ' b'"),
+                compare(TRIMMED_EXACT, "a b", "a", Integer.MAX_VALUE));
+    }
+
+    @Test
+    void stopsAcceptingOutputAtFirstDifference() {
+        OutputComparator comparator = OutputComparator.create(WHITESPACE_TOKENS, "1 2", EPSILON);
+        assertTrue(comparator.accept(bytes("1 ")));
+        assertFalse(comparator.accept(bytes("3")));
+        assertTrue(comparator.isMismatched());
+        assertFalse(comparator.accept(bytes(" 2")));
+        assertNotNull(comparator.finish());
+    }
+
+    @Test
+    void trailingWhitespaceIsNotJudgedUntilMoreOutputFollows() {
+        OutputComparator comparator = OutputComparator.create(TRIMMED_EXACT, "1 2", EPSILON);
+        assertTrue(comparator.accept(bytes("1 2\n\n")));
+        assertFalse(comparator.isMismatched());
+        assertFalse(comparator.accept(bytes("3")));
+        assertEquals(new OutputComparator.Mismatch(1, 4, "extra output after the expected end, starting with '\\n'"),
+                comparator.finish());
+    }
+
+    private static OutputComparator.Mismatch compare(ComparisonPolicy policy, String expected, String actual, int chunkSize) {
+        OutputComparator comparator = OutputComparator.create(policy, expected, EPSILON);
+        byte[] output = bytes(actual);
+        for (int from = 0; from < output.length; from += chunkSize) {
+            byte[] chunk = Arrays.copyOfRange(output, from, (int) Math.min(output.length, (long) from + chunkSize));
+            if (!comparator.accept(chunk)) {
+                break;
+            }
+        }
+        return comparator.finish();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package com.BugMiner.langs_service.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiplexedStreamTest {
+
+    @Test
+    void readsFramesOfEachStream() throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        raw.write(frame(MultiplexedStream.STDOUT, "out"));
+        raw.write(frame(MultiplexedStream.STDERR, "error"));
+        raw.write(frame(MultiplexedStream.STDOUT, ""));
+        MultiplexedStream stream = new MultiplexedStream(new ByteArrayInputStream(raw.toByteArray()));
+
+        assertEquals(new MultiplexedStream.Frame(MultiplexedStream.STDOUT, 3), stream.nextFrame());
+        assertEquals("out", payload(stream, 3));
+        assertEquals(new MultiplexedStream.Frame(MultiplexedStream.STDERR, 5), stream.nextFrame());
+        assertEquals("error", payload(stream, 5));
+        assertEquals(new MultiplexedStream.Frame(MultiplexedStream.STDOUT, 0), stream.nextFrame());
+        assertNull(stream.nextFrame());
+    }
+
+    @Test
+    void readsLengthAsUnsignedBigEndian() throws IOException {
+        byte[] header = {MultiplexedStream.STDOUT, 0, 0, 0, (byte) 0x01, (byte) 0x80, (byte) 0xff, (byte) 0x00};
+        MultiplexedStream stream = new MultiplexedStream(new ByteArrayInputStream(header));
+
+        assertEquals(new MultiplexedStream.Frame(MultiplexedStream.STDOUT, 0x0180ff00), stream.nextFrame());
+    }
+
+    @Test
+    void readsPayloadInParts() throws IOException {
+        MultiplexedStream stream = new MultiplexedStream(new ByteArrayInputStream(frame(MultiplexedStream.STDOUT, "abcdef")));
+        assertEquals(6, stream.nextFrame().length());
+
+        byte[] buffer = new byte[6];
+        assertEquals(4, stream.readPayload(buffer, 0, 4));
+        assertEquals(2, stream.readPayload(buffer, 4, 2));
+        assertEquals("abcdef", new String(buffer, StandardCharsets.UTF_8));
+        assertNull(stream.nextFrame());
+    }
+
+    @Test
+    void failsOnTruncatedHeader() {
+        MultiplexedStream stream = new MultiplexedStream(new ByteArrayInputStream(new byte[]{1, 0, 0, 0, 0}));
+
+        assertThrows(EOFException.class, stream::nextFrame);
+    }
+
+    @Test
+    void failsOnTruncatedPayload() throws IOException {
+        byte[] frame = frame(MultiplexedStream.STDERR, "complete");
+        MultiplexedStream stream = new MultiplexedStream(new ByteArrayInputStream(Arrays.copyOf(frame, 8 + 3)));
+        assertEquals(8, stream.nextFrame().length());
+
+        byte[] buffer = new byte[8];
+        assertEquals(3, stream.readPayload(buffer, 0, 8));
+        assertThrows(EOFException.class, () -> stream.readPayload(buffer, 3, 5));
+    }
+
+    private static byte[] frame(int streamType, String payload) {
+        byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[8 + data.length];
+        frame[0] = (byte) streamType;
+        frame[4] = (byte) (data.length >>> 24);
+        frame[5] = (byte) (data.length >>> 16);
+        frame[6] = (byte) (data.length >>> 8);
+        frame[7] = (byte) data.length;
+        System.arraycopy(data, 0, frame, 8, data.length);
+        return frame;
+    }
+
+    private static String payload(MultiplexedStream stream, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int read = 0;
+        while (read < length) {
+            read += stream.readPayload(buffer, read, length - read);
+        }
+        return new String(buffer, StandardCharsets.UTF_8);
+    }
+}
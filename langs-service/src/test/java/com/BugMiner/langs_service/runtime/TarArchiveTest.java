@@ -0,0 +1,151 @@
+package com.BugMiner.langs_service.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TarArchiveTest {
+
+    private static final int BLOCK_SIZE = 512;
+
+    @Test
+    void writesEntriesPaddedToBlocksWithEndMarker() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("Main.java", bytes("class Main {}"));
+        files.put("input.txt", new byte[0]);
+        files.put("data/big.bin", new byte[BLOCK_SIZE + 1]);
+
+        byte[] archive = TarArchive.of(files);
+
+        // Header and content blocks of each entry, then two zero blocks
+        assertEquals((2 + 1 + 3 + 2) * BLOCK_SIZE, archive.length);
+        assertArrayEquals(new byte[2 * BLOCK_SIZE], Arrays.copyOfRange(archive, archive.length - 2 * BLOCK_SIZE, archive.length));
+
+        List<Entry> entries = read(archive);
+        assertEquals(3, entries.size());
+        assertEquals(new Entry("Main.java", '0', "class Main {}"), entries.get(0));
+        assertEquals(new Entry("input.txt", '0', ""), entries.get(1));
+        assertEquals("data/big.bin", entries.get(2).path());
+        assertEquals(BLOCK_SIZE + 1, entries.get(2).content().length());
+    }
+
+    @Test
+    void writesValidUstarHeaders() throws IOException {
+        byte[] archive = TarArchive.of(Map.of("Main.java", bytes("x")));
+
+        assertEquals("ustar", string(archive, 257, 5));
+        assertEquals(0, archive[262]);
+        assertEquals("00", string(archive, 263, 2));
+        assertEquals(0644, octal(archive, 100, 8));
+        assertEquals(1, octal(archive, 124, 12));
+        assertTrue(Math.abs(octal(archive, 136, 12) - System.currentTimeMillis() / 1000) < 60);
+        assertEquals(checksum(archive, 0), octal(archive, 148, 8));
+    }
+
+    @Test
+    void splitsLongPathIntoPrefixAndName() throws IOException {
+        String directory = "d".repeat(120);
+        String path = directory + "/Main.java";
+
+        byte[] archive = TarArchive.of(Map.of(path, bytes("x")));
+
+        assertEquals("Main.java", string(archive, 0, 100));
+        assertEquals(directory, string(archive, 345, 155));
+        assertEquals(List.of(new Entry(path, '0', "x")), read(archive));
+    }
+
+    @Test
+    void carriesPathTooLongForUstarInPaxHeader() throws IOException {
+        String path = "a".repeat(160) + "/" + "b".repeat(120) + ".txt";
+
+        byte[] archive = TarArchive.of(Map.of(path, bytes("content")));
+
+        assertEquals('x', archive[156]);
+        assertEquals(List.of(new Entry(path, '0', "content")), read(archive));
+    }
+
+    @Test
+    void paxRecordLengthCountsItsOwnDigits() throws IOException {
+        // Records around 1000 bytes, where counting the length's digits can add one more digit
+        for (int length = 980; length < 1000; length++) {
+            String path = "p".repeat(length);
+
+            byte[] archive = TarArchive.of(Map.of(path, new byte[0]));
+
+            String record = string(archive, BLOCK_SIZE, (int) octal(archive, 124, 12));
+            int space = record.indexOf(' ');
+            assertEquals(record.length(), Integer.parseInt(record.substring(0, space)), record);
+            assertEquals(path, read(archive).get(0).path());
+        }
+    }
+
+    @Test
+    void writesOnlyEndMarkerForNoFiles() throws IOException {
+        assertArrayEquals(new byte[2 * BLOCK_SIZE], TarArchive.of(Map.of()));
+    }
+
+    private record Entry(String path, char type, String content) {
+    }
+
+    /**
+     * Read the archive back as a tar reader would, checking every header's checksum and applying
+     * PAX path records to the entry that follows.
+     */
+    private static List<Entry> read(byte[] archive) {
+        List<Entry> entries = new ArrayList<>();
+        String paxPath = null;
+        int offset = 0;
+        while (archive[offset] != 0) {
+            assertEquals(checksum(archive, offset), octal(archive, offset + 148, 8), "checksum at " + offset);
+            String name = string(archive, offset, 100);
+            String prefix = string(archive, offset + 345, 155);
+            int size = (int) octal(archive, offset + 124, 12);
+            char type = (char) archive[offset + 156];
+            String content = new String(archive, offset + BLOCK_SIZE, size, StandardCharsets.UTF_8);
+            offset += BLOCK_SIZE + (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+
+            if (type == 'x') {
+                assertTrue(content.endsWith("\n"));
+                paxPath = content.substring(content.indexOf(" path=") + 6, content.length() - 1);
+                continue;
+            }
+            String path = prefix.isEmpty() ? name : prefix + "/" + name;
+            entries.add(new Entry(paxPath != null ? paxPath : path, type, content));
+            paxPath = null;
+        }
+        return entries;
+    }
+
+    private static long checksum(byte[] archive, int offset) {
+        long sum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            sum += i >= 148 && i < 156 ? ' ' : archive[offset + i] & 0xff;
+        }
+        return sum;
+    }
+
+    private static long octal(byte[] archive, int offset, int length) {
+        return Long.parseLong(string(archive, offset, length).trim(), 8);
+    }
+
+    // A NUL-terminated header field
+    private static String string(byte[] archive, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && archive[end] != 0) {
+            end++;
+        }
+        return new String(archive, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,279 @@
+package com.BugMiner.langs_service.runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnixSocketHttpConnectionTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path socketPath;
+    private ServerSocketChannel server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void bind() throws IOException {
+        socketPath = tempDir.resolve("docker.sock");
+        // A backlog of one makes it easy to fill in the retry test
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath), 1);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void sendsRequestLineHeadersAndBody() throws Exception {
+        serve("HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n");
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            UnixSocketHttpConnection.Response response = connection.send("POST", "/v1.43/containers/create",
+                    Map.of("Content-Type", "application/json"), "{}".getBytes(StandardCharsets.UTF_8));
+            assertEquals(201, response.status());
+            assertEquals("", response.bodyAsString());
+        }
+
+        assertEquals("POST /v1.43/containers/create HTTP/1.1\r\nHost: docker\r\nContent-Type: application/json\r\n"
+                + "Content-Length: 2\r\n\r\n{}", awaitRequest(0));
+    }
+
+    @Test
+    void readsBodyOfContentLengthAndReusesConnection() throws Exception {
+        serve("HTTP/1.1 200 OK\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\nhello",
+                "HTTP/1.1 200 OK\r\ncontent-length: 3\r\n\r\nbye");
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            UnixSocketHttpConnection.Response first = connection.send("GET", "/first", Map.of(), null);
+            assertEquals(200, first.status());
+            assertEquals("text/plain", first.headers().get("content-type"));
+            assertEquals("hello", first.bodyAsString());
+            assertTrue(connection.isReusable());
+
+            // The first body must not have consumed any of the second response
+            UnixSocketHttpConnection.Response second = connection.send("GET", "/second", Map.of(), null);
+            assertEquals("bye", second.bodyAsString());
+            assertTrue(connection.isReusable());
+        }
+        assertTrue(awaitRequest(1).startsWith("GET /second HTTP/1.1\r\n"));
+    }
+
+    @Test
+    void readsChunkedBodyWithExtensionsAndTrailers() throws Exception {
+        serve("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "5;name=value\r\nhello\r\n7\r\n, chunk\r\n0\r\nX-Trailer: ignored\r\n\r\n",
+                "HTTP/1.1 204 No Content\r\n\r\n");
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            UnixSocketHttpConnection.Response response = connection.send("GET", "/logs", Map.of(), null);
+            assertEquals("hello, chunk", response.bodyAsString());
+            assertEquals(-1, response.body().read());
+            assertTrue(connection.isReusable());
+
+            UnixSocketHttpConnection.Response next = connection.send("DELETE", "/containers/x", Map.of(), null);
+            assertEquals(204, next.status());
+            assertEquals(-1, next.body().read());
+        }
+    }
+
+    @Test
+    void readsChunkedBodyByteByByte() throws Exception {
+        serve("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n1\r\nd\r\n0\r\n\r\n");
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            InputStream body = connection.send("GET", "/", Map.of(), null).body();
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            int b;
+            while ((b = body.read()) != -1) {
+                read.write(b);
+            }
+            assertEquals("abcd", read.toString(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void failsOnTruncatedBodies() throws Exception {
+        serve("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nshort");
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            InputStream body = connection.send("GET", "/", Map.of(), null).body();
+            assertThrows(EOFException.class, body::readAllBytes);
+        }
+
+        serve("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\na\r\nshort");
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            InputStream body = connection.send("GET", "/", Map.of(), null).body();
+            assertThrows(EOFException.class, body::readAllBytes);
+        }
+    }
+
+    @Test
+    void bodyWithoutLengthRunsToCloseAndEndsReuse() throws Exception {
+        serve("HTTP/1.1 200 OK\r\n\r\nuntil the end");
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            UnixSocketHttpConnection.Response response = connection.send("GET", "/", Map.of(), null);
+            assertEquals("until the end", response.bodyAsString());
+            assertFalse(connection.isReusable());
+        }
+    }
+
+    @Test
+    void connectionCloseHeaderEndsReuse() throws Exception {
+        serve("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 2\r\n\r\nok");
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            assertEquals("ok", connection.send("GET", "/", Map.of(), null).bodyAsString());
+            assertFalse(connection.isReusable());
+        }
+    }
+
+    @Test
+    void upgradeHandsRawStreamToCaller() throws Exception {
+        serve("HTTP/1.1 101 UPGRADED\r\nConnection: Upgrade\r\nUpgrade: tcp\r\n\r\nraw bytes");
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            UnixSocketHttpConnection.Response response = connection.send("POST", "/exec/x/start", Map.of(), null);
+            assertEquals(101, response.status());
+            assertEquals(-1, response.body().read());
+            assertFalse(connection.isReusable());
+            assertEquals("raw bytes", new String(connection.rawInput().readAllBytes(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void rejectsMalformedStatusLine() throws Exception {
+        serve("SSH-2.0-OpenSSH\r\n\r\n");
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            IOException e = assertThrows(IOException.class, () -> connection.send("GET", "/", Map.of(), null));
+            assertTrue(e.getMessage().startsWith("Malformed HTTP status line"), e.getMessage());
+        }
+    }
+
+    @Test
+    void failsWhenDaemonClosesBeforeResponding() throws Exception {
+        serve();
+
+        try (UnixSocketHttpConnection connection = UnixSocketHttpConnection.open(socketPath)) {
+            assertThrows(EOFException.class, () -> connection.send("GET", "/", Map.of(), null));
+        }
+    }
+
+    @Test
+    void retriesConnectWhileListenBacklogIsFull() throws Exception {
+        // Non-blocking connects fill the backlog: the first refused one is answered with EAGAIN
+        List<SocketChannel> queued = new ArrayList<>();
+        while (true) {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.configureBlocking(false);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socketPath));
+                queued.add(channel);
+            } catch (IOException e) {
+                channel.close();
+                assertEquals("Resource temporarily unavailable", e.getMessage());
+                break;
+            }
+        }
+
+        // On a virtual thread the connect sees EAGAIN too, instead of waiting for room in the backlog
+        CompletableFuture<UnixSocketHttpConnection> connecting = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                connecting.complete(UnixSocketHttpConnection.open(socketPath));
+            } catch (Throwable e) {
+                connecting.completeExceptionally(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(connecting.isDone());
+
+        for (int i = 0; i < queued.size(); i++) {
+            server.accept().close();
+        }
+        try (UnixSocketHttpConnection connection = connecting.get(5, TimeUnit.SECONDS)) {
+            assertTrue(connection.isOpen());
+        } finally {
+            for (SocketChannel channel : queued) {
+                channel.close();
+            }
+        }
+    }
+
+    @Test
+    void doesNotRetryOtherConnectFailures() {
+        assertThrows(IOException.class, () -> UnixSocketHttpConnection.open(tempDir.resolve("missing.sock")));
+    }
+
+    /**
+     * Accept one connection and answer each request on it with the next response, then close it.
+     */
+    private void serve(String... responses) {
+        Thread daemon = new Thread(() -> {
+            try (SocketChannel channel = server.accept()) {
+                InputStream in = Channels.newInputStream(channel);
+                for (String response : responses) {
+                    requests.add(readRequest(in));
+                    channel.write(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)));
+                }
+                if (responses.length == 0) {
+                    readRequest(in);
+                }
+            } catch (IOException e) {
+                // The test sees the failure on its side of the connection
+            }
+        }, "fake-docker-daemon");
+        daemon.setDaemon(true);
+        daemon.start();
+    }
+
+    private static String readRequest(InputStream in) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        while (!request.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            request.write(b);
+        }
+        String head = request.toString(StandardCharsets.US_ASCII);
+        int length = head.indexOf("Content-Length: ");
+        if (length >= 0) {
+            int end = head.indexOf("\r\n", length);
+            request.write(in.readNBytes(Integer.parseInt(head.substring(length + 16, end))));
+        }
+        return request.toString(StandardCharsets.UTF_8);
+    }
+
+    private String awaitRequest(int index) throws InterruptedException {
+        for (int i = 0; i < 100 && requests.size() <= index; i++) {
+            Thread.sleep(10);
+        }
+        return requests.get(index);
+    }
+}
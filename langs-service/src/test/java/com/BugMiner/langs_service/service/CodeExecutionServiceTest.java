@@ -0,0 +1,66 @@
+package com.BugMiner.langs_service.service;
+
+import com.BugMiner.langs_service.entity.CompileError;
+import com.BugMiner.langs_service.entity.ExecutionRequest;
+import com.BugMiner.langs_service.entity.ExecutionResult;
+import com.BugMiner.langs_service.entity.JudgingMode;
+import com.BugMiner.langs_service.entity.TestCase;
+import com.BugMiner.langs_service.entity.TestCaseResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeExecutionServiceTest {
+
+    // Requests refused before anything is run need none of the collaborators
+    private final CodeExecutionService service = new CodeExecutionService(null, null, null, null, null, null, null);
+
+    @Test
+    void sampleOnlyWithoutSamplesFailsWithoutRunning() {
+        ExecutionRequest request = request(JudgingMode.SAMPLE_ONLY,
+                new TestCase("1", "1", false), new TestCase("2", "2", false));
+
+        ExecutionResult result = service.executeCode(request, new ExecutionListener() {
+            @Override
+            public void onCompiled(boolean success, String errorMessage, int exitCode,
+                                   List<CompileError> compileErrors) {
+                fail("Nothing should be compiled");
+            }
+
+            @Override
+            public void onTestResult(int index, TestCaseResult testResult) {
+                fail("No test should be run");
+            }
+        });
+
+        assertFalse(result.isSuccess());
+        assertEquals("No sample test case to judge", result.getErrorMessage());
+    }
+
+    @Test
+    void requestWithoutTestsFails() {
+        ExecutionResult result = service.executeCode(request(JudgingMode.ALL));
+
+        assertFalse(result.isSuccess());
+        assertEquals("No test case to judge", result.getErrorMessage());
+        assertNull(result.getTestResults());
+    }
+
+    @Test
+    void requestWithoutTestsFailsInEveryMode() {
+        for (JudgingMode mode : JudgingMode.values()) {
+            assertFalse(service.executeCode(request(mode)).isSuccess(), mode.name());
+        }
+    }
+
+    private static ExecutionRequest request(JudgingMode judgingMode, TestCase... testCases) {
+        ExecutionRequest request = new ExecutionRequest();
+        request.setLanguage("python");
+        request.setCode("print(input())");
+        request.setTestCases(List.of(testCases));
+        request.setJudgingMode(judgingMode);
+        return request;
+    }
+}